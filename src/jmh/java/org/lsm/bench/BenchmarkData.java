@@ -0,0 +1,93 @@
+package org.lsm.bench;
+
+import org.lsm.db.Config;
+import org.lsm.db.dao.PersistentDao;
+import org.lsm.db.entry.BaseEntry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Keys, values and databases shared by benchmarks.
+ */
+final class BenchmarkData {
+    /**
+     * Large enough that tables are rotated only by explicit flush.
+     */
+    private static final long FLUSH_THRESHOLD_BYTES = 1L << 30;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Returns key of the given size which ends with decimal index padded with zeros, keys are ordered as indexes.
+     */
+    static MemorySegment key(long index, int keySize) {
+        byte[] key = new byte[keySize];
+        long rest = index;
+        for (int i = keySize - 1; i >= 0; i--) {
+            key[i] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        }
+        return MemorySegment.ofArray(key);
+    }
+
+    static MemorySegment value(Random random, int valueSize) {
+        byte[] value = new byte[valueSize];
+        for (int i = 0; i < valueSize; i++) {
+            value[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return MemorySegment.ofArray(value);
+    }
+
+    /**
+     * Config which keeps all flushed tables in level 0 until compaction is requested explicitly.
+     */
+    static Config.Builder config(Path dir) {
+        return Config.builder(dir)
+                .flushThresholdBytes(FLUSH_THRESHOLD_BYTES)
+                .maxImmutableMemTables(Integer.MAX_VALUE)
+                .level0CompactionTrigger(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes tables with rowsPerTable keys each, tables overlap the whole key range.
+     * Key indexes 2 * (row * tables + table) are present, odd indexes are absent.
+     */
+    static void fill(Path dir, int tables, int rowsPerTable, int keySize, int valueSize) throws IOException {
+        Random random = new Random(tables);
+        try (PersistentDao dao = new PersistentDao(config(dir).build())) {
+            for (int table = 0; table < tables; table++) {
+                for (int row = 0; row < rowsPerTable; row++) {
+                    long index = 2L * ((long) row * tables + table);
+                    dao.upsert(new BaseEntry<>(key(index, keySize), value(random, valueSize)));
+                }
+                dao.flush();
+            }
+        }
+    }
+
+    static Path createDirectory() {
+        try {
+            return Files.createTempDirectory("lsm-bench");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    static void delete(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.lsm.bench;
+
+import org.lsm.db.compaction.CompactionStyle;
+import org.lsm.db.dao.PersistentDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full compaction of overlapping SSTables, dao is closed to wait for compaction thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CompactionBenchmark {
+    @Param({"4", "16"})
+    private int tables;
+
+    @Param({"16", "64"})
+    private int keySize;
+
+    @Param({"100", "1000"})
+    private int valueSize;
+
+    @Param("20000")
+    private int rowsPerTable;
+
+    @Param({"LEVELED", "TIERED"})
+    private CompactionStyle style;
+
+    private Path dir;
+    private PersistentDao dao;
+
+    @Setup(Level.Invocation)
+    public void open() throws IOException {
+        dir = BenchmarkData.createDirectory();
+        BenchmarkData.fill(dir, tables, rowsPerTable, keySize, valueSize);
+        dao = new PersistentDao(BenchmarkData.config(dir).compactionStyle(style).build());
+    }
+
+    @TearDown(Level.Invocation)
+    public void delete() {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public void compact() throws IOException {
+        dao.compact();
+        dao.close();
+    }
+}
@@ -0,0 +1,78 @@
+package org.lsm.bench;
+
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+import org.lsm.db.table.ChannelTableWriter;
+import org.lsm.db.table.Compression;
+import org.lsm.db.table.KeyComparator;
+import org.lsm.db.table.MemTable;
+import org.lsm.db.table.TableWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes memtable of the given size to SSTable as background flush does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class FlushBenchmark {
+    @Param({"16", "64"})
+    private int keySize;
+
+    @Param({"100", "1000"})
+    private int valueSize;
+
+    @Param("100000")
+    private int rows;
+
+    @Param({"NONE", "DEFLATE"})
+    private Compression compression;
+
+    private MemTable memTable;
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        Random random = new Random(1);
+        memTable = new MemTable(new KeyComparator(), 1);
+        for (int i = 0; i < rows; i++) {
+            memTable.upsert(new BaseEntry<>(BenchmarkData.key(i, keySize), BenchmarkData.value(random, valueSize)));
+        }
+        dir = BenchmarkData.createDirectory();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public void flush() throws IOException {
+        Path path = dir.resolve("data-1.txt");
+        try (TableWriter writer = new ChannelTableWriter(path, 0, compression, memTable.rows())) {
+            for (Entry<MemorySegment> entry : memTable) {
+                writer.writeEntry(entry);
+            }
+            writer.finish();
+        }
+    }
+}
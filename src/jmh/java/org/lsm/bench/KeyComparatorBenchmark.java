@@ -0,0 +1,56 @@
+package org.lsm.bench;
+
+import org.lsm.db.table.KeyComparator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparison of two keys which differ only in the last byte after sharedPrefix equal bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeyComparatorBenchmark {
+    @Param({"16", "64", "256"})
+    private int keySize;
+
+    @Param({"0", "8", "15"})
+    private int sharedPrefix;
+
+    private final KeyComparator comparator = new KeyComparator();
+    private MemorySegment first;
+    private MemorySegment second;
+
+    @Setup
+    public void createKeys() {
+        first = BenchmarkData.key(0, keySize);
+        second = BenchmarkData.key(0, keySize);
+        long differentByte = Math.min(sharedPrefix, keySize - 1);
+        second.set(ValueLayout.JAVA_BYTE, differentByte, (byte) 'x');
+    }
+
+    @Benchmark
+    public int compare() {
+        return comparator.compare(first, second);
+    }
+
+    @Benchmark
+    public int compareSlices() {
+        return KeyComparator.compare(first, 0, first.byteSize(), second, 0, second.byteSize());
+    }
+
+    @Benchmark
+    public int comparePrefixes() {
+        return Long.compareUnsigned(KeyComparator.prefix(first), KeyComparator.prefix(second));
+    }
+}
@@ -0,0 +1,67 @@
+package org.lsm.bench;
+
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+import org.lsm.db.table.ArenaMemTable;
+import org.lsm.db.table.KeyComparator;
+import org.lsm.db.table.MemTable;
+import org.lsm.db.table.MemTableType;
+import org.lsm.db.table.MutableTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.foreign.MemorySegment;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upserts of random keys into memtable which is recreated every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MemTableBenchmark {
+    private static final int KEYS = 1 << 16;
+    private static final int KEY_SPACE = 1 << 20;
+
+    @Param({"SKIP_LIST", "ARENA"})
+    private MemTableType type;
+
+    @Param({"16", "64"})
+    private int keySize;
+
+    @Param({"100", "1000"})
+    private int valueSize;
+
+    private Entry<MemorySegment>[] entries;
+    private MutableTable memTable;
+    private int next;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void createEntries() {
+        Random random = new Random(1);
+        MemorySegment value = BenchmarkData.value(random, valueSize);
+        entries = new Entry[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            entries[i] = new BaseEntry<>(BenchmarkData.key(random.nextInt(KEY_SPACE), keySize), value);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createMemTable() {
+        memTable = type == MemTableType.ARENA ? new ArenaMemTable(1) : new MemTable(new KeyComparator(), 1);
+    }
+
+    @Benchmark
+    public void upsert() {
+        memTable.upsert(entries[next++ & (KEYS - 1)]);
+    }
+}
@@ -0,0 +1,97 @@
+package org.lsm.bench;
+
+import org.lsm.db.dao.PersistentDao;
+import org.lsm.db.entry.Entry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch of random present keys looked up by one get per key and by one multiGet,
+ * in overlapping tables of level 0 or in disjoint tables of the bottom level after compaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MultiGetBenchmark {
+    @Param({"8", "32"})
+    private int tables;
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    @Param({"false", "true"})
+    private boolean compacted;
+
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    @Param("16")
+    private int keySize;
+
+    @Param("100")
+    private int valueSize;
+
+    @Param("20000")
+    private int rowsPerTable;
+
+    private Path dir;
+    private PersistentDao dao;
+    private List<MemorySegment> batch;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        dir = BenchmarkData.createDirectory();
+        BenchmarkData.fill(dir, tables, rowsPerTable, keySize, valueSize);
+        if (compacted) {
+            try (PersistentDao compacting = new PersistentDao(BenchmarkData.config(dir).build())) {
+                compacting.compact();
+            }
+        }
+        dao = new PersistentDao(BenchmarkData.config(dir).parallelMultiGet(parallel).build());
+    }
+
+    @Setup(Level.Invocation)
+    public void nextBatch() {
+        int keys = tables * rowsPerTable;
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(BenchmarkData.key(2L * ThreadLocalRandom.current().nextInt(keys), keySize));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        dao.close();
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public List<Entry<MemorySegment>> getEach() {
+        List<Entry<MemorySegment>> entries = new ArrayList<>(batch.size());
+        for (MemorySegment key : batch) {
+            entries.add(dao.get(key));
+        }
+        return entries;
+    }
+
+    @Benchmark
+    public List<Entry<MemorySegment>> multiGet() {
+        return dao.multiGet(batch);
+    }
+}
@@ -0,0 +1,68 @@
+package org.lsm.bench;
+
+import org.lsm.db.dao.PersistentDao;
+import org.lsm.db.entry.Entry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point lookups of present and absent keys in overlapping SSTables of level 0.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PointGetBenchmark {
+    @Param({"1", "8", "32"})
+    private int tables;
+
+    @Param({"16", "64"})
+    private int keySize;
+
+    @Param({"100", "1000"})
+    private int valueSize;
+
+    @Param("20000")
+    private int rowsPerTable;
+
+    private Path dir;
+    private PersistentDao dao;
+    private int keys;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        dir = BenchmarkData.createDirectory();
+        BenchmarkData.fill(dir, tables, rowsPerTable, keySize, valueSize);
+        dao = new PersistentDao(BenchmarkData.config(dir).build());
+        keys = tables * rowsPerTable;
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        dao.close();
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public Entry<MemorySegment> hit() {
+        return dao.get(BenchmarkData.key(2L * ThreadLocalRandom.current().nextInt(keys), keySize));
+    }
+
+    @Benchmark
+    public Entry<MemorySegment> miss() {
+        return dao.get(BenchmarkData.key(2L * ThreadLocalRandom.current().nextInt(keys) + 1, keySize));
+    }
+}
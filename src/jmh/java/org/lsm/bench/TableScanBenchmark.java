@@ -0,0 +1,82 @@
+package org.lsm.bench;
+
+import org.lsm.db.entry.Entry;
+import org.lsm.db.iterator.Cursor;
+import org.lsm.db.table.DiskTable;
+import org.lsm.db.table.KeyComparator;
+import org.lsm.db.table.SSTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Full scan of one SSTable by iterator, which copies every row to heap entry, and by cursor.
+ * Run with -prof gc to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TableScanBenchmark {
+    @Param({"16", "64"})
+    private int keySize;
+
+    @Param({"100", "1000"})
+    private int valueSize;
+
+    @Param("200000")
+    private int rows;
+
+    private Path dir;
+    private DiskTable<MemorySegment> table;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        dir = BenchmarkData.createDirectory();
+        BenchmarkData.fill(dir, 1, rows, keySize, valueSize);
+        Path tablePath;
+        try (Stream<Path> files = Files.list(dir)) {
+            tablePath = files.filter(file -> file.getFileName().toString().startsWith("data-")).findFirst()
+                    .orElseThrow();
+        }
+        table = SSTable.open(tablePath, new KeyComparator(), 0, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        table.close();
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public void iterator(Blackhole blackhole) {
+        Iterator<Entry<MemorySegment>> iterator = table.iterator();
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+    }
+
+    @Benchmark
+    public void cursor(Blackhole blackhole) {
+        Cursor<MemorySegment> cursor = table.cursor();
+        for (cursor.seekToFirst(); cursor.isValid(); cursor.next()) {
+            blackhole.consume(cursor.key());
+            blackhole.consume(cursor.value());
+        }
+    }
+}
@@ -36,7 +36,7 @@ public class Main {
             dao.upsert(new BaseEntry<>(key, value));
             System.out.println(toString(dao.get(key).value())); // v00001
             dao.upsert(new BaseEntry<>(key, null));
-            System.out.println(dao.get(key).value() == null); // true
+            System.out.println(dao.get(key) == null); // true
         } catch (IOException ex) { // close + flush
             System.err.println(ex.getMessage());
         }
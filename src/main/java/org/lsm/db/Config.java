@@ -1,6 +1,193 @@
 package org.lsm.db;
 
+import org.lsm.db.compaction.CompactionStyle;
+import org.lsm.db.table.Compression;
+import org.lsm.db.table.MemTableType;
+import org.lsm.db.wal.SyncMode;
+
 import java.nio.file.Path;
 
-public record Config(Path basePath) {
+/**
+ * Settings of persistent dao.
+ * @param basePath directory with SSTables
+ * @param flushThresholdBytes size of memtable in bytes after which it is flushed in background
+ * @param maxImmutableMemTables amount of memtables waiting for flush after which writers are stalled
+ * @param syncMode when write-ahead log is forced to disk
+ * @param syncIntervalMillis period of forcing log in {@link SyncMode#INTERVAL} mode
+ * @param compactionStyle how tables are chosen for background compaction
+ * @param level0CompactionTrigger amount of tables in level 0 (or runs of similar size) which are compacted
+ * @param levelBaseBytes size of level 1 after which its tables are compacted into level 2
+ * @param levelSizeMultiplier ratio of sizes of the next and the current levels
+ * @param targetFileBytes size of key and values after which compaction starts the next output table
+ * @param compactionRateBytesPerSecond limit of compaction writes, zero means unlimited
+ * @param blockCacheBytes capacity of off-heap cache of SSTable blocks, zero disables cache
+ * @param compression codec of data blocks of new SSTables
+ * @param memTableType implementation of memtables
+ * @param maxSubCompactions amount of threads which merge disjoint key ranges of one compaction
+ * @param parallelMultiGet whether multiGet probes disjoint tables of one level on virtual threads
+ */
+public record Config(Path basePath, long flushThresholdBytes, int maxImmutableMemTables,
+                     SyncMode syncMode, long syncIntervalMillis,
+                     CompactionStyle compactionStyle, int level0CompactionTrigger, long levelBaseBytes,
+                     int levelSizeMultiplier, long targetFileBytes, long compactionRateBytesPerSecond,
+                     long blockCacheBytes, Compression compression, MemTableType memTableType,
+                     int maxSubCompactions, boolean parallelMultiGet) {
+    public static final long DEFAULT_FLUSH_THRESHOLD_BYTES = 4L << 20;
+    public static final int DEFAULT_MAX_IMMUTABLE_MEMTABLES = 2;
+    public static final SyncMode DEFAULT_SYNC_MODE = SyncMode.INTERVAL;
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 100;
+    public static final CompactionStyle DEFAULT_COMPACTION_STYLE = CompactionStyle.LEVELED;
+    public static final int DEFAULT_LEVEL0_COMPACTION_TRIGGER = 4;
+    public static final long DEFAULT_LEVEL_BASE_BYTES = 32L << 20;
+    public static final int DEFAULT_LEVEL_SIZE_MULTIPLIER = 10;
+    public static final long DEFAULT_TARGET_FILE_BYTES = 8L << 20;
+    public static final long DEFAULT_BLOCK_CACHE_BYTES = 8L << 20;
+    public static final Compression DEFAULT_COMPRESSION = Compression.NONE;
+    public static final MemTableType DEFAULT_MEM_TABLE_TYPE = MemTableType.SKIP_LIST;
+    public static final int DEFAULT_MAX_SUB_COMPACTIONS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    public Config {
+        requirePositive(flushThresholdBytes, "Flush threshold");
+        requirePositive(maxImmutableMemTables, "Amount of immutable memtables");
+        requirePositive(syncIntervalMillis, "Sync interval");
+        requirePositive(level0CompactionTrigger, "Level 0 compaction trigger");
+        requirePositive(levelBaseBytes, "Level base size");
+        requirePositive(targetFileBytes, "Target file size");
+        requirePositive(maxSubCompactions, "Amount of sub-compactions");
+        if (levelSizeMultiplier < 2) {
+            throw new IllegalArgumentException("Level size multiplier must be at least 2: " + levelSizeMultiplier);
+        }
+        if (compactionRateBytesPerSecond < 0) {
+            throw new IllegalArgumentException("Compaction rate must not be negative: "
+                    + compactionRateBytesPerSecond);
+        }
+        if (blockCacheBytes < 0) {
+            throw new IllegalArgumentException("Block cache size must not be negative: " + blockCacheBytes);
+        }
+    }
+
+    public Config(Path basePath) {
+        this(basePath, DEFAULT_FLUSH_THRESHOLD_BYTES, DEFAULT_MAX_IMMUTABLE_MEMTABLES,
+                DEFAULT_SYNC_MODE, DEFAULT_SYNC_INTERVAL_MILLIS,
+                DEFAULT_COMPACTION_STYLE, DEFAULT_LEVEL0_COMPACTION_TRIGGER, DEFAULT_LEVEL_BASE_BYTES,
+                DEFAULT_LEVEL_SIZE_MULTIPLIER, DEFAULT_TARGET_FILE_BYTES, 0,
+                DEFAULT_BLOCK_CACHE_BYTES, DEFAULT_COMPRESSION, DEFAULT_MEM_TABLE_TYPE, DEFAULT_MAX_SUB_COMPACTIONS,
+                false);
+    }
+
+    public static Builder builder(Path basePath) {
+        return new Builder(basePath);
+    }
+
+    private static void requirePositive(long value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+    }
+
+    public static final class Builder {
+        private final Path basePath;
+        private long flushThresholdBytes = DEFAULT_FLUSH_THRESHOLD_BYTES;
+        private int maxImmutableMemTables = DEFAULT_MAX_IMMUTABLE_MEMTABLES;
+        private SyncMode syncMode = DEFAULT_SYNC_MODE;
+        private long syncIntervalMillis = DEFAULT_SYNC_INTERVAL_MILLIS;
+        private CompactionStyle compactionStyle = DEFAULT_COMPACTION_STYLE;
+        private int level0CompactionTrigger = DEFAULT_LEVEL0_COMPACTION_TRIGGER;
+        private long levelBaseBytes = DEFAULT_LEVEL_BASE_BYTES;
+        private int levelSizeMultiplier = DEFAULT_LEVEL_SIZE_MULTIPLIER;
+        private long targetFileBytes = DEFAULT_TARGET_FILE_BYTES;
+        private long compactionRateBytesPerSecond;
+        private long blockCacheBytes = DEFAULT_BLOCK_CACHE_BYTES;
+        private Compression compression = DEFAULT_COMPRESSION;
+        private MemTableType memTableType = DEFAULT_MEM_TABLE_TYPE;
+        private int maxSubCompactions = DEFAULT_MAX_SUB_COMPACTIONS;
+        private boolean parallelMultiGet;
+
+        private Builder(Path basePath) {
+            this.basePath = basePath;
+        }
+
+        public Builder flushThresholdBytes(long flushThresholdBytes) {
+            this.flushThresholdBytes = flushThresholdBytes;
+            return this;
+        }
+
+        public Builder maxImmutableMemTables(int maxImmutableMemTables) {
+            this.maxImmutableMemTables = maxImmutableMemTables;
+            return this;
+        }
+
+        public Builder syncMode(SyncMode syncMode) {
+            this.syncMode = syncMode;
+            return this;
+        }
+
+        public Builder syncIntervalMillis(long syncIntervalMillis) {
+            this.syncIntervalMillis = syncIntervalMillis;
+            return this;
+        }
+
+        public Builder compactionStyle(CompactionStyle compactionStyle) {
+            this.compactionStyle = compactionStyle;
+            return this;
+        }
+
+        public Builder level0CompactionTrigger(int level0CompactionTrigger) {
+            this.level0CompactionTrigger = level0CompactionTrigger;
+            return this;
+        }
+
+        public Builder levelBaseBytes(long levelBaseBytes) {
+            this.levelBaseBytes = levelBaseBytes;
+            return this;
+        }
+
+        public Builder levelSizeMultiplier(int levelSizeMultiplier) {
+            this.levelSizeMultiplier = levelSizeMultiplier;
+            return this;
+        }
+
+        public Builder targetFileBytes(long targetFileBytes) {
+            this.targetFileBytes = targetFileBytes;
+            return this;
+        }
+
+        public Builder compactionRateBytesPerSecond(long compactionRateBytesPerSecond) {
+            this.compactionRateBytesPerSecond = compactionRateBytesPerSecond;
+            return this;
+        }
+
+        public Builder blockCacheBytes(long blockCacheBytes) {
+            this.blockCacheBytes = blockCacheBytes;
+            return this;
+        }
+
+        public Builder compression(Compression compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        public Builder memTableType(MemTableType memTableType) {
+            this.memTableType = memTableType;
+            return this;
+        }
+
+        public Builder maxSubCompactions(int maxSubCompactions) {
+            this.maxSubCompactions = maxSubCompactions;
+            return this;
+        }
+
+        public Builder parallelMultiGet(boolean parallelMultiGet) {
+            this.parallelMultiGet = parallelMultiGet;
+            return this;
+        }
+
+        public Config build() {
+            return new Config(basePath, flushThresholdBytes, maxImmutableMemTables,
+                    syncMode, syncIntervalMillis,
+                    compactionStyle, level0CompactionTrigger, levelBaseBytes,
+                    levelSizeMultiplier, targetFileBytes, compactionRateBytesPerSecond,
+                    blockCacheBytes, compression, memTableType, maxSubCompactions, parallelMultiGet);
+        }
+    }
 }
@@ -0,0 +1,229 @@
+package org.lsm.db.cache;
+
+import java.io.Closeable;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Size-bounded cache of SSTable blocks shared by all tables of dao.
+ * Blocks are copied into fixed-size slots of one off-heap region allocated in {@link Arena}.
+ * Slots are split between stripes, every stripe has its own lock, map of cached blocks and CLOCK hand:
+ * a hit sets reference bit of slot, eviction clears bits until it finds a slot which was not referenced since
+ * the previous turn of hand. Slot is pinned while reader uses it, pinned slots are not evicted.
+ * Blocks are keyed by table id from {@link #newTableId()} and block offset, since number of table may be reused
+ * when compacted table replaces file of its input.
+ */
+public final class BlockCache implements Closeable {
+    private static final int STRIPES = 16;
+
+    private final Arena arena;
+    private final MemorySegment region;
+    private final int slotSize;
+    private final Stripe[] stripes;
+    private final AtomicLong tableIds = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates cache of capacity bytes split into slots, zero capacity disables caching.
+     */
+    public BlockCache(long capacityBytes, int slotSize) {
+        long slots = capacityBytes / slotSize;
+        int stripesCount = (int) Math.min(STRIPES, slots);
+        int slotsPerStripe = stripesCount == 0 ? 0 : Math.toIntExact(slots / stripesCount);
+        this.slotSize = slotSize;
+        this.arena = Arena.ofShared();
+        this.region = arena.allocate((long) stripesCount * slotsPerStripe * slotSize, Long.BYTES);
+        this.stripes = new Stripe[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = new Stripe(i * slotsPerStripe, slotsPerStripe);
+        }
+    }
+
+    /**
+     * Returns unique id of opened table.
+     */
+    public long newTableId() {
+        return tableIds.incrementAndGet();
+    }
+
+    /**
+     * Applies reader to cached block, block is loaded and copied into cache on miss.
+     * Reader must not keep references to block after return, since slot may be reused.
+     * Blocks larger than slot and blocks of stripes with all slots pinned are passed to reader directly.
+     */
+    public <T> T read(long tableId, long offset, Supplier<MemorySegment> loader, Function<MemorySegment, T> reader) {
+        if (stripes.length == 0) {
+            return reader.apply(loader.get());
+        }
+        BlockKey key = new BlockKey(tableId, offset);
+        Stripe stripe = stripe(key);
+        int slot;
+        synchronized (stripe) {
+            slot = stripe.pin(key);
+        }
+        if (slot >= 0) {
+            hits.increment();
+        } else {
+            misses.increment();
+            MemorySegment block = loader.get();
+            if (block.byteSize() > slotSize) {
+                return reader.apply(block);
+            }
+            synchronized (stripe) {
+                slot = stripe.pin(key);
+                if (slot < 0) {
+                    slot = stripe.load(key, block);
+                }
+            }
+            if (slot < 0) {
+                return reader.apply(block);
+            }
+        }
+        try {
+            return reader.apply(region.asSlice((long) slot * slotSize, stripe.sizes[slot - stripe.firstSlot]));
+        } finally {
+            synchronized (stripe) {
+                stripe.pins[slot - stripe.firstSlot]--;
+            }
+        }
+    }
+
+    /**
+     * Returns heap copy of cached block or null without loading it.
+     * Scans use it to share hot blocks with point lookups without evicting them.
+     */
+    public MemorySegment copyIfPresent(long tableId, long offset) {
+        if (stripes.length == 0) {
+            return null;
+        }
+        BlockKey key = new BlockKey(tableId, offset);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            int slot = stripe.pin(key);
+            if (slot < 0) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            int size = stripe.sizes[slot - stripe.firstSlot];
+            MemorySegment copy = MemorySegment.ofArray(new byte[size]);
+            MemorySegment.copy(region, (long) slot * slotSize, copy, 0, size);
+            stripe.pins[slot - stripe.firstSlot]--;
+            return copy;
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long capacity() {
+        return region.byteSize();
+    }
+
+    @Override
+    public void close() {
+        if (arena.scope().isAlive()) {
+            arena.close();
+        }
+    }
+
+    private Stripe stripe(BlockKey key) {
+        return stripes[Math.floorMod(key.hashCode(), stripes.length)];
+    }
+
+    private record BlockKey(long tableId, long offset) {
+        @Override
+        public int hashCode() {
+            long hash = (tableId * 0x9E3779B97F4A7C15L) ^ offset;
+            hash ^= hash >>> 29;
+            hash *= 0xBF58476D1CE4E5B9L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    /**
+     * Slots of one stripe, guarded by its monitor.
+     */
+    private final class Stripe {
+        final int firstSlot;
+        final Map<BlockKey, Integer> slots = new HashMap<>();
+        final BlockKey[] keys;
+        final int[] sizes;
+        final int[] pins;
+        final boolean[] referenced;
+        int used;
+        int hand;
+
+        Stripe(int firstSlot, int slotsCount) {
+            this.firstSlot = firstSlot;
+            this.keys = new BlockKey[slotsCount];
+            this.sizes = new int[slotsCount];
+            this.pins = new int[slotsCount];
+            this.referenced = new boolean[slotsCount];
+        }
+
+        /**
+         * Pins slot of cached block and returns its index in region or -1.
+         */
+        int pin(BlockKey key) {
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                return -1;
+            }
+            pins[slot - firstSlot]++;
+            referenced[slot - firstSlot] = true;
+            return slot;
+        }
+
+        /**
+         * Copies loaded block into free or evicted slot and pins it, returns -1 if all slots are pinned.
+         */
+        int load(BlockKey key, MemorySegment source) {
+            int index = victim();
+            if (index < 0) {
+                return -1;
+            }
+            int slot = firstSlot + index;
+            MemorySegment.copy(source, 0, region, (long) slot * slotSize, source.byteSize());
+            keys[index] = key;
+            sizes[index] = (int) source.byteSize();
+            pins[index] = 1;
+            referenced[index] = true;
+            slots.put(key, slot);
+            return slot;
+        }
+
+        private int victim() {
+            if (used < keys.length) {
+                return used++;
+            }
+            for (int i = 0; i < 2 * keys.length; i++) {
+                int index = hand;
+                hand = (hand + 1) % keys.length;
+                if (pins[index] > 0) {
+                    continue;
+                }
+                if (referenced[index]) {
+                    referenced[index] = false;
+                    continue;
+                }
+                slots.remove(keys[index]);
+                keys[index] = null;
+                return index;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.lsm.db.compaction;
+
+import org.lsm.db.table.DiskTable;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tables chosen for merge.
+ * @param inputs tables from the newest to the oldest, merge prefers entries of earlier tables
+ * @param outputLevel level of merged tables
+ * @param bottommost true if deeper levels don't contain keys of inputs, so tombstones can be dropped
+ */
+public record Compaction(List<DiskTable<MemorySegment>> inputs, int outputLevel, boolean bottommost) {
+
+    /**
+     * Chooses at most ranges - 1 ascending keys which split inputs into key ranges with similar amount
+     * of data, split keys of all inputs are sorted and every n-th of them is taken.
+     */
+    public List<MemorySegment> splitPoints(int ranges, Comparator<MemorySegment> comparator) {
+        if (ranges < 2) {
+            return List.of();
+        }
+        List<MemorySegment> keys = new ArrayList<>();
+        for (DiskTable<MemorySegment> table : inputs) {
+            keys.addAll(table.splitKeys());
+        }
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        keys.sort(comparator);
+        List<MemorySegment> points = new ArrayList<>(ranges - 1);
+        for (int i = 1; i < ranges; i++) {
+            MemorySegment key = keys.get((int) ((long) i * keys.size() / ranges));
+            if (comparator.compare(key, keys.getFirst()) > 0
+                    && (points.isEmpty() || comparator.compare(key, points.getLast()) > 0)) {
+                points.add(key);
+            }
+        }
+        return points;
+    }
+}
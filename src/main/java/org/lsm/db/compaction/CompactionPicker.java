@@ -0,0 +1,22 @@
+package org.lsm.db.compaction;
+
+/**
+ * Chooses tables to compact according to {@link CompactionStyle}.
+ * Methods are called under write lock of dao, so implementations don't need synchronization.
+ */
+public interface CompactionPicker {
+    /**
+     * Checks if levels need compaction without changing state of picker.
+     */
+    boolean needsCompaction(Levels levels);
+
+    /**
+     * Returns the next compaction or null if levels are in shape.
+     */
+    Compaction pick(Levels levels);
+
+    /**
+     * Returns compaction of all tables into one sorted run without tombstones or null if there is nothing to merge.
+     */
+    Compaction full(Levels levels);
+}
@@ -0,0 +1,17 @@
+package org.lsm.db.compaction;
+
+/**
+ * How SSTables are chosen for background compaction.
+ */
+public enum CompactionStyle {
+    /**
+     * Flushed tables are merged into levels of non-overlapping tables, every level is
+     * {@link org.lsm.db.Config#levelSizeMultiplier()} times larger than the previous one.
+     */
+    LEVELED,
+
+    /**
+     * All tables are overlapping runs in level 0, runs of similar size are merged into one.
+     */
+    TIERED
+}
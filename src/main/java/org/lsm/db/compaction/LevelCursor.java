@@ -0,0 +1,86 @@
+package org.lsm.db.compaction;
+
+import org.lsm.db.entry.RangeTombstone;
+import org.lsm.db.iterator.TableCursor;
+import org.lsm.db.table.DiskTable;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cursor over range of non-overlapping level which walks its tables one after another,
+ * so merge sees the whole level as one source. Cursor of the next table is created when the previous one ends.
+ */
+final class LevelCursor implements TableCursor<MemorySegment> {
+    private final List<DiskTable<MemorySegment>> tables;
+    private final MemorySegment from;
+    private final boolean fromInclusive;
+    private final MemorySegment to;
+    private final boolean toInclusive;
+    private final boolean descending;
+    private final List<RangeTombstone<MemorySegment>> rangeTombstones;
+    private int next;
+    private TableCursor<MemorySegment> current;
+
+    /**
+     * Creates cursor over tables which intersect range, they are sorted by keys.
+     */
+    LevelCursor(List<DiskTable<MemorySegment>> tables, MemorySegment from, boolean fromInclusive,
+                MemorySegment to, boolean toInclusive, boolean descending) {
+        this.tables = descending ? tables.reversed() : tables;
+        this.from = from;
+        this.fromInclusive = fromInclusive;
+        this.to = to;
+        this.toInclusive = toInclusive;
+        this.descending = descending;
+        List<RangeTombstone<MemorySegment>> tombstones = new ArrayList<>();
+        for (DiskTable<MemorySegment> table : tables) {
+            tombstones.addAll(table.rangeTombstones());
+        }
+        this.rangeTombstones = tombstones;
+        nextTable();
+    }
+
+    @Override
+    public boolean isValid() {
+        return current != null;
+    }
+
+    @Override
+    public void next() {
+        current.next();
+        if (!current.isValid()) {
+            nextTable();
+        }
+    }
+
+    @Override
+    public MemorySegment key() {
+        return current.key();
+    }
+
+    @Override
+    public MemorySegment value() {
+        return current.value();
+    }
+
+    /**
+     * Tombstones of tables never cover keys of other tables of level, as tables don't overlap.
+     */
+    @Override
+    public List<RangeTombstone<MemorySegment>> rangeTombstones() {
+        return rangeTombstones;
+    }
+
+    private void nextTable() {
+        current = null;
+        while (current == null && next < tables.size()) {
+            TableCursor<MemorySegment> cursor = tables.get(next++)
+                    .rangeCursor(from, fromInclusive, to, toInclusive, descending);
+            if (cursor.isValid()) {
+                current = cursor;
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.lsm.db.compaction;
+
+import org.lsm.db.Config;
+import org.lsm.db.table.DiskTable;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compacts all tables of level 0 into level 1 when there are {@link Config#level0CompactionTrigger()} of them.
+ * Level i > 0 is compacted when it exceeds {@link Config#levelBaseBytes()} * multiplier<sup>i - 1</sup>:
+ * one of its tables is merged with overlapping tables of the next level. Tables of level are chosen in
+ * round-robin order by keys, so the whole key range is rewritten evenly.
+ */
+public class LeveledCompactionPicker implements CompactionPicker {
+    private final Config config;
+    private final Comparator<MemorySegment> comparator;
+    /**
+     * The greatest key of the last compacted table of every level.
+     */
+    private final MemorySegment[] compactPointers = new MemorySegment[Levels.MAX_LEVELS];
+
+    public LeveledCompactionPicker(Config config, Comparator<MemorySegment> comparator) {
+        this.config = config;
+        this.comparator = comparator;
+    }
+
+    @Override
+    public boolean needsCompaction(Levels levels) {
+        return levels.level(0).size() >= config.level0CompactionTrigger() || oversizedLevel(levels) > 0;
+    }
+
+    @Override
+    public Compaction pick(Levels levels) {
+        if (levels.level(0).size() >= config.level0CompactionTrigger()) {
+            List<DiskTable<MemorySegment>> level0 = new ArrayList<>(levels.level(0)).reversed();
+            return compaction(levels, level0, 1);
+        }
+        int level = oversizedLevel(levels);
+        if (level <= 0) {
+            return null;
+        }
+        DiskTable<MemorySegment> table = nextTable(levels.level(level), compactPointers[level]);
+        compactPointers[level] = table.maxKey();
+        return compaction(levels, List.of(table), level + 1);
+    }
+
+    @Override
+    public Compaction full(Levels levels) {
+        List<DiskTable<MemorySegment>> inputs = levels.newestFirst();
+        if (inputs.isEmpty() || (inputs.size() == 1 && inputs.getFirst().level() > 0)) {
+            return null;
+        }
+        return new Compaction(inputs, Math.max(1, levels.depth()), true);
+    }
+
+    /**
+     * Merges inputs with overlapping tables of output level.
+     */
+    private Compaction compaction(Levels levels, List<DiskTable<MemorySegment>> inputs, int outputLevel) {
+        MemorySegment min = null;
+        MemorySegment max = null;
+        for (DiskTable<MemorySegment> table : inputs) {
+            if (table.minKey() == null) {
+                continue;
+            }
+            if (min == null || comparator.compare(table.minKey(), min) < 0) {
+                min = table.minKey();
+            }
+            if (max == null || comparator.compare(table.maxKey(), max) > 0) {
+                max = table.maxKey();
+            }
+        }
+        if (min == null) {
+            return new Compaction(inputs, outputLevel, false);
+        }
+        List<DiskTable<MemorySegment>> all = new ArrayList<>(inputs);
+        all.addAll(levels.overlapping(outputLevel, min, max));
+        return new Compaction(all, outputLevel, !levels.overlapsDeeper(outputLevel, min, max));
+    }
+
+    /**
+     * Returns the first level after level 0 which exceeds its target size or -1.
+     * The last level is never compacted further.
+     */
+    private int oversizedLevel(Levels levels) {
+        long target = config.levelBaseBytes();
+        for (int level = 1; level < Levels.MAX_LEVELS - 1; level++) {
+            if (levels.levelBytes(level) > target) {
+                return level;
+            }
+            target *= config.levelSizeMultiplier();
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first table after pointer or the first table of level.
+     */
+    private DiskTable<MemorySegment> nextTable(List<DiskTable<MemorySegment>> level, MemorySegment pointer) {
+        if (pointer != null) {
+            for (DiskTable<MemorySegment> table : level) {
+                if (comparator.compare(table.minKey(), pointer) > 0) {
+                    return table;
+                }
+            }
+        }
+        return level.getFirst();
+    }
+}
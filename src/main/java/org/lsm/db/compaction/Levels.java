@@ -0,0 +1,415 @@
+package org.lsm.db.compaction;
+
+import org.lsm.db.entry.Entry;
+import org.lsm.db.exception.ReadFailureException;
+import org.lsm.db.iterator.TableCursor;
+import org.lsm.db.table.DiskTable;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable levels of SSTables.
+ * Level 0 contains overlapping tables from the oldest to the newest.
+ * Other levels contain non-overlapping tables sorted by keys, data of level is newer than data of the next level.
+ * Levels are a reference-counted version: the creator owns the first reference, readers retain levels while
+ * they read tables. Levels reference their tables, so table is closed when no version containing it is used.
+ */
+public final class Levels {
+    public static final int MAX_LEVELS = 7;
+
+    private final List<List<DiskTable<MemorySegment>>> levels;
+    private final Comparator<MemorySegment> comparator;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private Levels(List<List<DiskTable<MemorySegment>>> levels, Comparator<MemorySegment> comparator) {
+        this.levels = levels;
+        this.comparator = comparator;
+        for (List<DiskTable<MemorySegment>> level : levels) {
+            level.forEach(DiskTable::retain);
+        }
+    }
+
+    /**
+     * Distributes tables by their levels, level 0 is ordered by table numbers.
+     */
+    public static Levels of(Collection<DiskTable<MemorySegment>> tables, Comparator<MemorySegment> comparator) {
+        return distribute(tables, comparator, true);
+    }
+
+    /**
+     * Distributes tables by their levels, level 0 keeps order of tables from the oldest to the newest.
+     */
+    public static Levels ordered(List<DiskTable<MemorySegment>> tables, Comparator<MemorySegment> comparator) {
+        return distribute(tables, comparator, false);
+    }
+
+    private static Levels distribute(Collection<DiskTable<MemorySegment>> tables,
+                                     Comparator<MemorySegment> comparator, boolean sortLevel0) {
+        List<List<DiskTable<MemorySegment>>> levels = new ArrayList<>(MAX_LEVELS);
+        for (int i = 0; i < MAX_LEVELS; i++) {
+            levels.add(new ArrayList<>());
+        }
+        for (DiskTable<MemorySegment> table : tables) {
+            levels.get(Math.min(table.level(), MAX_LEVELS - 1)).add(table);
+        }
+        if (sortLevel0) {
+            levels.get(0).sort(Comparator.comparingInt(DiskTable::tableNumber));
+        }
+        for (int i = 1; i < MAX_LEVELS; i++) {
+            levels.get(i).sort(byMinKey(comparator));
+        }
+        return new Levels(freeze(levels), comparator);
+    }
+
+    /**
+     * Adds reference unless levels were already released by all owners.
+     * Returns false if tables may be closed, so caller should read newer levels.
+     */
+    public boolean tryRetain() {
+        int count = references.get();
+        while (count > 0) {
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+            count = references.get();
+        }
+        return false;
+    }
+
+    /**
+     * Removes reference, the last one releases all tables.
+     */
+    public void release() {
+        int count = references.decrementAndGet();
+        if (count == 0) {
+            for (List<DiskTable<MemorySegment>> level : levels) {
+                level.forEach(DiskTable::release);
+            }
+        } else if (count < 0) {
+            throw new IllegalStateException("Levels are already released");
+        }
+    }
+
+    public List<DiskTable<MemorySegment>> level(int level) {
+        return levels.get(level);
+    }
+
+    public long levelBytes(int level) {
+        return levels.get(level).stream().mapToLong(DiskTable::byteSize).sum();
+    }
+
+    /**
+     * Returns all tables from the newest to the oldest.
+     */
+    public List<DiskTable<MemorySegment>> newestFirst() {
+        List<DiskTable<MemorySegment>> tables = new ArrayList<>(levels.get(0));
+        Collections.reverse(tables);
+        for (int i = 1; i < MAX_LEVELS; i++) {
+            tables.addAll(levels.get(i));
+        }
+        return tables;
+    }
+
+    /**
+     * Returns cursors over range of level 0 tables from the newest to the oldest and one cursor for every deeper
+     * level which intersects range, so merge compares keys of as many sources as point lookup probes.
+     * Null bound means unbounded range.
+     */
+    public List<TableCursor<MemorySegment>> rangeCursors(MemorySegment from, boolean fromInclusive,
+                                                         MemorySegment to, boolean toInclusive, boolean descending) {
+        List<TableCursor<MemorySegment>> cursors = new ArrayList<>();
+        for (DiskTable<MemorySegment> table : levels.get(0).reversed()) {
+            cursors.add(table.rangeCursor(from, fromInclusive, to, toInclusive, descending));
+        }
+        for (int level = 1; level < MAX_LEVELS; level++) {
+            List<DiskTable<MemorySegment>> tables = new ArrayList<>();
+            for (DiskTable<MemorySegment> table : levels.get(level)) {
+                if (table.minKey() != null
+                        && (from == null || comparator.compare(table.maxKey(), from) >= 0)
+                        && (to == null || comparator.compare(table.minKey(), to) <= 0)) {
+                    tables.add(table);
+                }
+            }
+            if (!tables.isEmpty()) {
+                cursors.add(new LevelCursor(tables, from, fromInclusive, to, toInclusive, descending));
+            }
+        }
+        return cursors;
+    }
+
+    /**
+     * Looks up key in level 0 from the newest table and then in one table of every next level.
+     * Amount of searched tables is passed to consumer before return.
+     */
+    public Entry<MemorySegment> get(MemorySegment key, IntConsumer searchedTables) {
+        int searched = 0;
+        List<DiskTable<MemorySegment>> level0 = levels.get(0);
+        for (int i = level0.size() - 1; i >= 0; i--) {
+            searched++;
+            Entry<MemorySegment> entry = level0.get(i).get(key);
+            if (entry != null) {
+                searchedTables.accept(searched);
+                return entry;
+            }
+        }
+        for (int level = 1; level < MAX_LEVELS; level++) {
+            DiskTable<MemorySegment> table = find(levels.get(level), key);
+            if (table != null) {
+                searched++;
+                Entry<MemorySegment> entry = table.get(key);
+                if (entry != null) {
+                    searchedTables.accept(searched);
+                    return entry;
+                }
+            }
+        }
+        searchedTables.accept(searched);
+        return null;
+    }
+
+    /**
+     * Looks up sorted keys which entries are still null, like {@link #get(MemorySegment, IntConsumer)}
+     * for every key: level 0 from the newest table and then tables of every next level.
+     * Every table is probed once with all its keys, keys found in newer tables are not probed in older ones.
+     * Keys of deeper level are divided between tables as by {@link #find}: table gets keys from its least key
+     * up to the least key of the next table which are not after its greatest key.
+     * Tables of one deeper level are disjoint, so they are probed by executor in parallel if it isn't null.
+     */
+    public void getAll(List<MemorySegment> keys, List<Entry<MemorySegment>> entries, int unresolved,
+                       ExecutorService executor) {
+        List<DiskTable<MemorySegment>> level0 = levels.get(0);
+        for (int i = level0.size() - 1; unresolved > 0 && i >= 0; i--) {
+            unresolved -= level0.get(i).getAll(keys, entries, 0, keys.size());
+        }
+        for (int level = 1; unresolved > 0 && level < MAX_LEVELS; level++) {
+            List<Callable<Integer>> probes = new ArrayList<>();
+            List<DiskTable<MemorySegment>> tables = levels.get(level);
+            int start = 0;
+            for (int i = 0; i < tables.size() && start < keys.size(); i++) {
+                DiskTable<MemorySegment> table = tables.get(i);
+                if (table.minKey() == null) {
+                    continue;
+                }
+                while (start < keys.size() && comparator.compare(keys.get(start), table.minKey()) < 0) {
+                    start++;
+                }
+                MemorySegment nextMinKey = nextMinKey(tables, i);
+                int end = start;
+                while (end < keys.size()
+                        && (nextMinKey == null || comparator.compare(keys.get(end), nextMinKey) < 0)) {
+                    end++;
+                }
+                int contained = start;
+                while (contained < end && comparator.compare(keys.get(contained), table.maxKey()) <= 0) {
+                    contained++;
+                }
+                if (contained > start) {
+                    int from = start;
+                    int to = contained;
+                    probes.add(() -> table.getAll(keys, entries, from, to));
+                }
+                start = end;
+            }
+            unresolved -= executor == null || probes.size() < 2 ? probe(probes) : probe(probes, executor);
+        }
+    }
+
+    /**
+     * Returns the least key of the first non-empty table after the given one, or null.
+     */
+    private static MemorySegment nextMinKey(List<DiskTable<MemorySegment>> tables, int i) {
+        for (int j = i + 1; j < tables.size(); j++) {
+            if (tables.get(j).minKey() != null) {
+                return tables.get(j).minKey();
+            }
+        }
+        return null;
+    }
+
+    private static int probe(List<Callable<Integer>> probes) {
+        int found = 0;
+        for (Callable<Integer> probe : probes) {
+            try {
+                found += probe.call();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new ReadFailureException("Couldn't look up keys", ex);
+            }
+        }
+        return found;
+    }
+
+    private static int probe(List<Callable<Integer>> probes, ExecutorService executor) {
+        int found = 0;
+        try {
+            for (Future<Integer> result : executor.invokeAll(probes)) {
+                found += result.get();
+            }
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ReadFailureException("Couldn't look up keys", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ReadFailureException("Interrupted while looking up keys", ex);
+        }
+        return found;
+    }
+
+    /**
+     * Amount of tables in all levels.
+     */
+    public int tableCount() {
+        int count = 0;
+        for (List<DiskTable<MemorySegment>> level : levels) {
+            count += level.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns tables of level which key ranges intersect [min;max].
+     */
+    public List<DiskTable<MemorySegment>> overlapping(int level, MemorySegment min, MemorySegment max) {
+        List<DiskTable<MemorySegment>> result = new ArrayList<>();
+        for (DiskTable<MemorySegment> table : levels.get(level)) {
+            if (table.minKey() != null
+                    && comparator.compare(table.minKey(), max) <= 0
+                    && comparator.compare(table.maxKey(), min) >= 0) {
+                result.add(table);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks if levels after the given one contain keys from [min;max].
+     */
+    public boolean overlapsDeeper(int level, MemorySegment min, MemorySegment max) {
+        for (int i = level + 1; i < MAX_LEVELS; i++) {
+            if (!overlapping(i, min, max).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if tables of level after the first one overlap. It happens only after crash during compaction.
+     */
+    public boolean isOverlapping(int level) {
+        List<DiskTable<MemorySegment>> tables = levels.get(level);
+        for (int i = 1; i < tables.size(); i++) {
+            if (comparator.compare(tables.get(i - 1).maxKey(), tables.get(i).minKey()) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The deepest non-empty level or zero.
+     */
+    public int depth() {
+        for (int i = MAX_LEVELS - 1; i > 0; i--) {
+            if (!levels.get(i).isEmpty()) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns levels with flushed table as the newest table of level 0.
+     */
+    public Levels withFlushed(DiskTable<MemorySegment> table) {
+        List<List<DiskTable<MemorySegment>>> copy = new ArrayList<>(levels);
+        List<DiskTable<MemorySegment>> level0 = new ArrayList<>(levels.get(0));
+        level0.add(table);
+        copy.set(0, Collections.unmodifiableList(level0));
+        return new Levels(copy, comparator);
+    }
+
+    /**
+     * Returns levels where inputs of compaction are replaced by its outputs.
+     * Outputs in level 0 take the place of the newest input.
+     */
+    public Levels apply(Compaction compaction, List<DiskTable<MemorySegment>> outputs) {
+        Set<DiskTable<MemorySegment>> inputs = Collections.newSetFromMap(new IdentityHashMap<>());
+        inputs.addAll(compaction.inputs());
+        List<List<DiskTable<MemorySegment>>> copy = new ArrayList<>(MAX_LEVELS);
+        for (int i = 0; i < MAX_LEVELS; i++) {
+            List<DiskTable<MemorySegment>> level = new ArrayList<>();
+            List<DiskTable<MemorySegment>> tables = levels.get(i);
+            int newestInput = -1;
+            for (int j = 0; j < tables.size(); j++) {
+                if (inputs.contains(tables.get(j))) {
+                    newestInput = j;
+                }
+            }
+            for (int j = 0; j < tables.size(); j++) {
+                if (i == 0 && j == newestInput && compaction.outputLevel() == 0) {
+                    level.addAll(outputs);
+                }
+                if (!inputs.contains(tables.get(j))) {
+                    level.add(tables.get(j));
+                }
+            }
+            if (i == compaction.outputLevel() && i != 0) {
+                level.addAll(outputs);
+                level.sort(byMinKey(comparator));
+            }
+            copy.add(level);
+        }
+        return new Levels(freeze(copy), comparator);
+    }
+
+    /**
+     * Returns table of non-overlapping level which range contains key.
+     * Range of table may end with exclusive end of range tombstone which is the least key of the next table,
+     * so the last table starting not after key is chosen.
+     */
+    private DiskTable<MemorySegment> find(List<DiskTable<MemorySegment>> level, MemorySegment key) {
+        int l = 0;
+        int r = level.size() - 1;
+        while (l <= r) {
+            int mid = l + (r - l) / 2;
+            if (comparator.compare(level.get(mid).minKey(), key) <= 0) {
+                l = mid + 1;
+            } else {
+                r = mid - 1;
+            }
+        }
+        if (r < 0 || comparator.compare(level.get(r).maxKey(), key) < 0) {
+            return null;
+        }
+        return level.get(r);
+    }
+
+    private static Comparator<DiskTable<MemorySegment>> byMinKey(Comparator<MemorySegment> comparator) {
+        return (first, second) -> comparator.compare(first.minKey(), second.minKey());
+    }
+
+    private static List<List<DiskTable<MemorySegment>>> freeze(List<List<DiskTable<MemorySegment>>> levels) {
+        List<List<DiskTable<MemorySegment>>> frozen = new ArrayList<>(levels.size());
+        for (List<DiskTable<MemorySegment>> level : levels) {
+            frozen.add(Collections.unmodifiableList(level));
+        }
+        return Collections.unmodifiableList(frozen);
+    }
+}
@@ -0,0 +1,47 @@
+package org.lsm.db.compaction;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket limiting bytes per second written by compaction, so it doesn't starve flushes and reads of disk.
+ * Bucket holds at most one second of tokens.
+ */
+public class RateLimiter {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long bytesPerSecond;
+    private long available;
+    private long lastRefill;
+
+    /**
+     * Creates limiter, zero rate means unlimited.
+     */
+    public RateLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.available = bytesPerSecond;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Blocks until bytes can be written.
+     */
+    public synchronized void acquire(long bytes) {
+        if (bytesPerSecond == 0) {
+            return;
+        }
+        refill();
+        available -= bytes;
+        while (available < 0) {
+            LockSupport.parkNanos(Math.max(-available * NANOS_PER_SECOND / bytesPerSecond, 1));
+            refill();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double seconds = (double) (now - lastRefill) / NANOS_PER_SECOND;
+        available = (long) Math.min(bytesPerSecond, available + seconds * bytesPerSecond);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,80 @@
+package org.lsm.db.compaction;
+
+import org.lsm.db.Config;
+import org.lsm.db.table.DiskTable;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps all tables in level 0 as sorted runs. When there are {@link Config#level0CompactionTrigger()}
+ * adjacent runs of similar size, they are merged into one run, so every entry is rewritten
+ * about log<sub>trigger</sub>(total / flush size) times.
+ */
+public class TieredCompactionPicker implements CompactionPicker {
+    /**
+     * Runs are similar if the greatest of them is at most this times larger than the least.
+     */
+    private static final int SIZE_RATIO = 2;
+
+    private final Config config;
+
+    public TieredCompactionPicker(Config config) {
+        this.config = config;
+    }
+
+    @Override
+    public boolean needsCompaction(Levels levels) {
+        return pick(levels) != null;
+    }
+
+    /**
+     * Returns the newest window of at least trigger adjacent runs of similar size.
+     */
+    @Override
+    public Compaction pick(Levels levels) {
+        List<DiskTable<MemorySegment>> runs = levels.level(0);
+        int trigger = config.level0CompactionTrigger();
+        for (int end = runs.size(); end >= trigger; end--) {
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            int start = end;
+            while (start > 0) {
+                long size = Math.max(runs.get(start - 1).byteSize(), 1);
+                long newMin = Math.min(min, size);
+                long newMax = Math.max(max, size);
+                if (newMax > SIZE_RATIO * newMin) {
+                    break;
+                }
+                min = newMin;
+                max = newMax;
+                start--;
+            }
+            if (end - start >= trigger) {
+                return compaction(levels, runs.subList(start, end), start == 0);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Compaction full(Levels levels) {
+        List<DiskTable<MemorySegment>> runs = levels.level(0);
+        if (runs.size() <= 1 && levels.depth() == 0) {
+            return null;
+        }
+        if (levels.depth() > 0) {
+            return new Compaction(levels.newestFirst(), levels.depth(), true);
+        }
+        return compaction(levels, runs, true);
+    }
+
+    /**
+     * Tombstones are dropped only if the oldest run is merged and no tables are left in other levels.
+     */
+    private Compaction compaction(Levels levels, List<DiskTable<MemorySegment>> runs, boolean oldest) {
+        List<DiskTable<MemorySegment>> inputs = new ArrayList<>(runs).reversed();
+        return new Compaction(inputs, 0, oldest && levels.depth() == 0);
+    }
+}
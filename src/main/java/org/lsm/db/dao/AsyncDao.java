@@ -0,0 +1,223 @@
+package org.lsm.db.dao;
+
+import org.lsm.db.entry.Entry;
+import org.lsm.db.table.KeyComparator;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade of dao for callers which must not block: every request runs on its own virtual thread,
+ * so page faults of mapped tables and waits for memtable rotation park only that thread.
+ * At most maxConcurrentRequests requests touch dao at once, others wait for a permit.
+ * Flush, compaction and close run on a separate background thread and don't take request permits.
+ * Concurrent gets of the same key share one lookup. Writes detach pending lookups of their keys after they
+ * are applied, so a get started after a write completed never joins a lookup which could miss it.
+ * Keys and values must not be changed until returned future is completed.
+ */
+public final class AsyncDao {
+    private final Dao<MemorySegment, Entry<MemorySegment>> dao;
+    private final Semaphore permits;
+    private final ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService background = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "async-dao-background")
+    );
+    private final ConcurrentSkipListMap<MemorySegment, CompletableFuture<Entry<MemorySegment>>> pendingGets =
+            new ConcurrentSkipListMap<>(new KeyComparator());
+
+    public AsyncDao(Dao<MemorySegment, Entry<MemorySegment>> dao, int maxConcurrentRequests) {
+        if (maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("Amount of concurrent requests must be positive: "
+                    + maxConcurrentRequests);
+        }
+        this.dao = dao;
+        this.permits = new Semaphore(maxConcurrentRequests);
+    }
+
+    /**
+     * Returns entry by key or null, joins lookup of the same key if it is in progress.
+     */
+    public CompletableFuture<Entry<MemorySegment>> get(MemorySegment key) {
+        CompletableFuture<Entry<MemorySegment>> lookup = new CompletableFuture<>();
+        CompletableFuture<Entry<MemorySegment>> pending = pendingGets.putIfAbsent(key, lookup);
+        if (pending != null) {
+            return pending.copy();
+        }
+        try {
+            requests.execute(() -> {
+                try {
+                    lookup.complete(withPermit(() -> dao.get(key)));
+                } catch (Throwable ex) {
+                    lookup.completeExceptionally(ex);
+                } finally {
+                    pendingGets.remove(key, lookup);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            pendingGets.remove(key, lookup);
+            throw ex;
+        }
+        return lookup.copy();
+    }
+
+    public CompletableFuture<List<Entry<MemorySegment>>> multiGet(List<MemorySegment> keys) {
+        return request(() -> dao.multiGet(keys));
+    }
+
+    /**
+     * Returns scan of [from;to) which reads entries by pages of at most pageSize entries,
+     * so neither caller is blocked by iteration nor the whole range is kept in memory.
+     */
+    public Scan get(MemorySegment from, MemorySegment to, int pageSize) {
+        return new Scan(() -> dao.get(from, to), pageSize);
+    }
+
+    /**
+     * Returns scan of [from;to) from the greatest key, see {@link #get(MemorySegment, MemorySegment, int)}.
+     */
+    public Scan descending(MemorySegment from, MemorySegment to, int pageSize) {
+        return new Scan(() -> dao.descending(from, to), pageSize);
+    }
+
+    public CompletableFuture<Void> upsert(Entry<MemorySegment> entry) {
+        return request(() -> {
+            dao.upsert(entry);
+            pendingGets.remove(entry.key());
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> write(WriteBatch<MemorySegment> batch) {
+        return request(() -> {
+            dao.write(batch);
+            for (Entry<MemorySegment> entry : batch.entries()) {
+                pendingGets.remove(entry.key());
+            }
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteRange(MemorySegment from, MemorySegment to) {
+        return request(() -> {
+            dao.deleteRange(from, to);
+            if (pendingGets.comparator().compare(from, to) < 0) {
+                pendingGets.subMap(from, to).clear();
+            }
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> flush() {
+        return inBackground(dao::flush);
+    }
+
+    public CompletableFuture<Void> compact() {
+        return inBackground(dao::compact);
+    }
+
+    /**
+     * Stops accepting requests, waits for started ones and closes dao in background.
+     */
+    public CompletableFuture<Void> close() {
+        requests.shutdown();
+        CompletableFuture<Void> closed = inBackground(() -> {
+            try {
+                if (!requests.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                    throw new IOException("Requests are not finished");
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for requests", ex);
+            }
+            dao.close();
+        });
+        background.shutdown();
+        return closed;
+    }
+
+    private <T> CompletableFuture<T> request(Supplier<T> request) {
+        return CompletableFuture.supplyAsync(() -> withPermit(request), requests);
+    }
+
+    private <T> T withPermit(Supplier<T> request) {
+        permits.acquireUninterruptibly();
+        try {
+            return request.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private CompletableFuture<Void> inBackground(BackgroundTask task) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        background.execute(() -> {
+            try {
+                task.run();
+                result.complete(null);
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface BackgroundTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * Range read by pages, every page is read by its own request. Iterator of dao is opened by the first page
+     * and stays open between pages, so it pins tables until the range ends or scan is collected.
+     * Page with fewer than pageSize entries is the last one, the next page may be requested only after
+     * the previous one is completed.
+     */
+    public final class Scan {
+        private final Supplier<Iterator<Entry<MemorySegment>>> open;
+        private final int pageSize;
+        private Iterator<Entry<MemorySegment>> iterator;
+        private CompletableFuture<List<Entry<MemorySegment>>> page = CompletableFuture.completedFuture(List.of());
+
+        private Scan(Supplier<Iterator<Entry<MemorySegment>>> open, int pageSize) {
+            if (pageSize <= 0) {
+                throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+            }
+            this.open = open;
+            this.pageSize = pageSize;
+        }
+
+        /**
+         * Returns the next entries of range, empty page after the end.
+         */
+        public synchronized CompletableFuture<List<Entry<MemorySegment>>> nextPage() {
+            if (!page.isDone()) {
+                throw new IllegalStateException("Previous page is not completed");
+            }
+            page = request(this::readPage);
+            return page.copy();
+        }
+
+        private List<Entry<MemorySegment>> readPage() {
+            if (iterator == null) {
+                iterator = open.get();
+            }
+            List<Entry<MemorySegment>> entries = new ArrayList<>();
+            // Range which ends with full page is released now, as exhausted iterator releases tables.
+            while (iterator.hasNext() && entries.size() < pageSize) {
+                entries.add(iterator.next());
+            }
+            return entries;
+        }
+    }
+}
@@ -4,18 +4,35 @@ import org.lsm.db.entry.Entry;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 public interface Dao<D, E extends Entry<D>> extends Closeable {
 
     /**
      * Returns ordered iterator of entries with keys between from (inclusive) and to (exclusive).
+     * Returned entries are not bound to the iterator: they stay valid after it is exhausted or abandoned
+     * and after tables they were read from are compacted.
      * @param from lower bound of range (inclusive)
      * @param to upper bound of range (exclusive)
      * @return entries [from;to)
      */
     Iterator<E> get(D from, D to);
 
+    /**
+     * Returns iterator of entries with keys between from (inclusive) and to (exclusive) in descending order.
+     * Note: default implementation buffers the whole range.
+     * @param from lower bound of range (inclusive)
+     * @param to upper bound of range (exclusive)
+     * @return entries [from;to) from the greatest key
+     */
+    default Iterator<E> descending(D from, D to) {
+        List<E> entries = new ArrayList<>();
+        get(from, to).forEachRemaining(entries::add);
+        return entries.reversed().iterator();
+    }
+
     /**
      * Returns entry by key. Note: default implementation is far from optimal.
      * @param key entry`s key
@@ -34,6 +51,20 @@ public interface Dao<D, E extends Entry<D>> extends Closeable {
         return null;
     }
 
+    /**
+     * Returns entries of keys in order of keys, absent keys have null entries.
+     * Note: default implementation looks up every key separately.
+     * @param keys keys to look up
+     * @return entries of keys
+     */
+    default List<E> multiGet(List<D> keys) {
+        List<E> entries = new ArrayList<>(keys.size());
+        for (D key : keys) {
+            entries.add(get(key));
+        }
+        return entries;
+    }
+
     /**
      * Returns ordered iterator of all entries with keys from (inclusive).
      * @param from lower bound of range (inclusive)
@@ -66,6 +97,25 @@ public interface Dao<D, E extends Entry<D>> extends Closeable {
      */
     void upsert(E entry);
 
+    /**
+     * Applies all entries of batch atomically: a reader sees either all of them or none.
+     * @param batch puts and deletes to apply
+     */
+    void write(WriteBatch<D> batch);
+
+    /**
+     * Deletes all entries with keys between from (inclusive) and to (exclusive) by one range tombstone.
+     * @param from lower bound of range (inclusive)
+     * @param to upper bound of range (exclusive)
+     */
+    void deleteRange(D from, D to);
+
+    /**
+     * Returns consistent read-only view of the current data, it must be closed after use.
+     * @return snapshot of dao
+     */
+    Snapshot<D, E> snapshot();
+
     /**
      * Persists data (no-op by default).
      */
@@ -1,37 +1,212 @@
 package org.lsm.db.dao;
 
 import org.lsm.db.entry.Entry;
+import org.lsm.db.iterator.MergeIterator;
 import org.lsm.db.table.KeyComparator;
 import org.lsm.db.table.MemTable;
+import org.lsm.db.table.MutableTable;
 
 import java.io.IOException;
 import java.lang.foreign.MemorySegment;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
 
 public class InMemoryDao implements Dao<MemorySegment, Entry<MemorySegment>> {
+    /**
+     * Unregisters sequences of scans and snapshots which were abandoned before the end or close.
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+    private final KeyComparator comparator = new KeyComparator();
     private final MemTable memTable;
+    /**
+     * Batches hold write lock, get validates optimistic stamp, scans and snapshots take sequence under read lock
+     * to see entries of batch all or none.
+     */
+    private final StampedLock batchLock = new StampedLock();
+    /**
+     * Sequence number of the last write, range tombstone hides only upserts with smaller sequence.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * Amounts of live scans and snapshots by their sequence numbers, memtable keeps versions they read.
+     */
+    private final ConcurrentSkipListMap<Long, Integer> snapshots = new ConcurrentSkipListMap<>();
 
     public InMemoryDao() {
-        this.memTable = new MemTable(new KeyComparator());
+        this.memTable = new MemTable(comparator);
     }
 
     @Override
     public Iterator<Entry<MemorySegment>> get(MemorySegment from, MemorySegment to) {
-        return memTable.tableIterator(from, true, to, false);
+        return scan(from, to, false);
     }
 
+    @Override
+    public Iterator<Entry<MemorySegment>> descending(MemorySegment from, MemorySegment to) {
+        return scan(from, to, true);
+    }
+
+    /**
+     * Reads memtable at sequence of batches, see {@link #snapshot()}, sequence is registered until the iterator ends.
+     */
+    private Iterator<Entry<MemorySegment>> scan(MemorySegment from, MemorySegment to, boolean descending) {
+        Runnable release = register(sequence.get());
+        return new PinnedIterator(iterator(from, to, batchSequence(), descending), CLEANER, release);
+    }
+
+    /**
+     * Returns entries visible to snapshot without tombstones.
+     */
+    private Iterator<Entry<MemorySegment>> iterator(MemorySegment from, MemorySegment to, long snapshot,
+                                                    boolean descending) {
+        return new MergeIterator(List.of(memTable.rangeCursor(from, true, to, false, snapshot, descending)),
+                comparator, false, descending);
+    }
+
+    /**
+     * Registers sequence and returns action which unregisters it, it doesn't reference caller.
+     */
+    private Runnable register(long registered) {
+        snapshots.merge(registered, 1, Integer::sum);
+        return () -> snapshots.computeIfPresent(registered, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Returns sequence of the last write while no batch is being inserted.
+     */
+    private long batchSequence() {
+        long stamp = batchLock.readLock();
+        try {
+            return sequence.get();
+        } finally {
+            batchLock.unlockRead(stamp);
+        }
+    }
+
+    private long oldestSnapshot() {
+        Map.Entry<Long, Integer> oldest = snapshots.firstEntry();
+        return oldest == null ? MutableTable.NO_SNAPSHOTS : oldest.getKey();
+    }
+
+    /**
+     * Reads memtable at sequence taken under read lock of batches, so batches after it are not seen at all.
+     * Sequence taken before is registered until snapshot is closed: upserts which see it keep versions
+     * visible to snapshot, and upserts which don't see it are not newer than it.
+     */
+    @Override
+    public Snapshot<MemorySegment, Entry<MemorySegment>> snapshot() {
+        Runnable release = register(sequence.get());
+        return new MemorySnapshot(batchSequence(), release);
+    }
+
+    /**
+     * Returns null for deleted key, memtable returns tombstone for it.
+     */
     @Override
     public Entry<MemorySegment> get(MemorySegment key) {
-        return memTable.tableIterator(key, true, key, true).next();
+        long stamp = batchLock.tryOptimisticRead();
+        Entry<MemorySegment> entry = memTable.get(key);
+        if (!batchLock.validate(stamp)) {
+            stamp = batchLock.readLock();
+            try {
+                entry = memTable.get(key);
+            } finally {
+                batchLock.unlockRead(stamp);
+            }
+        }
+        return entry == null || entry.value() == null ? null : entry;
     }
 
     @Override
     public void upsert(Entry<MemorySegment> entry) {
-        memTable.upsert(entry);
+        memTable.upsert(entry, sequence.incrementAndGet(), oldestSnapshot());
+    }
+
+    /**
+     * Adds range tombstone to memtable, empty range deletes nothing.
+     */
+    @Override
+    public void deleteRange(MemorySegment from, MemorySegment to) {
+        if (comparator.compare(from, to) >= 0) {
+            return;
+        }
+        memTable.deleteRange(from, to, sequence.incrementAndGet());
+    }
+
+    @Override
+    public void write(WriteBatch<MemorySegment> batch) {
+        long stamp = batchLock.writeLock();
+        try {
+            memTable.upsertAll(batch.entries(), sequence.incrementAndGet(), oldestSnapshot());
+        } finally {
+            batchLock.unlockWrite(stamp);
+        }
     }
 
     @Override
     public void close() throws IOException {
         memTable.close();
     }
+
+    /**
+     * Reads memtable at sequence of snapshot, snapshot which is not closed is unregistered by cleaner.
+     */
+    private final class MemorySnapshot implements Snapshot<MemorySegment, Entry<MemorySegment>> {
+        private final long sequence;
+        private final Cleaner.Cleanable release;
+
+        MemorySnapshot(long sequence, Runnable release) {
+            this.sequence = sequence;
+            this.release = CLEANER.register(this, release);
+        }
+
+        @Override
+        public long sequence() {
+            return sequence;
+        }
+
+        @Override
+        public Entry<MemorySegment> get(MemorySegment key) {
+            try {
+                Entry<MemorySegment> entry = memTable.get(key, sequence);
+                return entry == null || entry.value() == null ? null : entry;
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        /**
+         * Iterator registers sequence of snapshot, so it keeps versions it reads after snapshot is closed.
+         */
+        @Override
+        public Iterator<Entry<MemorySegment>> get(MemorySegment from, MemorySegment to) {
+            return iterator(from, to, false);
+        }
+
+        @Override
+        public Iterator<Entry<MemorySegment>> descending(MemorySegment from, MemorySegment to) {
+            return iterator(from, to, true);
+        }
+
+        private Iterator<Entry<MemorySegment>> iterator(MemorySegment from, MemorySegment to, boolean descending) {
+            try {
+                Runnable release = register(sequence);
+                return new PinnedIterator(InMemoryDao.this.iterator(from, to, sequence, descending), CLEANER,
+                        release);
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        public void close() {
+            release.clean();
+        }
+    }
 }
@@ -1,125 +1,1258 @@
 package org.lsm.db.dao;
 
+import org.lsm.db.Config;
+import org.lsm.db.cache.BlockCache;
+import org.lsm.db.compaction.Compaction;
+import org.lsm.db.compaction.CompactionPicker;
+import org.lsm.db.compaction.CompactionStyle;
+import org.lsm.db.compaction.LeveledCompactionPicker;
+import org.lsm.db.compaction.Levels;
+import org.lsm.db.compaction.RateLimiter;
+import org.lsm.db.compaction.TieredCompactionPicker;
 import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
 import org.lsm.db.exception.FileChannelException;
+import org.lsm.db.iterator.Cursor;
+import org.lsm.db.iterator.MergeCursor;
 import org.lsm.db.iterator.MergeIterator;
-import org.lsm.db.table.Footer;
-import org.lsm.db.table.Handle;
+import org.lsm.db.iterator.RangeTombstoneIndex;
+import org.lsm.db.iterator.TableCursor;
+import org.lsm.db.manifest.Manifest;
+import org.lsm.db.metrics.CompactionEvent;
+import org.lsm.db.metrics.DaoMetrics;
+import org.lsm.db.metrics.FlushEvent;
+import org.lsm.db.table.AccessHint;
+import org.lsm.db.table.ArenaMemTable;
+import org.lsm.db.table.ChannelTableWriter;
+import org.lsm.db.table.DiskTable;
 import org.lsm.db.table.KeyComparator;
-import org.lsm.db.table.MMapTableWriter;
+import org.lsm.db.table.LazySSTable;
 import org.lsm.db.table.MemTable;
+import org.lsm.db.table.MemTableType;
+import org.lsm.db.table.MutableTable;
 import org.lsm.db.table.SSTable;
 import org.lsm.db.table.Table;
+import org.lsm.db.table.TableMeta;
 import org.lsm.db.table.TableWriter;
 import org.lsm.db.utils.Utils;
+import org.lsm.db.wal.SyncMode;
+import org.lsm.db.wal.WriteAheadLog;
 
 import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
 import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntConsumer;
 
 public class PersistentDao implements Dao<MemorySegment, Entry<MemorySegment>> {
+    /**
+     * Compaction asks rate limiter for tokens in chunks of this size.
+     */
+    private static final long RATE_LIMIT_CHUNK = 64L << 10;
+    /**
+     * Releases levels pinned by iterators and snapshots which were abandoned before the end or close.
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+
     /**
      * Path associated with SSTables.
      */
     private final Path path;
-    private final List<Table<MemorySegment>> tables;
-    private final MemTable memTable;
+    private final Config config;
     private final Comparator<MemorySegment> comparator = new KeyComparator();
 
+    /**
+     * Upserts hold read lock, memtable rotation and installation of flushed and compacted tables hold write lock.
+     */
+    private final ReadWriteLock upsertLock = new ReentrantReadWriteLock();
+    private final Condition flushed = upsertLock.writeLock().newCondition();
+    /**
+     * Batches hold write lock while they are inserted into memtable,
+     * get validates optimistic stamp to see entries of batch all or none.
+     */
+    private final StampedLock batchLock = new StampedLock();
+    private final ExecutorService background = Executors.newSingleThreadExecutor(r -> new Thread(r, "dao-background"));
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> new Thread(r, "dao-compaction"));
+    /**
+     * Threads merging key ranges of one compaction, null if compaction is not divided.
+     */
+    private final ExecutorService subCompactor;
+    /**
+     * Virtual threads probing tables of one level by multiGet, null if tables are probed sequentially.
+     */
+    private final ExecutorService multiGetExecutor;
+    private final CompactionPicker picker;
+    private final RateLimiter rateLimiter;
+    private final BlockCache blockCache;
+    private final DaoMetrics metrics;
+    private final AtomicReference<Exception> backgroundError = new AtomicReference<>();
+    private final ScheduledExecutorService logSyncer;
+    private final Manifest manifest;
+    private final AtomicInteger nextTableNumber = new AtomicInteger(1);
+    /**
+     * Sequence number of the last logged write. It is taken by write-ahead log under its append lock,
+     * so sequences grow in order of log records, and the write is inserted into memtable after it is logged.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * Sequence numbers of batches which are logged but not yet inserted, scans don't read at or after them.
+     */
+    private final ConcurrentSkipListSet<Long> pendingBatches = new ConcurrentSkipListSet<>();
+    /**
+     * Amounts of live snapshots by their sequence numbers.
+     */
+    private final ConcurrentSkipListMap<Long, Integer> snapshots = new ConcurrentSkipListMap<>();
+    private volatile State state;
+    private boolean closed;
+    private boolean compactionScheduled;
+
     public PersistentDao(Path path) {
-        this.memTable = new MemTable(comparator);
-        this.path = path;
-        this.tables = createAllTables();
+        this(new Config(path));
     }
 
+    public PersistentDao(Config config) {
+        this.config = config;
+        this.path = config.basePath();
+        try {
+            Files.createDirectories(path);
+        } catch (IOException ex) {
+            throw new FileChannelException("Couldn't create directory " + path, ex);
+        }
+        this.picker = config.compactionStyle() == CompactionStyle.TIERED
+                ? new TieredCompactionPicker(config)
+                : new LeveledCompactionPicker(config, comparator);
+        this.rateLimiter = new RateLimiter(config.compactionRateBytesPerSecond());
+        this.subCompactor = config.maxSubCompactions() == 1
+                ? null
+                : Executors.newFixedThreadPool(config.maxSubCompactions(), r -> new Thread(r, "dao-subcompaction"));
+        this.multiGetExecutor = config.parallelMultiGet() ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        this.blockCache = new BlockCache(config.blockCacheBytes(), TableWriter.BLOCK_SIZE);
+        this.metrics = new DaoMetrics(this::memTableBytes, () -> state.levels().tableCount());
+        List<Integer> walNumbers = Utils.walNumbers(path);
+        if (!walNumbers.isEmpty()) {
+            nextTableNumber.set(walNumbers.getLast() + 1);
+        }
+        Path manifestPath = Utils.manifestPath(path);
+        Levels levels = Files.exists(manifestPath) ? loadManifest(manifestPath) : repairLevels(createAllTables());
+        this.manifest = Manifest.create(manifestPath, tableMetas(levels), nextTableNumber.get());
+        levels = recoverLogs(levels, walNumbers);
+        this.state = new State(newMemTable(), newLog(), List.of(), levels);
+        if (config.syncMode() == SyncMode.INTERVAL) {
+            this.logSyncer = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "dao-wal-sync"));
+            logSyncer.scheduleWithFixedDelay(
+                    () -> runInBackground(() -> state.wal().sync()),
+                    config.syncIntervalMillis(),
+                    config.syncIntervalMillis(),
+                    TimeUnit.MILLISECONDS
+            );
+        } else {
+            this.logSyncer = null;
+        }
+        upsertLock.writeLock().lock();
+        try {
+            maybeScheduleCompaction();
+        } finally {
+            upsertLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Makes current memtable immutable and flushes it in background thread.
+     */
     @Override
     public void flush() {
-        //TableBuilder
-        Handle handle = new Handle(memTable.byteSize(), Utils.indexByteSize(memTable.rows()));
-        Footer footer = new Footer(handle);
-        //todo: initialize filter, metablocks, etc.
-        writeIterable(Utils.sstTablePath(path, tables.size()), memTable.iterator(), footer);
+        upsertLock.writeLock().lock();
+        try {
+            rotate(state.memTable());
+        } finally {
+            upsertLock.writeLock().unlock();
+        }
     }
 
+    /**
+     * Merges all SSTables into the bottom level in compaction thread, tombstones are dropped.
+     */
     @Override
-    public void compact() throws IOException {
-        Path compactPath = path.resolve("temp.txt");
-        Files.createFile(compactPath);
-        var iterator = mergeIterator(null, true, null, true);
-        long rows = tables.stream().mapToLong(Table::rows).sum();
-        long byteSize = tables.stream().mapToLong(Table::byteSize).sum();
-        Footer footer = new Footer(new Handle(byteSize, Utils.indexByteSize(rows)));
-        writeIterable(compactPath, iterator, footer);
-        Path tablePath = Utils.sstTablePath(path, 1);
-        deleteAllTables();
-        Files.move(compactPath, tablePath);
-        tables.add(memTable);
-        tables.add(new SSTable(tablePath, comparator, 1));
+    public void compact() {
+        compactor.execute(() -> runInBackground(() -> {
+            Compaction compaction;
+            upsertLock.writeLock().lock();
+            try {
+                compaction = picker.full(state.levels());
+            } finally {
+                upsertLock.writeLock().unlock();
+            }
+            if (compaction != null) {
+                runCompaction(compaction);
+            }
+        }));
     }
 
     @Override
     public void close() throws IOException {
-        if (memTable.rows() != 0) flush();
-        for (var table : tables) {
-            table.close();
+        upsertLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            rotate(state.memTable());
+        } finally {
+            upsertLock.writeLock().unlock();
+        }
+        if (logSyncer != null) {
+            logSyncer.shutdown();
+        }
+        awaitTermination(background);
+        awaitTermination(compactor);
+        if (subCompactor != null) {
+            awaitTermination(subCompactor);
+        }
+        if (multiGetExecutor != null) {
+            multiGetExecutor.shutdown();
+        }
+        if (state.memTable().isEmpty()) {
+            state.wal().delete();
+        } else {
+            state.wal().close();
+        }
+        manifest.close();
+        state.memTable().release();
+        state.flushing().forEach(MutableTable::release);
+        state.levels().release();
+        blockCache.close();
+        Exception error = backgroundError.get();
+        if (error != null) {
+            throw new IOException("Background flush or compaction failed", error);
         }
-        tables.clear();
     }
 
+    /**
+     * Returns cache of SSTable blocks with its hit and miss counters.
+     */
+    public BlockCache blockCache() {
+        return blockCache;
+    }
+
+    /**
+     * Returns latencies, amplification and sizes of dao.
+     */
+    public DaoMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns iterator which pins tables of current state until it is exhausted,
+     * so neither compaction nor flush frees memory under it. Iterator sees every batch all or none, see {@link #scan}.
+     * Entries are copied to heap by {@link MergeIterator}, so they stay valid after tables are released.
+     * Scan latency is recorded when the iterator is exhausted.
+     */
     @Override
     public Iterator<Entry<MemorySegment>> get(MemorySegment from, MemorySegment to) {
-        return mergeIterator(from, true, to, false);
+        return scan(from, to, false);
+    }
+
+    /**
+     * Merges descending iterators of tables, tables are pinned as by {@link #get(MemorySegment, MemorySegment)}.
+     */
+    @Override
+    public Iterator<Entry<MemorySegment>> descending(MemorySegment from, MemorySegment to) {
+        return scan(from, to, true);
+    }
+
+    /**
+     * Pins current state and reads its memtables at sequence taken under read lock of batches, so batches
+     * after it are not seen at all. Tables are pinned first, so levels don't contain writes after the sequence.
+     * Sequence taken before is registered as snapshot until the iterator is released: upserts which see it
+     * keep versions visible to scan, and upserts which don't see it are not newer than it
+     * or keep versions visible before pending batches, see {@link #oldestSnapshot(long)}.
+     */
+    private Iterator<Entry<MemorySegment>> scan(MemorySegment from, MemorySegment to, boolean descending) {
+        long start = System.nanoTime();
+        long registered = visibleSequence();
+        snapshots.merge(registered, 1, Integer::sum);
+        State pinned;
+        try {
+            pinned = pin();
+        } catch (RuntimeException ex) {
+            snapshots.computeIfPresent(registered, (key, count) -> count == 1 ? null : count - 1);
+            throw ex;
+        }
+        long snapshot;
+        long stamp = batchLock.readLock();
+        try {
+            snapshot = visibleSequence();
+        } finally {
+            batchLock.unlockRead(stamp);
+        }
+        return pinnedIterator(pinned, new SnapshotRelease(snapshots, registered, pinned),
+                () -> metrics.recordScan(System.nanoTime() - start), from, to, snapshot, descending);
     }
 
+    /**
+     * Looks up key without locks, lookup is repeated under read lock of batches if batch was applied meanwhile.
+     * Tables are pinned during lookup, returned entry is copied to heap, so it doesn't point to them.
+     * Searched tables are recorded once, by the lookup which result is returned.
+     */
     @Override
     public Entry<MemorySegment> get(MemorySegment key) {
-        return mergeIterator(key, true, key, true).next();
+        long start = System.nanoTime();
+        State current = pin();
+        Entry<MemorySegment> entry;
+        int[] searched = new int[1];
+        try {
+            long stamp = batchLock.tryOptimisticRead();
+            entry = lookup(current, key, MutableTable.LATEST, tables -> searched[0] = tables);
+            if (!batchLock.validate(stamp)) {
+                stamp = batchLock.readLock();
+                try {
+                    entry = lookup(current, key, MutableTable.LATEST, tables -> searched[0] = tables);
+                } finally {
+                    batchLock.unlockRead(stamp);
+                }
+            }
+            entry = entry == null || entry.value() == null ? null : Utils.detach(entry);
+        } finally {
+            current.release();
+        }
+        metrics.recordTablesPerGet(searched[0]);
+        metrics.recordGet(System.nanoTime() - start);
+        return entry;
+    }
+
+    /**
+     * Sorts keys once and looks them up in every table in order of keys, see {@link Levels#getAll}.
+     * Batch is read from one pinned state and is repeated under read lock of batches like get.
+     */
+    @Override
+    public List<Entry<MemorySegment>> multiGet(List<MemorySegment> keys) {
+        long start = System.nanoTime();
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (first, second) -> comparator.compare(keys.get(first), keys.get(second)));
+        List<MemorySegment> sorted = new ArrayList<>(order.length);
+        for (int i : order) {
+            sorted.add(keys.get(i));
+        }
+        State current = pin();
+        List<Entry<MemorySegment>> found;
+        try {
+            long stamp = batchLock.tryOptimisticRead();
+            found = lookupAll(current, sorted);
+            if (!batchLock.validate(stamp)) {
+                stamp = batchLock.readLock();
+                try {
+                    found = lookupAll(current, sorted);
+                } finally {
+                    batchLock.unlockRead(stamp);
+                }
+            }
+            for (int i = 0; i < found.size(); i++) {
+                Entry<MemorySegment> entry = found.get(i);
+                found.set(i, entry == null || entry.value() == null ? null : Utils.detach(entry));
+            }
+        } finally {
+            current.release();
+        }
+        List<Entry<MemorySegment>> entries = new ArrayList<>(Collections.nCopies(order.length, null));
+        for (int i = 0; i < order.length; i++) {
+            entries.set(order[i], found.get(i));
+        }
+        metrics.recordMultiGet(System.nanoTime() - start);
+        return entries;
+    }
+
+    /**
+     * Looks up sorted keys in memtables and then in levels, returned entries include tombstones.
+     */
+    private List<Entry<MemorySegment>> lookupAll(State current, List<MemorySegment> keys) {
+        List<Entry<MemorySegment>> entries = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        List<MutableTable> flushing = current.flushing();
+        int unresolved = keys.size();
+        for (int i = 0; i < keys.size(); i++) {
+            Entry<MemorySegment> entry = current.memTable().get(keys.get(i), MutableTable.LATEST);
+            for (int j = flushing.size() - 1; entry == null && j >= 0; j--) {
+                entry = flushing.get(j).get(keys.get(i), MutableTable.LATEST);
+            }
+            if (entry != null) {
+                entries.set(i, entry);
+                unresolved--;
+            }
+        }
+        if (unresolved > 0) {
+            current.levels().getAll(keys, entries, unresolved, multiGetExecutor);
+        }
+        return entries;
+    }
+
+    /**
+     * Retains memtables and levels of current state. Flush and compaction release replaced tables after state
+     * is swapped, so tables which can't be retained belong to outdated state and the new one is read.
+     */
+    private State pin() {
+        while (true) {
+            State current = state;
+            if (current.tryRetain()) {
+                return current;
+            }
+            if (current == state) {
+                throw new IllegalStateException("Dao is closed");
+            }
+        }
+    }
+
+    /**
+     * Looks up key in memtables from the newest to the oldest and then in levels of SSTables.
+     * Stops at the first table containing key, so deleted key is not searched in older tables.
+     * Memtables return versions visible to snapshot. Amount of searched SSTables is passed to consumer.
+     */
+    private Entry<MemorySegment> lookup(State current, MemorySegment key, long snapshot,
+                                        IntConsumer searchedTables) {
+        Entry<MemorySegment> entry = current.memTable().get(key, snapshot);
+        List<MutableTable> flushing = current.flushing();
+        for (int i = flushing.size() - 1; entry == null && i >= 0; i--) {
+            entry = flushing.get(i).get(key, snapshot);
+        }
+        if (entry == null) {
+            entry = current.levels().get(key, searchedTables);
+        } else {
+            searchedTables.accept(0);
+        }
+        return entry;
     }
 
+    /**
+     * Appends entry to write-ahead log and inserts it into memtable with sequence number of its record.
+     * Memtable is rotated when it exceeds {@link Config#flushThresholdBytes()},
+     * writer waits only if there are already {@link Config#maxImmutableMemTables()} memtables to flush.
+     */
     @Override
     public void upsert(Entry<MemorySegment> entry) {
-        memTable.upsert(entry);
+        long start = System.nanoTime();
+        MutableTable memTable;
+        upsertLock.readLock().lock();
+        try {
+            State current = state;
+            long logged = current.wal().append(entry, sequence::incrementAndGet);
+            memTable = current.memTable();
+            memTable.upsert(entry, logged, oldestSnapshot(logged));
+        } finally {
+            upsertLock.readLock().unlock();
+        }
+        rotateIfFull(memTable);
+        metrics.recordUpsert(System.nanoTime() - start,
+                entry.key().byteSize() + (entry.value() == null ? 0 : entry.value().byteSize()));
+    }
+
+    /**
+     * Appends batch to write-ahead log as one record and inserts its entries into one memtable.
+     * Batch is pending from its sequence number is taken until it is inserted under write lock of batches,
+     * even if logging fails. Memtable is not rotated until the whole batch is inserted.
+     */
+    @Override
+    public void write(WriteBatch<MemorySegment> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Entry<MemorySegment>> entries = batch.entries();
+        MutableTable memTable;
+        upsertLock.readLock().lock();
+        try {
+            State current = state;
+            long[] taken = {-1};
+            long logged;
+            try {
+                logged = current.wal().appendBatch(entries, () -> taken[0] = nextBatchSequence());
+            } catch (RuntimeException ex) {
+                pendingBatches.remove(taken[0]);
+                throw ex;
+            }
+            memTable = current.memTable();
+            long stamp = batchLock.writeLock();
+            try {
+                memTable.upsertAll(entries, logged, oldestSnapshot(logged));
+            } finally {
+                pendingBatches.remove(logged);
+                batchLock.unlockWrite(stamp);
+            }
+        } finally {
+            upsertLock.readLock().unlock();
+        }
+        rotateIfFull(memTable);
+        long bytes = 0;
+        for (Entry<MemorySegment> entry : entries) {
+            bytes += entry.key().byteSize() + (entry.value() == null ? 0 : entry.value().byteSize());
+        }
+        metrics.recordWrite(System.nanoTime() - start, bytes);
+    }
+
+    /**
+     * Appends range deletion to write-ahead log and adds range tombstone to memtable.
+     * Deleted keys are hidden from reads at once, compactions drop them from tables they reach.
+     */
+    @Override
+    public void deleteRange(MemorySegment from, MemorySegment to) {
+        if (comparator.compare(from, to) >= 0) {
+            return;
+        }
+        MutableTable memTable;
+        upsertLock.readLock().lock();
+        try {
+            State current = state;
+            long logged = current.wal().appendRangeDelete(from, to, sequence::incrementAndGet);
+            memTable = current.memTable();
+            memTable.deleteRange(from, to, logged);
+        } finally {
+            upsertLock.readLock().unlock();
+        }
+        rotateIfFull(memTable);
+    }
+
+    /**
+     * Captures tables and sequence number while no upsert is in progress, so every version visible
+     * to snapshot is already inserted. Snapshot pins captured levels until it is closed,
+     * memtables keep versions needed by the oldest live snapshot.
+     */
+    @Override
+    public Snapshot<MemorySegment, Entry<MemorySegment>> snapshot() {
+        upsertLock.writeLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Dao is closed");
+            }
+            long snapshot = sequence.get();
+            snapshots.merge(snapshot, 1, Integer::sum);
+            return new DaoSnapshot(snapshot, pin());
+        } finally {
+            upsertLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the oldest sequence which versions must stay readable for write with the given sequence.
+     * Pending batch logged before the write holds back scans which may start after the write,
+     * so versions visible before the batch are kept as for snapshot.
+     */
+    private long oldestSnapshot(long sequence) {
+        Map.Entry<Long, Integer> oldest = snapshots.firstEntry();
+        long snapshot = oldest == null ? MutableTable.NO_SNAPSHOTS : oldest.getKey();
+        Long pending = pendingBatches.ceiling(Long.MIN_VALUE);
+        if (pending != null && pending < sequence) {
+            snapshot = Math.min(snapshot, pending - 1);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Takes sequence of batch, it is called under append lock of log, so only one sequence is taken at once
+     * and batch becomes pending before its sequence is visible.
+     */
+    private long nextBatchSequence() {
+        long next = sequence.get() + 1;
+        pendingBatches.add(next);
+        sequence.set(next);
+        return next;
+    }
+
+    /**
+     * Returns sequence which all writes up to are logged and all batches up to are inserted.
+     * Sequence is read before pending batches, as batch is pending before its sequence is taken.
+     */
+    private long visibleSequence() {
+        long last = sequence.get();
+        Long pending = pendingBatches.ceiling(Long.MIN_VALUE);
+        return pending == null ? last : Math.min(last, pending - 1);
     }
 
-    private void writeIterable(Path iterablePath, Iterator<Entry<MemorySegment>> iterator, Footer footer) {
-        try (TableWriter writer = new MMapTableWriter(iterablePath, footer)) {
-            while (iterator.hasNext()) {
-                var entry = iterator.next();
-                writer.writeIndexHandle(entry);
-                writer.writeEntry(entry);
+    private void rotateIfFull(MutableTable memTable) {
+        if (memTable.memoryUsage() >= config.flushThresholdBytes()) {
+            upsertLock.writeLock().lock();
+            try {
+                rotate(memTable);
+            } finally {
+                upsertLock.writeLock().unlock();
             }
-            writer.writeIndexHandle(Utils.EMPTY);
-            writer.writeFooter(footer);
+        }
+    }
+
+    /**
+     * Memory used by memtable accepting upserts and memtables waiting for flush.
+     */
+    private long memTableBytes() {
+        State current = state;
+        long bytes = current.memTable().memoryUsage();
+        for (MutableTable memTable : current.flushing()) {
+            bytes += memTable.memoryUsage();
+        }
+        return bytes;
+    }
+
+    /**
+     * Replaces memtable with the new one and schedules its flush. Must be called under write lock.
+     */
+    private void rotate(MutableTable memTable) {
+        while (state.memTable() == memTable && state.flushing().size() >= config.maxImmutableMemTables()
+                && backgroundError.get() == null) {
+            flushed.awaitUninterruptibly();
+        }
+        State current = state;
+        if (current.memTable() != memTable || memTable.isEmpty()) {
+            return;
+        }
+        List<MutableTable> flushing = new ArrayList<>(current.flushing());
+        flushing.add(memTable);
+        state = new State(newMemTable(), newLog(), flushing, current.levels());
+        WriteAheadLog wal = current.wal();
+        background.execute(() -> runInBackground(() -> flushMemTable(memTable, wal)));
+    }
+
+    private MutableTable newMemTable() {
+        int tableNumber = nextTableNumber.getAndIncrement();
+        return config.memTableType() == MemTableType.ARENA
+                ? new ArenaMemTable(tableNumber)
+                : new MemTable(comparator, tableNumber);
+    }
+
+    /**
+     * Creates log of the newest memtable.
+     */
+    private WriteAheadLog newLog() {
+        return new WriteAheadLog(Utils.walPath(path, nextTableNumber.get() - 1), config.syncMode());
+    }
+
+    /**
+     * Writes memtable to SSTable of level 0 and removes its log when the table is in manifest.
+     */
+    private void flushMemTable(MutableTable memTable, WriteAheadLog wal) throws IOException {
+        DiskTable<MemorySegment> ssTable = writeTable(memTable);
+        manifest.append(List.of(), List.of(TableMeta.of(ssTable)), nextTableNumber.get());
+        upsertLock.writeLock().lock();
+        try {
+            State current = state;
+            List<MutableTable> flushing = new ArrayList<>(current.flushing());
+            flushing.remove(memTable);
+            state = new State(current.memTable(), current.wal(), flushing, current.levels().withFlushed(ssTable));
+            current.levels().release();
+            memTable.release();
+            flushed.signalAll();
+            maybeScheduleCompaction();
+        } finally {
+            upsertLock.writeLock().unlock();
+        }
+        wal.delete();
+    }
+
+    /**
+     * Submits compaction if levels need it and no compaction is running. Must be called under write lock.
+     * Tables are picked when compaction starts, flushes only append tables to level 0 meanwhile.
+     */
+    private void maybeScheduleCompaction() {
+        if (compactionScheduled || closed || backgroundError.get() != null
+                || !picker.needsCompaction(state.levels())) {
+            return;
+        }
+        compactionScheduled = true;
+        compactor.execute(() -> runInBackground(this::compactInBackground));
+    }
+
+    private void compactInBackground() throws IOException {
+        boolean completed = false;
+        try {
+            Compaction compaction;
+            upsertLock.writeLock().lock();
+            try {
+                compaction = picker.pick(state.levels());
+            } finally {
+                upsertLock.writeLock().unlock();
+            }
+            if (compaction != null) {
+                runCompaction(compaction);
+            }
+            completed = true;
+        } finally {
+            upsertLock.writeLock().lock();
+            try {
+                compactionScheduled = false;
+                if (completed) {
+                    maybeScheduleCompaction();
+                }
+            } finally {
+                upsertLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes compacted tables, records replacement of inputs by outputs in manifest, installs outputs
+     * and removes files of inputs. Runs in compaction thread, so no other compaction changes the inputs meanwhile.
+     * Edits of flushes and compactions commute, so they are appended to manifest without write lock.
+     * Readers keep using replaced levels, inputs are closed when the last of them is released.
+     */
+    private void runCompaction(Compaction compaction) throws IOException {
+        List<DiskTable<MemorySegment>> outputs = writeCompaction(compaction);
+        List<Integer> removed = new ArrayList<>(compaction.inputs().size());
+        for (DiskTable<MemorySegment> input : compaction.inputs()) {
+            removed.add(input.tableNumber());
+        }
+        List<TableMeta> added = new ArrayList<>(outputs.size());
+        for (DiskTable<MemorySegment> output : outputs) {
+            added.add(TableMeta.of(output));
+        }
+        manifest.append(removed, added, nextTableNumber.get());
+        upsertLock.writeLock().lock();
+        try {
+            State current = state;
+            Levels levels = current.levels().apply(compaction, outputs);
+            state = new State(current.memTable(), current.wal(), current.flushing(), levels);
+            current.levels().release();
+        } finally {
+            upsertLock.writeLock().unlock();
+        }
+        removeInputs(compaction);
+    }
+
+    /**
+     * Merges inputs of compaction into tables with new numbers, outputs of levels after 0
+     * are split by {@link Config#targetFileBytes()}. Large compaction into level after 0 is divided
+     * into disjoint key ranges which are merged in parallel by {@link Config#maxSubCompactions()} threads.
+     * Tombstones are kept unless compaction is bottommost, otherwise they would reveal older values of deeper levels.
+     * Inputs keep random access hint for concurrent lookups, compaction reads ahead only the ranges it merges,
+     * as every scan does.
+     */
+    private List<DiskTable<MemorySegment>> writeCompaction(Compaction compaction) throws IOException {
+        List<DiskTable<MemorySegment>> inputs = compaction.inputs();
+        long byteSize = inputs.stream().mapToLong(Table::byteSize).sum();
+        long bytesRead = inputs.stream().mapToLong(DiskTable::fileSize).sum();
+        CompactionEvent event = new CompactionEvent(compaction.outputLevel(), inputs.size(), bytesRead);
+        List<MemorySegment> splitPoints = List.of();
+        if (subCompactor != null && compaction.outputLevel() > 0) {
+            long ranges = Math.min(config.maxSubCompactions(), byteSize / config.targetFileBytes());
+            splitPoints = compaction.splitPoints((int) ranges, comparator);
+        }
+        List<DiskTable<MemorySegment>> outputs = splitPoints.isEmpty()
+                ? writeRange(compaction, null, null)
+                : writeRanges(compaction, splitPoints);
+        long bytesWritten = outputs.stream().mapToLong(DiskTable::fileSize).sum();
+        metrics.recordCompaction(bytesRead, bytesWritten);
+        event.complete(outputs.size(), bytesWritten);
+        return outputs;
+    }
+
+    /**
+     * Merges ranges between split points in sub-compaction threads and returns their outputs in order of keys.
+     * All ranges are finished before the first failure is thrown, outputs of failed compaction
+     * are not in manifest and are removed on the next open.
+     */
+    private List<DiskTable<MemorySegment>> writeRanges(Compaction compaction, List<MemorySegment> splitPoints)
+            throws IOException {
+        List<Future<List<DiskTable<MemorySegment>>>> ranges = new ArrayList<>(splitPoints.size() + 1);
+        for (int i = 0; i <= splitPoints.size(); i++) {
+            MemorySegment from = i == 0 ? null : splitPoints.get(i - 1);
+            MemorySegment to = i == splitPoints.size() ? null : splitPoints.get(i);
+            ranges.add(subCompactor.submit(() -> writeRange(compaction, from, to)));
+        }
+        List<DiskTable<MemorySegment>> outputs = new ArrayList<>();
+        Exception error = null;
+        for (Future<List<DiskTable<MemorySegment>>> range : ranges) {
+            try {
+                outputs.addAll(range.get());
+            } catch (ExecutionException ex) {
+                if (error == null) {
+                    error = ex.getCause() instanceof Exception cause ? cause : ex;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if (error == null) {
+                    error = ex;
+                }
+            }
+        }
+        if (error instanceof IOException ioError) {
+            throw ioError;
+        }
+        if (error != null) {
+            throw new IOException("Sub-compaction failed", error);
+        }
+        return outputs;
+    }
+
+    /**
+     * Merges entries of inputs with keys from [from;to), null bound means unbounded range.
+     * Inputs which key ranges are wholly deleted by range tombstones of newer inputs are not read at all,
+     * other deleted entries are skipped by merge. Range tombstones are kept unless compaction is bottommost,
+     * every output gets them clipped to the key range it owns, which ends at the first key of the next output.
+     */
+    private List<DiskTable<MemorySegment>> writeRange(Compaction compaction, MemorySegment from, MemorySegment to)
+            throws IOException {
+        List<DiskTable<MemorySegment>> inputs = compaction.inputs();
+        RangeTombstoneIndex.Builder builder = new RangeTombstoneIndex.Builder(comparator);
+        for (int i = 0; i < inputs.size(); i++) {
+            for (RangeTombstone<MemorySegment> tombstone : inputs.get(i).rangeTombstones()) {
+                builder.add(tombstone, i);
+            }
+        }
+        RangeTombstoneIndex deleted = builder.build();
+        List<TableCursor<MemorySegment>> cursors = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            DiskTable<MemorySegment> table = inputs.get(i);
+            if (table.minKey() != null && !deleted.covers(table.minKey(), table.maxKey(), i)) {
+                cursors.add(table.rangeCursor(from, true, to, false, false));
+            }
+        }
+        MergeCursor merged = new MergeCursor(cursors, comparator, !compaction.bottommost(), false);
+        boolean keepTombstones = !compaction.bottommost() && !deleted.isEmpty();
+        boolean split = compaction.outputLevel() > 0;
+        long expectedRows = expectedRows(inputs, split);
+        List<DiskTable<MemorySegment>> outputs = new ArrayList<>();
+        MemorySegment ownedFrom = from;
+        boolean tombstonesOnly = keepTombstones && !merged.isValid()
+                && !deleted.ranges(from, to, Long.MAX_VALUE).isEmpty();
+        while (merged.isValid() || tombstonesOnly) {
+            tombstonesOnly = false;
+            int number = nextTableNumber.getAndIncrement();
+            Path tempPath = Utils.tempTablePath(path, number);
+            long written = 0;
+            long pending = 0;
+            try (TableWriter writer = new ChannelTableWriter(tempPath, compaction.outputLevel(),
+                    config.compression(), expectedRows)) {
+                while (merged.isValid() && (!split || written < config.targetFileBytes())) {
+                    MemorySegment key = merged.key();
+                    MemorySegment value = merged.value();
+                    writer.writeEntry(key, value);
+                    long size = key.byteSize() + (value == null ? 0 : value.byteSize());
+                    written += size;
+                    pending += size;
+                    if (pending >= RATE_LIMIT_CHUNK) {
+                        rateLimiter.acquire(pending);
+                        pending = 0;
+                    }
+                    merged.next();
+                }
+                MemorySegment ownedTo = merged.isValid()
+                        ? MemorySegment.ofArray(merged.key().toArray(ValueLayout.JAVA_BYTE))
+                        : to;
+                if (keepTombstones) {
+                    writer.writeRangeTombstones(deleted.ranges(ownedFrom, ownedTo, Long.MAX_VALUE));
+                }
+                ownedFrom = ownedTo;
+                writer.finish();
+            }
+            rateLimiter.acquire(pending);
+            outputs.add(installTable(tempPath, number));
+        }
+        return outputs;
+    }
+
+    /**
+     * Estimates rows of one output to size its filter: all rows of inputs, or rows of inputs which fit into
+     * {@link Config#targetFileBytes()} by their mean size if outputs are split.
+     */
+    private long expectedRows(List<DiskTable<MemorySegment>> inputs, boolean split) {
+        long rows = 0;
+        long byteSize = 0;
+        for (DiskTable<MemorySegment> input : inputs) {
+            rows += input.rows();
+            byteSize += input.byteSize();
+        }
+        if (!split || byteSize <= config.targetFileBytes()) {
+            return rows;
+        }
+        return Math.min(rows, config.targetFileBytes() / Math.max(1, byteSize / Math.max(1, rows)) + 1);
+    }
+
+    /**
+     * Removes files of compacted tables from the oldest to the newest. Before manifest exists,
+     * the remaining inputs after crash are newer than removed ones and can't reveal dropped entries.
+     * Mapped files stay readable after removal, their pages are dropped and refaulted by readers which still use them.
+     */
+    private void removeInputs(Compaction compaction) {
+        for (DiskTable<MemorySegment> input : compaction.inputs().reversed()) {
+            input.advise(AccessHint.DONT_NEED);
+            input.clear();
+        }
+    }
+
+    private void runInBackground(BackgroundTask task) {
+        try {
+            task.run();
+        } catch (Exception ex) {
+            backgroundError.compareAndSet(null, ex);
+            upsertLock.writeLock().lock();
+            try {
+                flushed.signalAll();
+            } finally {
+                upsertLock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) throws IOException {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                throw new IOException("Background tasks are not finished");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for background tasks", ex);
+        }
+    }
+
+    /**
+     * Writes memtable with its range tombstones to SSTable of level 0 with number of memtable.
+     */
+    private DiskTable<MemorySegment> writeTable(MutableTable memTable) {
+        int number = memTable.tableNumber();
+        List<RangeTombstone<MemorySegment>> tombstones = memTable.rangeTombstones(MutableTable.LATEST);
+        long rows = memTable.rows() + (long) tombstones.size();
+        FlushEvent event = new FlushEvent(number, rows);
+        Path tempPath = Utils.tempTablePath(path, number);
+        try (TableWriter writer = new ChannelTableWriter(tempPath, 0, config.compression(), memTable.rows())) {
+            Cursor<MemorySegment> cursor = memTable.cursor();
+            for (cursor.seekToFirst(); cursor.isValid(); cursor.next()) {
+                writer.writeEntry(cursor.key(), cursor.value());
+            }
+            writer.writeRangeTombstones(tombstones);
+            writer.finish();
         } catch (IOException ex) {
             throw new FileChannelException("Invalid initialize writer", ex);
         }
+        DiskTable<MemorySegment> table = installTable(tempPath, number);
+        metrics.recordFlush(table.fileSize());
+        event.complete(table.fileSize());
+        return table;
+    }
+
+    /**
+     * Renames completely written table to its permanent name, forces the rename to disk and opens it.
+     */
+    private DiskTable<MemorySegment> installTable(Path tempPath, int number) {
+        Path tablePath = Utils.sstTablePath(path, number);
+        try {
+            Files.move(tempPath, tablePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Utils.syncDirectory(path);
+        } catch (IOException ex) {
+            throw new FileChannelException("Couldn't rename table " + tempPath, ex);
+        }
+        return SSTable.open(tablePath, comparator, number, blockCache);
     }
 
-    private Iterator<Entry<MemorySegment>> mergeIterator(MemorySegment from, boolean fromInclusive,
-                                                         MemorySegment to, boolean toInclusive) {
-        var iterators = tables.stream()
-                .map(t -> t.tableIterator(from, fromInclusive, to, toInclusive))
-                .collect(Collectors.toList());
-        return new MergeIterator(iterators, comparator);
+    /**
+     * Merges tables of state which is already retained, release runs when iterator
+     * is exhausted or is collected by garbage collector, onEnd runs only when it is exhausted and may be null.
+     */
+    private Iterator<Entry<MemorySegment>> pinnedIterator(State pinned, Runnable release, Runnable onEnd,
+                                                          MemorySegment from, MemorySegment to, long snapshot,
+                                                          boolean descending) {
+        try {
+            return new PinnedIterator(mergeIterator(pinned, from, true, to, false, snapshot, descending), CLEANER,
+                    release, onEnd);
+        } catch (RuntimeException ex) {
+            release.run();
+            throw ex;
+        }
     }
 
-    private List<Table<MemorySegment>> createAllTables() {
-        var memStream = Stream.of(memTable);
-        var sstStream = IntStream
-                .rangeClosed(1, Utils.filesCount(path))
-                .mapToObj(n -> new SSTable(Utils.sstTablePath(path, n), comparator, n));
-        return Stream.concat(memStream, sstStream).collect(Collectors.toList());
+    /**
+     * Merges tables from the newest to the oldest, memtables return versions visible to snapshot.
+     * Descending merge returns keys from to down to from.
+     */
+    private Iterator<Entry<MemorySegment>> mergeIterator(State current, MemorySegment from, boolean fromInclusive,
+                                                         MemorySegment to, boolean toInclusive, long snapshot,
+                                                         boolean descending) {
+        List<TableCursor<MemorySegment>> cursors = new ArrayList<>();
+        List<MutableTable> memTables = new ArrayList<>();
+        memTables.add(current.memTable());
+        memTables.addAll(current.flushing().reversed());
+        for (MutableTable memTable : memTables) {
+            cursors.add(memTable.rangeCursor(from, fromInclusive, to, toInclusive, snapshot, descending));
+        }
+        cursors.addAll(current.levels().rangeCursors(from, fromInclusive, to, toInclusive, descending));
+        return new MergeIterator(cursors, comparator, false, descending);
     }
 
-    private void deleteAllTables() {
-        tables.forEach(Table::clear);
-        tables.clear();
+    /**
+     * Creates lazily opened tables of manifest. Files of tables which are not in manifest are removed:
+     * they are outputs written before crash or inputs which removal was interrupted.
+     */
+    private Levels loadManifest(Path manifestPath) {
+        Manifest.Replay replay;
+        try {
+            replay = Manifest.replay(manifestPath);
+        } catch (IOException ex) {
+            throw new FileChannelException("Couldn't read manifest " + manifestPath, ex);
+        }
+        nextTableNumber.set(Math.max(nextTableNumber.get(), replay.nextTableNumber()));
+        Set<Integer> live = new HashSet<>();
+        List<DiskTable<MemorySegment>> ssTables = new ArrayList<>(replay.tables().size());
+        for (TableMeta meta : replay.tables()) {
+            live.add(meta.number());
+            ssTables.add(new LazySSTable(meta, Utils.sstTablePath(path, meta.number()), comparator, blockCache));
+        }
+        try {
+            for (int number : Utils.tempTableNumbers(path)) {
+                Files.deleteIfExists(Utils.tempTablePath(path, number));
+            }
+            for (int number : Utils.sstTableNumbers(path)) {
+                if (!live.contains(number)) {
+                    Files.deleteIfExists(Utils.sstTablePath(path, number));
+                }
+            }
+        } catch (IOException ex) {
+            throw new FileChannelException("Couldn't remove tables which are not in manifest " + path, ex);
+        }
+        return Levels.ordered(ssTables, comparator);
+    }
+
+    /**
+     * Returns metadata of tables, level 0 is from the oldest to the newest.
+     */
+    private static List<TableMeta> tableMetas(Levels levels) {
+        List<TableMeta> metas = new ArrayList<>();
+        for (int level = 0; level < Levels.MAX_LEVELS; level++) {
+            for (DiskTable<MemorySegment> table : levels.level(level)) {
+                metas.add(TableMeta.of(table));
+            }
+        }
+        return metas;
+    }
+
+    /**
+     * Opens SSTables of directory without manifest and removes tables which writing was interrupted by crash.
+     */
+    private Levels createAllTables() {
+        List<DiskTable<MemorySegment>> ssTables = new ArrayList<>();
+        try {
+            for (int number : Utils.tempTableNumbers(path)) {
+                Files.deleteIfExists(Utils.tempTablePath(path, number));
+            }
+        } catch (IOException ex) {
+            throw new FileChannelException("Couldn't remove temporary tables in " + path, ex);
+        }
+        for (int number : Utils.sstTableNumbers(path)) {
+            ssTables.add(SSTable.open(Utils.sstTablePath(path, number), comparator, number, blockCache));
+            nextTableNumber.set(Math.max(nextTableNumber.get(), number + 1));
+        }
+        return Levels.of(ssTables, comparator);
+    }
+
+    /**
+     * Replays logs of memtables which were not flushed before crash into the new SSTable of level 0.
+     * Logs of memtables which SSTables are already in levels are just removed.
+     * Logs are removed only after the recovered table is in manifest.
+     */
+    private Levels recoverLogs(Levels levels, List<Integer> walNumbers) {
+        if (walNumbers.isEmpty()) {
+            return levels;
+        }
+        Set<Integer> tableNumbers = new HashSet<>();
+        for (DiskTable<MemorySegment> table : levels.newestFirst()) {
+            tableNumbers.add(table.tableNumber());
+        }
+        MutableTable recovered = newMemTable();
+        // Sequences of every log are shifted past the previous logs, logs of other runs start them anew.
+        AtomicLong base = new AtomicLong();
+        AtomicLong last = new AtomicLong();
+        try {
+            for (int number : walNumbers) {
+                if (!tableNumbers.contains(number)) {
+                    base.set(last.get());
+                    WriteAheadLog.replay(Utils.walPath(path, number),
+                            (entry, logged) -> recovered.upsert(entry, recovered(base, last, logged),
+                                    MutableTable.NO_SNAPSHOTS),
+                            (range, logged) -> recovered.deleteRange(range.from(), range.to(),
+                                    recovered(base, last, logged)));
+                }
+            }
+            if (!recovered.isEmpty()) {
+                DiskTable<MemorySegment> table = writeTable(recovered);
+                manifest.append(List.of(), List.of(TableMeta.of(table)), nextTableNumber.get());
+                Levels replaced = levels;
+                levels = levels.withFlushed(table);
+                replaced.release();
+            }
+            for (int number : walNumbers) {
+                Files.deleteIfExists(Utils.walPath(path, number));
+            }
+        } catch (IOException ex) {
+            throw new FileChannelException("Couldn't recover write-ahead logs in " + path, ex);
+        } finally {
+            recovered.release();
+        }
+        return levels;
+    }
+
+    /**
+     * Returns sequence of replayed record shifted by base of its log and remembers the greatest one.
+     */
+    private static long recovered(AtomicLong base, AtomicLong last, long logged) {
+        long sequence = base.get() + logged;
+        last.accumulateAndGet(sequence, Math::max);
+        return sequence;
+    }
+
+    /**
+     * Merges levels which tables overlap after crash between writing compaction outputs and removing inputs,
+     * it is possible only in directory without manifest.
+     * Outputs have greater numbers than inputs, so entries of tables with greater numbers win.
+     */
+    private Levels repairLevels(Levels levels) {
+        for (int level = 1; level < Levels.MAX_LEVELS; level++) {
+            if (!levels.isOverlapping(level)) {
+                continue;
+            }
+            List<DiskTable<MemorySegment>> inputs = new ArrayList<>(levels.level(level));
+            inputs.sort(Comparator.comparingInt(DiskTable<MemorySegment>::tableNumber).reversed());
+            Compaction compaction = new Compaction(inputs, level, false);
+            try {
+                List<DiskTable<MemorySegment>> outputs = writeCompaction(compaction);
+                Levels replaced = levels;
+                levels = levels.apply(compaction, outputs);
+                replaced.release();
+                removeInputs(compaction);
+            } catch (IOException ex) {
+                throw new FileChannelException("Couldn't repair level " + level + " in " + path, ex);
+            }
+        }
+        return levels;
+    }
+
+    @FunctionalInterface
+    private interface BackgroundTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * Immutable set of tables visible to readers.
+     * @param memTable memtable accepting upserts
+     * @param wal log of memtable accepting upserts
+     * @param flushing memtables waiting for flush from the oldest to the newest
+     * @param levels SSTables
+     */
+    private record State(MutableTable memTable, WriteAheadLog wal, List<MutableTable> flushing, Levels levels) {
+        /**
+         * Retains levels and memtables of state for reader, nothing is retained if one of them is already released.
+         */
+        boolean tryRetain() {
+            if (!levels.tryRetain()) {
+                return false;
+            }
+            if (!memTable.tryRetain()) {
+                levels.release();
+                return false;
+            }
+            for (int i = 0; i < flushing.size(); i++) {
+                if (!flushing.get(i).tryRetain()) {
+                    for (int j = 0; j < i; j++) {
+                        flushing.get(j).release();
+                    }
+                    memTable.release();
+                    levels.release();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void release() {
+            flushing.forEach(MutableTable::release);
+            memTable.release();
+            levels.release();
+        }
+    }
+
+    /**
+     * Unregisters sequence of snapshot or scan and releases its tables, it must not reference them itself.
+     */
+    private record SnapshotRelease(ConcurrentSkipListMap<Long, Integer> snapshots, long sequence, State pinned)
+            implements Runnable {
+        @Override
+        public void run() {
+            snapshots.computeIfPresent(sequence, (key, count) -> count == 1 ? null : count - 1);
+            pinned.release();
+        }
+    }
+
+    /**
+     * Tables captured by {@link #snapshot()}, memtables are read at sequence of snapshot.
+     * Snapshot which is not closed is released when it is collected by garbage collector.
+     */
+    private final class DaoSnapshot implements Snapshot<MemorySegment, Entry<MemorySegment>> {
+        private final long sequence;
+        private final State state;
+        private final Cleaner.Cleanable release;
+
+        DaoSnapshot(long sequence, State state) {
+            this.sequence = sequence;
+            this.state = state;
+            this.release = CLEANER.register(this, new SnapshotRelease(snapshots, sequence, state));
+        }
+
+        @Override
+        public long sequence() {
+            return sequence;
+        }
+
+        @Override
+        public Entry<MemorySegment> get(MemorySegment key) {
+            try {
+                Entry<MemorySegment> entry = lookup(state, key, sequence, metrics::recordTablesPerGet);
+                return entry == null || entry.value() == null ? null : Utils.detach(entry);
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        public Iterator<Entry<MemorySegment>> get(MemorySegment from, MemorySegment to) {
+            if (!state.tryRetain()) {
+                throw new IllegalStateException("Snapshot is closed");
+            }
+            return pinnedIterator(state, state::release, null, from, to, sequence, false);
+        }
+
+        @Override
+        public Iterator<Entry<MemorySegment>> descending(MemorySegment from, MemorySegment to) {
+            if (!state.tryRetain()) {
+                throw new IllegalStateException("Snapshot is closed");
+            }
+            return pinnedIterator(state, state::release, null, from, to, sequence, true);
+        }
+
+        @Override
+        public void close() {
+            release.clean();
+        }
     }
 }
@@ -0,0 +1,55 @@
+package org.lsm.db.dao;
+
+import org.lsm.db.entry.Entry;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.util.Iterator;
+
+/**
+ * Iterator which runs release by the end of iteration or by cleaner, if iterator is abandoned before the end.
+ * Release must not reference iterator itself. Action on end runs once when iteration ends, not by cleaner.
+ */
+final class PinnedIterator implements Iterator<Entry<MemorySegment>> {
+    private final Iterator<Entry<MemorySegment>> delegate;
+    private final Cleaner.Cleanable pin;
+    private Runnable onEnd;
+
+    PinnedIterator(Iterator<Entry<MemorySegment>> delegate, Cleaner cleaner, Runnable release) {
+        this(delegate, cleaner, release, null);
+    }
+
+    PinnedIterator(Iterator<Entry<MemorySegment>> delegate, Cleaner cleaner, Runnable release, Runnable onEnd) {
+        this.delegate = delegate;
+        this.pin = cleaner.register(this, release);
+        this.onEnd = onEnd;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            if (delegate.hasNext()) {
+                return true;
+            }
+            pin.clean();
+            if (onEnd != null) {
+                Runnable action = onEnd;
+                onEnd = null;
+                action.run();
+            }
+            return false;
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    @Override
+    public Entry<MemorySegment> next() {
+        try {
+            return delegate.next();
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.lsm.db.dao;
+
+import org.lsm.db.entry.Entry;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Read-only view of dao at the moment of {@link Dao#snapshot()}.
+ * Reads and iterators of snapshot don't see later upserts, flushes and compactions.
+ * Snapshot must be closed, otherwise dao keeps versions it may need.
+ */
+public interface Snapshot<D, E extends Entry<D>> extends Closeable {
+    /**
+     * Sequence number of the last upsert visible to snapshot.
+     */
+    long sequence();
+
+    /**
+     * Returns entry by key as it was when snapshot was taken.
+     * @param key entry`s key
+     * @return entry or null if key was absent or deleted
+     */
+    E get(D key);
+
+    /**
+     * Returns ordered iterator of entries with keys between from (inclusive) and to (exclusive).
+     * @param from lower bound of range (inclusive)
+     * @param to upper bound of range (exclusive)
+     * @return entries [from;to)
+     */
+    Iterator<E> get(D from, D to);
+
+    /**
+     * Returns iterator of entries with keys between from (inclusive) and to (exclusive) in descending order.
+     * @param from lower bound of range (inclusive)
+     * @param to upper bound of range (exclusive)
+     * @return entries [from;to) from the greatest key
+     */
+    Iterator<E> descending(D from, D to);
+
+    default Iterator<E> all() {
+        return get(null, null);
+    }
+
+    /**
+     * Releases versions kept for snapshot. Snapshot can't be read after dao is closed.
+     */
+    @Override
+    void close();
+}
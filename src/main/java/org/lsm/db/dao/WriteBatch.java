@@ -0,0 +1,60 @@
+package org.lsm.db.dao;
+
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Puts and deletes applied by {@link Dao#write(WriteBatch)} at once.
+ * Later operations on the same key override earlier ones. Batch is not thread-safe.
+ */
+public final class WriteBatch<D> {
+    private final List<Entry<D>> entries = new ArrayList<>();
+
+    /**
+     * Adds value for key, use {@link #delete(Object)} to remove key.
+     */
+    public WriteBatch<D> put(D key, D value) {
+        entries.add(new BaseEntry<>(Objects.requireNonNull(key, "key"), Objects.requireNonNull(value, "value")));
+        return this;
+    }
+
+    /**
+     * Adds tombstone for key.
+     */
+    public WriteBatch<D> delete(D key) {
+        entries.add(new BaseEntry<>(Objects.requireNonNull(key, "key"), null));
+        return this;
+    }
+
+    /**
+     * Adds entry as {@link Dao#upsert(Entry)} does, entry with null value is a tombstone.
+     */
+    public WriteBatch<D> upsert(Entry<D> entry) {
+        entries.add(Objects.requireNonNull(entry, "entry"));
+        return this;
+    }
+
+    /**
+     * Returns entries in order of adding.
+     */
+    public List<Entry<D>> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,11 @@
+package org.lsm.db.entry;
+
+/**
+ * Deletion of all keys from [from;to) which are older than the tombstone.
+ */
+public record RangeTombstone<Data>(Data from, Data to) {
+    @Override
+    public String toString() {
+        return "[" + from + ";" + to + ")";
+    }
+}
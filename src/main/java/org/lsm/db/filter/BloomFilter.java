@@ -0,0 +1,136 @@
+package org.lsm.db.filter;
+
+import org.lsm.db.exception.InvalidBlockException;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * Bloom filter of SSTable keys.
+ * Filter block has the following format: <var>word1 word2 ... word_n hashes</var>,
+ * where words are little-endian longs of bit set and hashes is an int amount of hash functions.
+ * Bits are chosen by double hashing of one 64-bit hash of key, see {@link #hash(MemorySegment)}.
+ */
+public final class BloomFilter {
+    public static final int BITS_PER_KEY = 10;
+    private static final ValueLayout.OfLong WORD = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt HASHES = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final long M = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+    private static final long SEED = 0x4C534D42L;
+    private static final int HASH_FUNCTIONS = Math.max(1, Math.min(30, (int) Math.round(BITS_PER_KEY * Math.log(2))));
+
+    private final MemorySegment bits;
+    private final long bitCount;
+    private final int hashes;
+
+    private BloomFilter(MemorySegment bits, int hashes) {
+        this.bits = bits;
+        this.bitCount = bits.byteSize() * Byte.SIZE;
+        this.hashes = hashes;
+    }
+
+    public static BloomFilter read(MemorySegment segment) {
+        long wordsSize = segment.byteSize() - Integer.BYTES;
+        if (wordsSize < Long.BYTES || wordsSize % Long.BYTES != 0) {
+            throw new InvalidBlockException("Invalid bloom filter block size: " + segment.byteSize());
+        }
+        int hashes = segment.get(HASHES, wordsSize);
+        if (hashes <= 0 || hashes > 30) {
+            throw new InvalidBlockException("Invalid amount of bloom filter hash functions: " + hashes);
+        }
+        return new BloomFilter(segment.asSlice(0, wordsSize), hashes);
+    }
+
+    /**
+     * Returns false only if key was definitely not added to the filter.
+     */
+    public boolean mayContain(MemorySegment key) {
+        long hash = hash(key);
+        long delta = (hash >>> 32) | (hash << 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = (hash & Long.MAX_VALUE) % bitCount;
+            if ((bits.get(WORD, (bit >>> 6) * Long.BYTES) & (1L << bit)) == 0) {
+                return false;
+            }
+            hash += delta;
+        }
+        return true;
+    }
+
+    /**
+     * Bit set of filter which keys are added while table is written. It is sized by the expected amount of keys
+     * in advance, so memory of writer doesn't grow with table, more keys than expected only raise false positives.
+     */
+    public static final class Builder {
+        private final long[] words;
+        private final long bitCount;
+
+        public Builder(long expectedKeys) {
+            this.words = new long[Math.toIntExact(words(expectedKeys))];
+            this.bitCount = (long) words.length * Long.SIZE;
+        }
+
+        public void add(MemorySegment key) {
+            long hash = hash(key);
+            long delta = (hash >>> 32) | (hash << 32);
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                long bit = (hash & Long.MAX_VALUE) % bitCount;
+                words[(int) (bit >>> 6)] |= 1L << bit;
+                hash += delta;
+            }
+        }
+
+        /**
+         * Size of filter block.
+         */
+        public long byteSize() {
+            return (long) words.length * Long.BYTES + Integer.BYTES;
+        }
+
+        /**
+         * Writes filter block to segment and returns new offset in it.
+         */
+        public long write(MemorySegment dest, long offset) {
+            for (int i = 0; i < words.length; i++) {
+                dest.set(WORD, offset + (long) i * Long.BYTES, words[i]);
+            }
+            dest.set(HASHES, offset + (long) words.length * Long.BYTES, HASH_FUNCTIONS);
+            return offset + byteSize();
+        }
+    }
+
+    /**
+     * MurmurHash64A of key bytes.
+     */
+    public static long hash(MemorySegment key) {
+        long size = key.byteSize();
+        long h = SEED ^ (size * M);
+        long offset = 0;
+        for (; offset + Long.BYTES <= size; offset += Long.BYTES) {
+            long k = key.get(WORD, offset);
+            k *= M;
+            k ^= k >>> R;
+            k *= M;
+            h ^= k;
+            h *= M;
+        }
+        if (offset < size) {
+            long tail = 0;
+            for (int i = 0; offset + i < size; i++) {
+                tail |= (key.get(ValueLayout.JAVA_BYTE, offset + i) & 0xFFL) << (8 * i);
+            }
+            h ^= tail;
+            h *= M;
+        }
+        h ^= h >>> R;
+        h *= M;
+        h ^= h >>> R;
+        return h;
+    }
+
+    private static long words(long keys) {
+        return Math.max(1, (keys * BITS_PER_KEY + Long.SIZE - 1) / Long.SIZE);
+    }
+}
@@ -0,0 +1,38 @@
+package org.lsm.db.iterator;
+
+/**
+ * Position in sorted table which is moved in place, so scan doesn't allocate entry per row.
+ * Key and value are views of table memory or of reusable buffers valid until the next move of cursor,
+ * caller copies what it keeps. Cursor is invalid until it is positioned by seek.
+ */
+public interface Cursor<T> {
+    /**
+     * Moves to the first entry of table.
+     */
+    void seekToFirst();
+
+    /**
+     * Moves to the first entry with key greater or equal to target.
+     */
+    void seek(T target);
+
+    /**
+     * Returns false if cursor is not positioned or moved past the last entry.
+     */
+    boolean isValid();
+
+    /**
+     * Moves to the next entry, cursor must be valid.
+     */
+    void next();
+
+    /**
+     * Key of current entry, valid until the next move.
+     */
+    T key();
+
+    /**
+     * Value of current entry or null for tombstone, valid until the next move.
+     */
+    T value();
+}
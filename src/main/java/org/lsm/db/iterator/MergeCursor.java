@@ -0,0 +1,190 @@
+package org.lsm.db.iterator;
+
+import org.lsm.db.entry.RangeTombstone;
+
+import java.lang.foreign.MemorySegment;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Merges sorted cursors of tables. Cursors are ordered from the newest table to the oldest one,
+ * so entry of the first cursor overrides entries with the same key of the next ones.
+ * Current positions of cursors are leaves of loser tree: inner node keeps the source which lost the match in it,
+ * so advancing the winner replays only its path to the root, about log(k) comparisons per entry.
+ * Equal keys are ordered by source index, so the newest entry wins and older ones are skipped right after it.
+ * Range tombstones of sources are indexed by source index, entry is skipped if a newer source deletes it.
+ * Descending merge of descending cursors plays the same matches with reversed order of keys,
+ * so the tree acts as max-heap while equal keys still go from the newest source.
+ * Key and value are views of the winner cursor, older versions are found by the runner-up of loser tree,
+ * so merge neither copies keys nor allocates per row.
+ */
+public final class MergeCursor implements TableCursor<MemorySegment> {
+    private final TableCursor<MemorySegment>[] cursors;
+    private final boolean[] exhausted;
+    private final int[] losers;
+    private final Comparator<MemorySegment> memoryComparator;
+    private final boolean keepTombstones;
+    private final boolean descending;
+    private final RangeTombstoneIndex rangeTombstones;
+    private int winner;
+
+    public MergeCursor(List<TableCursor<MemorySegment>> cursors, Comparator<MemorySegment> memoryComparator) {
+        this(cursors, memoryComparator, false, false);
+    }
+
+    /**
+     * Creates cursor which stops at tombstones too if keepTombstones is set,
+     * and merges cursors in descending order of keys if descending is set.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MergeCursor(List<TableCursor<MemorySegment>> cursors, Comparator<MemorySegment> memoryComparator,
+                       boolean keepTombstones, boolean descending) {
+        this.memoryComparator = memoryComparator;
+        this.keepTombstones = keepTombstones;
+        this.descending = descending;
+        int size = cursors.size();
+        this.cursors = cursors.toArray(new TableCursor[0]);
+        this.exhausted = new boolean[size];
+        this.rangeTombstones = indexRangeTombstones(this.cursors, memoryComparator);
+        for (int i = 0; i < size; i++) {
+            exhausted[i] = !this.cursors[i].isValid();
+        }
+        this.losers = new int[size];
+        this.winner = size == 0 ? -1 : build(1);
+        settle();
+    }
+
+    private static RangeTombstoneIndex indexRangeTombstones(TableCursor<MemorySegment>[] cursors,
+                                                            Comparator<MemorySegment> comparator) {
+        RangeTombstoneIndex.Builder builder = null;
+        for (int i = 0; i < cursors.length; i++) {
+            for (RangeTombstone<MemorySegment> tombstone : cursors[i].rangeTombstones()) {
+                if (builder == null) {
+                    builder = new RangeTombstoneIndex.Builder(comparator);
+                }
+                builder.add(tombstone, i);
+            }
+        }
+        return builder == null ? RangeTombstoneIndex.EMPTY : builder.build();
+    }
+
+    @Override
+    public boolean isValid() {
+        return winner >= 0 && !exhausted[winner];
+    }
+
+    /**
+     * Skips older versions of current key and entries deleted by newer sources.
+     */
+    @Override
+    public void next() {
+        skip();
+        settle();
+    }
+
+    @Override
+    public MemorySegment key() {
+        return cursors[winner].key();
+    }
+
+    @Override
+    public MemorySegment value() {
+        return cursors[winner].value();
+    }
+
+    /**
+     * Plays matches of subtree and returns its winner. Leaves are nodes from size to 2 * size - 1.
+     */
+    private int build(int node) {
+        if (node >= cursors.length) {
+            return node - cursors.length;
+        }
+        int left = build(2 * node);
+        int right = build(2 * node + 1);
+        if (less(left, right)) {
+            losers[node] = right;
+            return left;
+        }
+        losers[node] = left;
+        return right;
+    }
+
+    /**
+     * Returns true if source i goes before source j in order of merge, exhausted source goes last.
+     */
+    private boolean less(int i, int j) {
+        if (exhausted[i]) {
+            return false;
+        }
+        if (exhausted[j]) {
+            return true;
+        }
+        int compare = descending
+                ? memoryComparator.compare(cursors[j].key(), cursors[i].key())
+                : memoryComparator.compare(cursors[i].key(), cursors[j].key());
+        return compare < 0 || (compare == 0 && i < j);
+    }
+
+    /**
+     * Moves winner source to its next entry and replays matches on its path to the root.
+     */
+    private void advanceWinner() {
+        TableCursor<MemorySegment> cursor = cursors[winner];
+        cursor.next();
+        exhausted[winner] = !cursor.isValid();
+        int current = winner;
+        for (int node = (current + cursors.length) / 2; node > 0; node /= 2) {
+            if (less(losers[node], current)) {
+                int loser = current;
+                current = losers[node];
+                losers[node] = loser;
+            }
+        }
+        winner = current;
+    }
+
+    /**
+     * Moves past all versions of current key. Cursors may reuse memory of their keys, so the next version
+     * is checked before the winner moves: it is the runner-up, which becomes the winner after the move.
+     */
+    private void skip() {
+        while (true) {
+            int next = runnerUp();
+            boolean older = next >= 0 && !exhausted[next]
+                    && memoryComparator.compare(cursors[next].key(), key()) == 0;
+            advanceWinner();
+            if (!older) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the best of sources which lost matches on the path of winner, or -1 for single source.
+     */
+    private int runnerUp() {
+        int best = -1;
+        for (int node = (winner + cursors.length) / 2; node > 0; node /= 2) {
+            if (best < 0 || less(losers[node], best)) {
+                best = losers[node];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Stops at the newest version of key unless a newer source deletes it or it is a skipped tombstone.
+     */
+    private void settle() {
+        while (isValid()) {
+            if (!rangeTombstones.isEmpty() && rangeTombstones.minTag(key()) < winner) {
+                skip();
+                continue;
+            }
+            if (keepTombstones || value() != null) { // Tombstone check.
+                return;
+            }
+            skip();
+        }
+    }
+}
@@ -1,66 +1,63 @@
 package org.lsm.db.iterator;
 
+import org.lsm.db.entry.BaseEntry;
 import org.lsm.db.entry.Entry;
-import org.lsm.db.Candidate;
 
 import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.stream.Collectors;
+import java.util.NoSuchElementException;
 
+/**
+ * Iterator over {@link MergeCursor}, it is the only place where merged rows become entries.
+ * Key of entry is copied, as cursors may reuse memory of keys. Off-heap value is copied too, so entries
+ * stay valid after tables of merge are released; heap values are immutable and are returned as they are.
+ */
 public class MergeIterator implements Iterator<Entry<MemorySegment>> {
-    private final Queue<Candidate<MemorySegment>> queue;
-    private Entry<MemorySegment> minEntry;
-    private MemorySegment lowerBoundKey;
-    private final Comparator<MemorySegment> memoryComparator;
+    private final MergeCursor cursor;
 
-    public MergeIterator(List<TableIterator<MemorySegment>> iterators, Comparator<MemorySegment> memoryComparator) {
-        this.memoryComparator = memoryComparator;
-        this.queue = iterators.stream()
-                .map(it -> new Candidate<>(it, memoryComparator))
-                .filter(Candidate::nonLast)
-                .collect(Collectors.toCollection(PriorityBlockingQueue::new));
-        minEntry = getMinEntry();
+    public MergeIterator(List<TableCursor<MemorySegment>> cursors, Comparator<MemorySegment> memoryComparator) {
+        this(cursors, memoryComparator, false);
     }
 
-    private Entry<MemorySegment> getMinEntry() {
-        if (queue.isEmpty()) {
-            return null;
-        }
-        while (!queue.isEmpty()) {
-            var candidate = queue.poll();
-            if (lowerBoundKey == null || memoryComparator.compare(lowerBoundKey, candidate.entry().key()) < 0) {
-                lowerBoundKey = candidate.entry().key();
-                var entry = candidate.entry();
-                candidate.update();
-                if (candidate.nonLast()) {
-                    queue.add(candidate);
-                }
-                if (entry.value() != null) { // Tombstone check.
-                    return entry;
-                }
-            } else {
-                candidate.update();
-                if (candidate.nonLast()) {
-                    queue.add(candidate);
-                }
-            }
-        }
-        return null;
+    /**
+     * Creates iterator which returns tombstones too if keepTombstones is set.
+     */
+    public MergeIterator(List<TableCursor<MemorySegment>> cursors, Comparator<MemorySegment> memoryComparator,
+                         boolean keepTombstones) {
+        this(cursors, memoryComparator, keepTombstones, false);
+    }
+
+    /**
+     * Creates iterator which merges cursors in descending order of keys if descending is set.
+     */
+    public MergeIterator(List<TableCursor<MemorySegment>> cursors, Comparator<MemorySegment> memoryComparator,
+                         boolean keepTombstones, boolean descending) {
+        this.cursor = new MergeCursor(cursors, memoryComparator, keepTombstones, descending);
     }
 
     @Override
     public boolean hasNext() {
-        return this.minEntry != null;
+        return cursor.isValid();
     }
 
     @Override
     public Entry<MemorySegment> next() {
-        var entry = this.minEntry;
-        this.minEntry = getMinEntry();
+        if (!cursor.isValid()) {
+            throw new NoSuchElementException();
+        }
+        MemorySegment value = cursor.value();
+        Entry<MemorySegment> entry = new BaseEntry<>(copy(cursor.key()),
+                value == null || !value.isNative() ? value : copy(value));
+        cursor.next();
         return entry;
     }
+
+    private static MemorySegment copy(MemorySegment segment) {
+        byte[] copy = new byte[Math.toIntExact(segment.byteSize())];
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, 0, copy, 0, copy.length);
+        return MemorySegment.ofArray(copy);
+    }
 }
@@ -0,0 +1,76 @@
+package org.lsm.db.iterator;
+
+import org.lsm.db.entry.RangeTombstone;
+
+import java.lang.foreign.MemorySegment;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Ascending cursor over range of table cursor: it seeks the lower bound once and checks the upper one on every move.
+ * Null bound means unbounded range.
+ */
+public final class RangeCursor implements TableCursor<MemorySegment> {
+    private final Cursor<MemorySegment> cursor;
+    private final MemorySegment to;
+    private final boolean toInclusive;
+    private final Comparator<MemorySegment> comparator;
+    private final List<RangeTombstone<MemorySegment>> rangeTombstones;
+    private boolean valid;
+
+    public RangeCursor(Cursor<MemorySegment> cursor, MemorySegment from, boolean fromInclusive,
+                       MemorySegment to, boolean toInclusive, Comparator<MemorySegment> comparator,
+                       List<RangeTombstone<MemorySegment>> rangeTombstones) {
+        this.cursor = cursor;
+        this.to = to;
+        this.toInclusive = toInclusive;
+        this.comparator = comparator;
+        this.rangeTombstones = rangeTombstones;
+        if (from == null) {
+            cursor.seekToFirst();
+        } else {
+            cursor.seek(from);
+            if (!fromInclusive && cursor.isValid() && comparator.compare(cursor.key(), from) == 0) {
+                cursor.next();
+            }
+        }
+        this.valid = inRange();
+    }
+
+    @Override
+    public boolean isValid() {
+        return valid;
+    }
+
+    @Override
+    public void next() {
+        cursor.next();
+        valid = inRange();
+    }
+
+    @Override
+    public MemorySegment key() {
+        return cursor.key();
+    }
+
+    @Override
+    public MemorySegment value() {
+        return cursor.value();
+    }
+
+    @Override
+    public List<RangeTombstone<MemorySegment>> rangeTombstones() {
+        return rangeTombstones;
+    }
+
+    private boolean inRange() {
+        if (!cursor.isValid()) {
+            return false;
+        }
+        if (to == null) {
+            return true;
+        }
+        int compare = comparator.compare(cursor.key(), to);
+        return compare < 0 || (toInclusive && compare == 0);
+    }
+}
@@ -0,0 +1,217 @@
+package org.lsm.db.iterator;
+
+import org.lsm.db.entry.RangeTombstone;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Range tombstones split by their bounds into disjoint fragments, every fragment keeps sorted tags of tombstones
+ * which cover it. Tag is index of source in merge, where less index means newer table,
+ * or sequence number of memtable tombstone. Lookup of key is binary search of its fragment.
+ */
+public final class RangeTombstoneIndex {
+    public static final RangeTombstoneIndex EMPTY = new RangeTombstoneIndex(
+            null, new MemorySegment[0], new MemorySegment[0], new long[0][]
+    );
+
+    private final Comparator<MemorySegment> comparator;
+    private final MemorySegment[] starts;
+    private final MemorySegment[] ends;
+    private final long[][] tags;
+
+    private RangeTombstoneIndex(Comparator<MemorySegment> comparator, MemorySegment[] starts, MemorySegment[] ends,
+                                long[][] tags) {
+        this.comparator = comparator;
+        this.starts = starts;
+        this.ends = ends;
+        this.tags = tags;
+    }
+
+    /**
+     * Creates index of tombstones with the same tag.
+     */
+    public static RangeTombstoneIndex of(List<RangeTombstone<MemorySegment>> tombstones,
+                                         Comparator<MemorySegment> comparator) {
+        if (tombstones.isEmpty()) {
+            return EMPTY;
+        }
+        Builder builder = new Builder(comparator);
+        for (RangeTombstone<MemorySegment> tombstone : tombstones) {
+            builder.add(tombstone, 0);
+        }
+        return builder.build();
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    /**
+     * Returns the least tag of tombstones covering key or {@link Long#MAX_VALUE} if key isn't deleted.
+     */
+    public long minTag(MemorySegment key) {
+        int fragment = find(key);
+        return fragment < 0 ? Long.MAX_VALUE : tags[fragment][0];
+    }
+
+    /**
+     * Returns the greatest tag not greater than bound of tombstones covering key, or -1 if there is no such tag.
+     */
+    public long maxTag(MemorySegment key, long bound) {
+        int fragment = find(key);
+        if (fragment < 0) {
+            return -1;
+        }
+        long[] fragmentTags = tags[fragment];
+        for (int i = fragmentTags.length - 1; i >= 0; i--) {
+            if (fragmentTags[i] <= bound) {
+                return fragmentTags[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if every key of [min;max] is covered by tombstones with tags less than bound.
+     */
+    public boolean covers(MemorySegment min, MemorySegment max, long bound) {
+        int fragment = find(min);
+        if (fragment < 0) {
+            return false;
+        }
+        while (tags[fragment][0] < bound) {
+            if (comparator.compare(max, ends[fragment]) < 0) {
+                return true;
+            }
+            if (fragment + 1 == starts.length || comparator.compare(ends[fragment], starts[fragment + 1]) != 0) {
+                return false;
+            }
+            fragment++;
+        }
+        return false;
+    }
+
+    /**
+     * Returns disjoint ranges deleted by tombstones with tags not greater than bound in ascending order.
+     * Ranges are clipped to [from;to), null from or to means unbounded side.
+     */
+    public List<RangeTombstone<MemorySegment>> ranges(MemorySegment from, MemorySegment to, long bound) {
+        List<RangeTombstone<MemorySegment>> ranges = new ArrayList<>();
+        MemorySegment rangeFrom = null;
+        MemorySegment rangeTo = null;
+        for (int i = from == null ? 0 : firstEndingAfter(from); i < starts.length; i++) {
+            if (to != null && comparator.compare(starts[i], to) >= 0) {
+                break;
+            }
+            if (tags[i][0] > bound) {
+                continue;
+            }
+            MemorySegment start = from != null && comparator.compare(starts[i], from) < 0 ? from : starts[i];
+            MemorySegment end = to != null && comparator.compare(ends[i], to) > 0 ? to : ends[i];
+            if (rangeTo != null && comparator.compare(rangeTo, start) == 0) {
+                rangeTo = end;
+                continue;
+            }
+            if (rangeTo != null) {
+                ranges.add(new RangeTombstone<>(rangeFrom, rangeTo));
+            }
+            rangeFrom = start;
+            rangeTo = end;
+        }
+        if (rangeTo != null) {
+            ranges.add(new RangeTombstone<>(rangeFrom, rangeTo));
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns fragment containing key or -1.
+     */
+    private int find(MemorySegment key) {
+        int l = 0;
+        int r = starts.length - 1;
+        while (l <= r) {
+            int mid = l + (r - l) / 2;
+            if (comparator.compare(starts[mid], key) <= 0) {
+                l = mid + 1;
+            } else {
+                r = mid - 1;
+            }
+        }
+        return r < 0 || comparator.compare(key, ends[r]) >= 0 ? -1 : r;
+    }
+
+    private int firstEndingAfter(MemorySegment key) {
+        int l = 0;
+        int r = starts.length;
+        while (l < r) {
+            int mid = l + (r - l) / 2;
+            if (comparator.compare(ends[mid], key) <= 0) {
+                l = mid + 1;
+            } else {
+                r = mid;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Collects tagged tombstones and splits them into fragments by one sweep over their sorted bounds.
+     */
+    public static final class Builder {
+        private final Comparator<MemorySegment> comparator;
+        private final List<Bound> bounds = new ArrayList<>();
+
+        public Builder(Comparator<MemorySegment> comparator) {
+            this.comparator = comparator;
+        }
+
+        /**
+         * Adds tombstone, empty ranges are ignored.
+         */
+        public Builder add(RangeTombstone<MemorySegment> tombstone, long tag) {
+            if (comparator.compare(tombstone.from(), tombstone.to()) < 0) {
+                bounds.add(new Bound(tombstone.from(), tag, true));
+                bounds.add(new Bound(tombstone.to(), tag, false));
+            }
+            return this;
+        }
+
+        public RangeTombstoneIndex build() {
+            if (bounds.isEmpty()) {
+                return EMPTY;
+            }
+            bounds.sort((first, second) -> comparator.compare(first.key(), second.key()));
+            TreeMap<Long, Integer> active = new TreeMap<>();
+            List<MemorySegment> starts = new ArrayList<>();
+            List<MemorySegment> ends = new ArrayList<>();
+            List<long[]> tags = new ArrayList<>();
+            int i = 0;
+            while (i < bounds.size()) {
+                MemorySegment key = bounds.get(i).key();
+                for (; i < bounds.size() && comparator.compare(bounds.get(i).key(), key) == 0; i++) {
+                    Bound bound = bounds.get(i);
+                    if (bound.start()) {
+                        active.merge(bound.tag(), 1, Integer::sum);
+                    } else {
+                        active.computeIfPresent(bound.tag(), (tag, count) -> count == 1 ? null : count - 1);
+                    }
+                }
+                if (i < bounds.size() && !active.isEmpty()) {
+                    starts.add(key);
+                    ends.add(bounds.get(i).key());
+                    tags.add(active.keySet().stream().mapToLong(Long::longValue).toArray());
+                }
+            }
+            return new RangeTombstoneIndex(comparator, starts.toArray(new MemorySegment[0]),
+                    ends.toArray(new MemorySegment[0]), tags.toArray(new long[0][]));
+        }
+
+        private record Bound(MemorySegment key, long tag, boolean start) {
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.lsm.db.iterator;
+
+import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
+
+import java.util.List;
+
+/**
+ * Cursor over range of table which is positioned at the first entry of scan and becomes invalid after the last one.
+ * Key and value are views valid until the next move as of {@link Cursor}, so merge allocates nothing per row.
+ */
+public interface TableCursor<T> {
+    /**
+     * Returns false if cursor moved past the last entry of range.
+     */
+    boolean isValid();
+
+    /**
+     * Moves to the next entry in order of scan, cursor must be valid.
+     */
+    void next();
+
+    /**
+     * Key of current entry, valid until the next move.
+     */
+    T key();
+
+    /**
+     * Value of current entry or null for tombstone, valid until the next move.
+     */
+    T value();
+
+    /**
+     * Range tombstones of table in ascending order, as of {@link TableIterator#rangeTombstones()}.
+     */
+    default List<RangeTombstone<T>> rangeTombstones() {
+        return List.of();
+    }
+
+    /**
+     * Adapts iterator which entries stay valid after it moves, it is used where table can't walk in place.
+     */
+    static <T> TableCursor<T> of(TableIterator<T> iterator) {
+        return new TableCursor<>() {
+            private Entry<T> current = iterator.hasNext() ? iterator.next() : null;
+
+            @Override
+            public boolean isValid() {
+                return current != null;
+            }
+
+            @Override
+            public void next() {
+                current = iterator.hasNext() ? iterator.next() : null;
+            }
+
+            @Override
+            public T key() {
+                return current.key();
+            }
+
+            @Override
+            public T value() {
+                return current.value();
+            }
+
+            @Override
+            public List<RangeTombstone<T>> rangeTombstones() {
+                return iterator.rangeTombstones();
+            }
+        };
+    }
+}
@@ -1,9 +1,19 @@
 package org.lsm.db.iterator;
 
 import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
 
 import java.util.Iterator;
+import java.util.List;
 
 public interface TableIterator<T> extends Iterator<Entry<T>> {
     int getTableNumber();
+
+    /**
+     * Range tombstones of table in ascending order, they delete keys of older tables.
+     * Keys of the table itself are never covered by them.
+     */
+    default List<RangeTombstone<T>> rangeTombstones() {
+        return List.of();
+    }
 }
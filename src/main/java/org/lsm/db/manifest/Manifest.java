@@ -0,0 +1,252 @@
+package org.lsm.db.manifest;
+
+import org.lsm.db.exception.FileChannelException;
+import org.lsm.db.exception.WriteFailureException;
+import org.lsm.db.table.TableMeta;
+import org.lsm.db.utils.Utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of changes of levels, it is the source of truth about live SSTables.
+ * Manifest has the following format: <var>record1 record2 ... record_n</var>,
+ * where every record is <var>payloadSize crc payload</var> and payload is edit
+ * <var>nextTableNumber removedCount addedCount removed_1 ... removed_n table_1 ... table_m</var>,
+ * where every added table is <var>number level rows byteSize fileSize minKeySize maxKeySize minKey maxKey</var>
+ * and key sizes are -1 for empty table.
+ * Added tables of level 0 take place of the newest removed table of level 0 or become the newest tables.
+ * Manifest is rewritten with one edit of all live tables when dao is opened, so it doesn't grow across restarts
+ * and the tail of interrupted append is dropped.
+ */
+public class Manifest implements Closeable {
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int EDIT_HEADER_SIZE = 3 * Integer.BYTES;
+    private static final int TABLE_HEADER_SIZE = 3 * Integer.BYTES + 4 * Long.BYTES;
+
+    private final Path path;
+    private final FileChannel channel;
+
+    private Manifest(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Atomically and durably replaces manifest with one edit of the given tables and opens it for appending.
+     * Tables of level 0 must be ordered from the oldest to the newest.
+     */
+    public static Manifest create(Path path, List<TableMeta> tables, int nextTableNumber) {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel temp = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                write(temp, encode(List.of(), tables, nextTableNumber));
+                temp.force(false);
+            }
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Utils.syncDirectory(path.toAbsolutePath().getParent());
+            return new Manifest(path, FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        } catch (IOException ex) {
+            throw new FileChannelException("Couldn't create manifest " + path, ex);
+        }
+    }
+
+    /**
+     * Appends edit and forces it to disk, so removed tables may be deleted after return.
+     */
+    public synchronized void append(List<Integer> removed, List<TableMeta> added, int nextTableNumber) {
+        try {
+            write(channel, encode(removed, added, nextTableNumber));
+            channel.force(false);
+        } catch (IOException ex) {
+            throw new WriteFailureException("Couldn't append edit to manifest " + path, ex);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Applies edits of manifest in order of appending.
+     * Replay stops at the first incomplete or corrupted record, which is a tail of interrupted append.
+     */
+    public static Replay replay(Path path) throws IOException {
+        List<TableMeta> level0 = new ArrayList<>();
+        Map<Integer, TableMeta> deeper = new LinkedHashMap<>();
+        int nextTableNumber = 1;
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment log = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size(), arena);
+            CRC32C crc = new CRC32C();
+            long offset = 0;
+            while (offset + HEADER_SIZE <= log.byteSize()) {
+                int payloadSize = log.get(ValueLayout.JAVA_INT_UNALIGNED, offset);
+                int checksum = log.get(ValueLayout.JAVA_INT_UNALIGNED, offset + Integer.BYTES);
+                long payloadOffset = offset + HEADER_SIZE;
+                if (payloadSize < EDIT_HEADER_SIZE || payloadOffset + payloadSize > log.byteSize()) {
+                    break;
+                }
+                MemorySegment payload = log.asSlice(payloadOffset, payloadSize);
+                crc.reset();
+                crc.update(payload.asByteBuffer());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                nextTableNumber = Math.max(nextTableNumber, apply(payload, level0, deeper));
+                offset = payloadOffset + payloadSize;
+            }
+        }
+        List<TableMeta> tables = new ArrayList<>(level0);
+        tables.addAll(deeper.values());
+        return new Replay(tables, nextTableNumber);
+    }
+
+    /**
+     * Applies edit to tables and returns its next table number.
+     */
+    private static int apply(MemorySegment payload, List<TableMeta> level0, Map<Integer, TableMeta> deeper) {
+        int nextTableNumber = payload.get(ValueLayout.JAVA_INT_UNALIGNED, 0);
+        int removedCount = payload.get(ValueLayout.JAVA_INT_UNALIGNED, Integer.BYTES);
+        int addedCount = payload.get(ValueLayout.JAVA_INT_UNALIGNED, 2L * Integer.BYTES);
+        long offset = EDIT_HEADER_SIZE;
+        Set<Integer> removed = new HashSet<>();
+        for (int i = 0; i < removedCount; i++) {
+            removed.add(payload.get(ValueLayout.JAVA_INT_UNALIGNED, offset));
+            offset += Integer.BYTES;
+        }
+        int position = -1;
+        List<TableMeta> remaining = new ArrayList<>(level0.size());
+        for (TableMeta table : level0) {
+            if (removed.contains(table.number())) {
+                position = remaining.size();
+            } else {
+                remaining.add(table);
+            }
+        }
+        deeper.keySet().removeAll(removed);
+        List<TableMeta> addedLevel0 = new ArrayList<>();
+        for (int i = 0; i < addedCount; i++) {
+            TableMeta table = decode(payload, offset);
+            offset += encodedSize(table);
+            if (table.level() == 0) {
+                addedLevel0.add(table);
+            } else {
+                deeper.put(table.number(), table);
+            }
+        }
+        remaining.addAll(position < 0 ? remaining.size() : position, addedLevel0);
+        level0.clear();
+        level0.addAll(remaining);
+        return nextTableNumber;
+    }
+
+    private static ByteBuffer encode(List<Integer> removed, List<TableMeta> added, int nextTableNumber) {
+        long size = EDIT_HEADER_SIZE + (long) removed.size() * Integer.BYTES;
+        for (TableMeta table : added) {
+            size += encodedSize(table);
+        }
+        int payloadSize = Math.toIntExact(size);
+        byte[] record = new byte[HEADER_SIZE + payloadSize];
+        MemorySegment segment = MemorySegment.ofArray(record);
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, HEADER_SIZE, nextTableNumber);
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, HEADER_SIZE + Integer.BYTES, removed.size());
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, HEADER_SIZE + 2L * Integer.BYTES, added.size());
+        long offset = HEADER_SIZE + EDIT_HEADER_SIZE;
+        for (int number : removed) {
+            segment.set(ValueLayout.JAVA_INT_UNALIGNED, offset, number);
+            offset += Integer.BYTES;
+        }
+        for (TableMeta table : added) {
+            offset = writeTable(segment, offset, table);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record, HEADER_SIZE, payloadSize);
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, 0, payloadSize);
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, Integer.BYTES, (int) crc.getValue());
+        return ByteBuffer.wrap(record);
+    }
+
+    /**
+     * Writes <var>number level rows byteSize fileSize minKeySize maxKeySize minKey maxKey</var>
+     * and returns offset after it.
+     */
+    private static long writeTable(MemorySegment segment, long offset, TableMeta table) {
+        long minKeySize = keySize(table.minKey());
+        long maxKeySize = keySize(table.maxKey());
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, offset, table.number());
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, offset + Integer.BYTES, table.level());
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, offset + 2L * Integer.BYTES, table.rows());
+        long sizesOffset = offset + 3L * Integer.BYTES;
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, sizesOffset, table.byteSize());
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, sizesOffset + Long.BYTES, table.fileSize());
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, sizesOffset + 2L * Long.BYTES, minKeySize);
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, sizesOffset + 3L * Long.BYTES, maxKeySize);
+        long keyOffset = offset + TABLE_HEADER_SIZE;
+        if (minKeySize >= 0) {
+            MemorySegment.copy(table.minKey(), 0, segment, keyOffset, minKeySize);
+            MemorySegment.copy(table.maxKey(), 0, segment, keyOffset + minKeySize, maxKeySize);
+        }
+        return keyOffset + Math.max(minKeySize, 0) + Math.max(maxKeySize, 0);
+    }
+
+    private static TableMeta decode(MemorySegment payload, long offset) {
+        long sizesOffset = offset + 3L * Integer.BYTES;
+        long minKeySize = payload.get(ValueLayout.JAVA_LONG_UNALIGNED, sizesOffset + 2L * Long.BYTES);
+        long maxKeySize = payload.get(ValueLayout.JAVA_LONG_UNALIGNED, sizesOffset + 3L * Long.BYTES);
+        long keyOffset = offset + TABLE_HEADER_SIZE;
+        return new TableMeta(
+                payload.get(ValueLayout.JAVA_INT_UNALIGNED, offset),
+                payload.get(ValueLayout.JAVA_INT_UNALIGNED, offset + Integer.BYTES),
+                payload.get(ValueLayout.JAVA_INT_UNALIGNED, offset + 2L * Integer.BYTES),
+                payload.get(ValueLayout.JAVA_LONG_UNALIGNED, sizesOffset),
+                payload.get(ValueLayout.JAVA_LONG_UNALIGNED, sizesOffset + Long.BYTES),
+                minKeySize < 0 ? null : copy(payload.asSlice(keyOffset, minKeySize)),
+                maxKeySize < 0 ? null : copy(payload.asSlice(keyOffset + Math.max(minKeySize, 0), maxKeySize))
+        );
+    }
+
+    private static long encodedSize(TableMeta table) {
+        return TABLE_HEADER_SIZE + Math.max(keySize(table.minKey()), 0) + Math.max(keySize(table.maxKey()), 0);
+    }
+
+    private static long keySize(MemorySegment key) {
+        return key == null ? -1 : key.byteSize();
+    }
+
+    private static MemorySegment copy(MemorySegment segment) {
+        return MemorySegment.ofArray(segment.toArray(ValueLayout.JAVA_BYTE));
+    }
+
+    private static void write(FileChannel channel, ByteBuffer record) throws IOException {
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    /**
+     * Live tables after replay.
+     * @param tables tables of level 0 from the oldest to the newest followed by tables of other levels
+     * @param nextTableNumber number greater than numbers of all tables ever added
+     */
+    public record Replay(List<TableMeta> tables, int nextTableNumber) {
+    }
+}
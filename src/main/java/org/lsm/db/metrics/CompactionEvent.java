@@ -0,0 +1,50 @@
+package org.lsm.db.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of compaction, it is recorded only when JFR recording enables it.
+ */
+@Name("org.lsm.Compaction")
+@Label("Compaction")
+@Category("LSM Storage")
+@Description("SSTables are merged into the output level")
+public final class CompactionEvent extends Event {
+    @Label("Output Level")
+    private final int outputLevel;
+
+    @Label("Input Tables")
+    private final int inputTables;
+
+    @Label("Bytes Read")
+    @DataAmount
+    private final long bytesRead;
+
+    @Label("Output Tables")
+    private int outputTables;
+
+    @Label("Bytes Written")
+    @DataAmount
+    private long bytesWritten;
+
+    /**
+     * Starts timing of compaction.
+     */
+    public CompactionEvent(int outputLevel, int inputTables, long bytesRead) {
+        this.outputLevel = outputLevel;
+        this.inputTables = inputTables;
+        this.bytesRead = bytesRead;
+        begin();
+    }
+
+    public void complete(int outputTables, long bytesWritten) {
+        this.outputTables = outputTables;
+        this.bytesWritten = bytesWritten;
+        commit();
+    }
+}
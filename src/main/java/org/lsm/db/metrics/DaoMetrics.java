@@ -0,0 +1,167 @@
+package org.lsm.db.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and latency histograms of dao, updated without locks by operations and background threads.
+ * Latencies are in nanoseconds. Scan latency lasts from the start of scan till its iterator is exhausted,
+ * so it includes time caller spends between entries, scans abandoned before the end are not recorded.
+ * Read amplification is the mean amount of SSTables searched by get, including tables rejected by bloom filter.
+ * Write amplification is the ratio of bytes of written SSTable files to bytes of upserted keys and values,
+ * write-ahead log is not counted.
+ */
+public final class DaoMetrics {
+    private final Histogram getLatency = new Histogram();
+    private final Histogram multiGetLatency = new Histogram();
+    private final Histogram scanLatency = new Histogram();
+    private final Histogram upsertLatency = new Histogram();
+    private final Histogram writeLatency = new Histogram();
+    private final Histogram tablesPerGet = new Histogram();
+    private final LongAdder bytesUpserted = new LongAdder();
+    private final LongAdder bytesFlushed = new LongAdder();
+    private final LongAdder bytesCompactionRead = new LongAdder();
+    private final LongAdder bytesCompactionWritten = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongSupplier memTableBytes;
+    private final IntSupplier ssTableCount;
+
+    /**
+     * Creates metrics which gauges read the current state of dao.
+     */
+    public DaoMetrics(LongSupplier memTableBytes, IntSupplier ssTableCount) {
+        this.memTableBytes = memTableBytes;
+        this.ssTableCount = ssTableCount;
+    }
+
+    public void recordGet(long nanos) {
+        getLatency.record(nanos);
+    }
+
+    /**
+     * Records amount of SSTables searched by one get.
+     */
+    public void recordTablesPerGet(int tables) {
+        tablesPerGet.record(tables);
+    }
+
+    /**
+     * Records lookup of one batch of keys.
+     */
+    public void recordMultiGet(long nanos) {
+        multiGetLatency.record(nanos);
+    }
+
+    public void recordScan(long nanos) {
+        scanLatency.record(nanos);
+    }
+
+    public void recordUpsert(long nanos, long bytes) {
+        upsertLatency.record(nanos);
+        bytesUpserted.add(bytes);
+    }
+
+    /**
+     * Records write of batch with the given size of keys and values.
+     */
+    public void recordWrite(long nanos, long bytes) {
+        writeLatency.record(nanos);
+        bytesUpserted.add(bytes);
+    }
+
+    public void recordFlush(long fileBytes) {
+        flushes.increment();
+        bytesFlushed.add(fileBytes);
+    }
+
+    public void recordCompaction(long bytesRead, long bytesWritten) {
+        compactions.increment();
+        bytesCompactionRead.add(bytesRead);
+        bytesCompactionWritten.add(bytesWritten);
+    }
+
+    public Histogram getLatency() {
+        return getLatency;
+    }
+
+    public Histogram multiGetLatency() {
+        return multiGetLatency;
+    }
+
+    public Histogram scanLatency() {
+        return scanLatency;
+    }
+
+    public Histogram upsertLatency() {
+        return upsertLatency;
+    }
+
+    public Histogram writeLatency() {
+        return writeLatency;
+    }
+
+    public Histogram tablesPerGet() {
+        return tablesPerGet;
+    }
+
+    public long bytesUpserted() {
+        return bytesUpserted.sum();
+    }
+
+    public long bytesFlushed() {
+        return bytesFlushed.sum();
+    }
+
+    public long bytesCompactionRead() {
+        return bytesCompactionRead.sum();
+    }
+
+    public long bytesCompactionWritten() {
+        return bytesCompactionWritten.sum();
+    }
+
+    public long flushes() {
+        return flushes.sum();
+    }
+
+    public long compactions() {
+        return compactions.sum();
+    }
+
+    /**
+     * Memory used by memtables which are not flushed yet.
+     */
+    public long memTableBytes() {
+        return memTableBytes.getAsLong();
+    }
+
+    public int ssTableCount() {
+        return ssTableCount.getAsInt();
+    }
+
+    public double readAmplification() {
+        return tablesPerGet.mean();
+    }
+
+    public double writeAmplification() {
+        long upserted = bytesUpserted();
+        return upserted == 0 ? 0 : (double) (bytesFlushed() + bytesCompactionWritten()) / upserted;
+    }
+
+    @Override
+    public String toString() {
+        return "get: " + getLatency + "\n"
+                + "multiGet: " + multiGetLatency + "\n"
+                + "scan: " + scanLatency + "\n"
+                + "upsert: " + upsertLatency + "\n"
+                + "write: " + writeLatency + "\n"
+                + "tables per get: " + tablesPerGet + "\n"
+                + "flushes=" + flushes() + " bytesFlushed=" + bytesFlushed()
+                + " compactions=" + compactions() + " bytesCompactionRead=" + bytesCompactionRead()
+                + " bytesCompactionWritten=" + bytesCompactionWritten() + "\n"
+                + "memTableBytes=" + memTableBytes() + " ssTables=" + ssTableCount()
+                + " readAmplification=" + readAmplification() + " writeAmplification=" + writeAmplification();
+    }
+}
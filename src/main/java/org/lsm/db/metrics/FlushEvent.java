@@ -0,0 +1,41 @@
+package org.lsm.db.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of writing memtable to SSTable, it is recorded only when JFR recording enables it.
+ */
+@Name("org.lsm.Flush")
+@Label("Flush")
+@Category("LSM Storage")
+@Description("Memtable is written to SSTable of level 0")
+public final class FlushEvent extends Event {
+    @Label("Table Number")
+    private final int tableNumber;
+
+    @Label("Rows")
+    private final long rows;
+
+    @Label("File Size")
+    @DataAmount
+    private long fileBytes;
+
+    /**
+     * Starts timing of flush.
+     */
+    public FlushEvent(int tableNumber, long rows) {
+        this.tableNumber = tableNumber;
+        this.rows = rows;
+        begin();
+    }
+
+    public void complete(long fileBytes) {
+        this.fileBytes = fileBytes;
+        commit();
+    }
+}
@@ -0,0 +1,85 @@
+package org.lsm.db.table;
+
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+
+/**
+ * How mapped table data will be read, passed to kernel by madvise through {@link Linker} on Linux.
+ * Lookup tables are read at random, so readahead only wastes page cache; scans and compaction prefetch
+ * blocks of the range they read; tables about to be deleted drop their pages.
+ * Hints are best effort: on other systems or if madvise can't be linked they do nothing.
+ */
+public enum AccessHint {
+    RANDOM(1),
+    WILL_NEED(3),
+    DONT_NEED(4);
+
+    private static final MethodHandle MADVISE = madvise();
+    private static final long PAGE_SIZE = pageSize();
+
+    /**
+     * Value of MADV_* constant on Linux.
+     */
+    private final int advice;
+
+    AccessHint(int advice) {
+        this.advice = advice;
+    }
+
+    /**
+     * Advises kernel about pages of segment, start of segment is aligned down to page.
+     * Segment must be a slice of shared file mapping: dropped pages of anonymous memory are lost, not reread.
+     * Returns false if hint is not applied, pages are read as before then.
+     */
+    boolean advise(MemorySegment segment) {
+        if (MADVISE == null || !segment.isNative() || segment.byteSize() == 0) {
+            return false;
+        }
+        long address = segment.address();
+        long aligned = address & -PAGE_SIZE;
+        try {
+            return (int) MADVISE.invokeExact(MemorySegment.ofAddress(aligned),
+                    segment.byteSize() + address - aligned, advice) == 0;
+        } catch (RuntimeException ex) {
+            return false;
+        } catch (Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Downcall of madvise can't throw checked exception", ex);
+        }
+    }
+
+    private static MethodHandle madvise() {
+        if (!System.getProperty("os.name", "").startsWith("Linux")) {
+            return null;
+        }
+        try {
+            Linker linker = Linker.nativeLinker();
+            return linker.defaultLookup().find("madvise")
+                    .map(symbol -> linker.downcallHandle(symbol, FunctionDescriptor.of(
+                            ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT
+                    )))
+                    .orElse(null);
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static long pageSize() {
+        if (MADVISE == null) {
+            return 4096;
+        }
+        try {
+            Linker linker = Linker.nativeLinker();
+            MethodHandle getpagesize = linker.defaultLookup().find("getpagesize")
+                    .map(symbol -> linker.downcallHandle(symbol, FunctionDescriptor.of(ValueLayout.JAVA_INT)))
+                    .orElse(null);
+            return getpagesize == null ? 4096 : (int) getpagesize.invokeExact();
+        } catch (Throwable ex) {
+            return 4096;
+        }
+    }
+}
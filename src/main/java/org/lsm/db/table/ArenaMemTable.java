@@ -0,0 +1,712 @@
+package org.lsm.db.table;
+
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
+import org.lsm.db.iterator.Cursor;
+import org.lsm.db.iterator.RangeTombstoneIndex;
+import org.lsm.db.iterator.TableCursor;
+import org.lsm.db.iterator.TableIterator;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memtable which keys and values are copied into off-heap chunks of {@link Arena},
+ * ordered by lock-free skip list of nodes stored in the same chunks.
+ * Node has the following format: <var>versionRef height keySize next_1 ... next_height key</var>,
+ * where references are <var>chunk index &lt;&lt; 32 | offset in chunk</var>.
+ * Version is stored as <var>sequence olderRef valueSize value</var>, valueSize is -1 for tombstone.
+ * Update links the new version before the newest one and unlinks versions which no live snapshot reads,
+ * as {@link MemTable} does, their memory stays in chunks until the whole table is freed.
+ * Versions are ordered by sequence numbers, version older than the newest one is linked after it.
+ * Nodes are never removed, so insert finds position in one traversal and links node by CAS from the bottom level.
+ * Memory is taken by CAS of position in the last chunk, only switch to a new chunk takes lock.
+ * Keys are ordered as by {@link KeyComparator}.
+ * Range tombstones are rare, so they are kept on heap aside of the skip list.
+ * Chunks belong to shared arena: the owner holds the first reference and readers retain the table,
+ * all chunks are freed at once when the last reference is released.
+ */
+public class ArenaMemTable implements MutableTable {
+    private static final int MAX_HEIGHT = 12;
+    private static final long CHUNK_SIZE = 1L << 20;
+    private static final long NIL = 0L;
+    private static final long NO_CHUNK = -1L;
+    private static final long TOMBSTONE_SIZE = -1L;
+    private static final long VALUE_OFFSET = 0L;
+    private static final long HEIGHT_OFFSET = Long.BYTES;
+    private static final long KEY_SIZE_OFFSET = HEIGHT_OFFSET + Integer.BYTES;
+    private static final long NEXT_OFFSET = KEY_SIZE_OFFSET + Integer.BYTES;
+    private static final long OLDER_OFFSET = Long.BYTES;
+    private static final long VALUE_SIZE_OFFSET = 2L * Long.BYTES;
+    private static final long VERSION_HEADER_SIZE = 3L * Long.BYTES;
+    private static final VarHandle LONGS = ValueLayout.JAVA_LONG.arrayElementVarHandle();
+    /**
+     * Predecessors and successors of inserted key at every level, upsert of key which already exists
+     * doesn't need them, so they are reused by all upserts of thread instead of allocated per write.
+     */
+    private static final ThreadLocal<Splice> SPLICES = ThreadLocal.withInitial(Splice::new);
+
+    private final Arena arena = Arena.ofShared();
+    private final int tableNumber;
+    private final AtomicInteger rows = new AtomicInteger();
+    private final AtomicLong byteSize = new AtomicLong();
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final MemRangeTombstones rangeTombstones = new MemRangeTombstones(new KeyComparator());
+    /**
+     * Reference to free memory: index of the last chunk and offset in it.
+     */
+    private final AtomicLong position = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+    private final Object chunkLock = new Object();
+    private final long head;
+    private volatile MemorySegment[] chunks;
+
+    public ArenaMemTable(int tableNumber) {
+        this.tableNumber = tableNumber;
+        this.chunks = new MemorySegment[]{arena.allocate(CHUNK_SIZE, Long.BYTES)};
+        this.head = allocate(NEXT_OFFSET + (long) MAX_HEIGHT * Long.BYTES);
+        chunk(head).set(ValueLayout.JAVA_INT, offset(head) + HEIGHT_OFFSET, MAX_HEIGHT);
+    }
+
+    @Override
+    public void upsert(Entry<MemorySegment> entry, long sequence, long oldestSnapshot) {
+        MemorySegment key = entry.key();
+        Splice splice = SPLICES.get();
+        long[] prev = splice.prev;
+        long[] succ = splice.succ;
+        long node = head;
+        for (int level = MAX_HEIGHT - 1; level >= 0; level--) {
+            long next;
+            while (true) {
+                next = nextNode(node, level);
+                if (next == NIL) {
+                    break;
+                }
+                int compare = compareKey(next, key);
+                if (compare == 0) {
+                    addVersion(next, entry.value(), sequence, oldestSnapshot);
+                    return;
+                }
+                if (compare > 0) {
+                    break;
+                }
+                node = next;
+            }
+            prev[level] = node;
+            succ[level] = next;
+        }
+        int height = randomHeight();
+        long inserted = newNode(key, entry.value(), sequence, height);
+        for (int level = 0; level < height; level++) {
+            while (true) {
+                setNext(inserted, level, succ[level]);
+                if (casNext(prev[level], level, succ[level], inserted)) {
+                    break;
+                }
+                long before = prev[level];
+                long next;
+                while (true) {
+                    next = nextNode(before, level);
+                    if (next == NIL) {
+                        break;
+                    }
+                    int compare = compareKey(next, key);
+                    if (compare == 0 && level == 0) {
+                        // Key was inserted concurrently, node is left unreachable.
+                        addVersion(next, entry.value(), sequence, oldestSnapshot);
+                        return;
+                    }
+                    if (compare >= 0) {
+                        break;
+                    }
+                    before = next;
+                }
+                prev[level] = before;
+                succ[level] = next;
+            }
+        }
+        rows.incrementAndGet();
+        byteSize.addAndGet(key.byteSize() + (entry.value() == null ? 0 : entry.value().byteSize()));
+    }
+
+    @Override
+    public void deleteRange(MemorySegment from, MemorySegment to, long sequence) {
+        byteSize.addAndGet(rangeTombstones.add(from, to, sequence));
+    }
+
+    @Override
+    public List<RangeTombstone<MemorySegment>> rangeTombstones(long snapshot) {
+        return rangeTombstones.visible(snapshot);
+    }
+
+    /**
+     * Returns entry with the given key instance and value copied to heap, so point lookup of dao
+     * returns it as it is instead of wrapping it into another entry with copied value.
+     */
+    @Override
+    public Entry<MemorySegment> get(MemorySegment key, long snapshot) {
+        long node = seek(key, true);
+        long version = node == NIL || compareKey(node, key) != 0 ? NIL : visibleVersion(node, snapshot);
+        long deleted = rangeTombstones.deletedAt(key, snapshot);
+        if (version == NIL) {
+            return deleted < 0 ? null : new BaseEntry<>(key, null);
+        }
+        if (sequence(version) < deleted) {
+            return new BaseEntry<>(key, null);
+        }
+        MemorySegment value = value(version);
+        return new BaseEntry<>(key, value == null ? null : MemorySegment.ofArray(value.toArray(ValueLayout.JAVA_BYTE)));
+    }
+
+    @Override
+    public TableIterator<MemorySegment> tableIterator(MemorySegment from, boolean fromInclusive,
+                                                      MemorySegment to, boolean toInclusive, long snapshot) {
+        return new NodeIterator(rangeCursor(from, fromInclusive, to, toInclusive, snapshot, false));
+    }
+
+    /**
+     * Skip list has only forward links, so every step back finds predecessor of the current key from the top level.
+     */
+    @Override
+    public TableIterator<MemorySegment> descendingIterator(MemorySegment from, boolean fromInclusive,
+                                                           MemorySegment to, boolean toInclusive, long snapshot) {
+        return new NodeIterator(rangeCursor(from, fromInclusive, to, toInclusive, snapshot, true));
+    }
+
+    @Override
+    public TableCursor<MemorySegment> rangeCursor(MemorySegment from, boolean fromInclusive, MemorySegment to,
+                                                  boolean toInclusive, long snapshot, boolean descending) {
+        NodeCursor cursor = new NodeCursor(snapshot);
+        if (descending) {
+            cursor.moveBackTo(findLast(to, toInclusive));
+            return new NodeRangeCursor(cursor, from, fromInclusive, true);
+        }
+        cursor.moveTo(from == null ? nextNode(head, 0) : seek(from, fromInclusive));
+        return new NodeRangeCursor(cursor, to, toInclusive, false);
+    }
+
+    /**
+     * Returns cursor which key and value are slices of chunks, moves follow links of nodes.
+     */
+    @Override
+    public Cursor<MemorySegment> cursor(long snapshot) {
+        return new NodeCursor(snapshot);
+    }
+
+    @Override
+    public int rows() {
+        return rows.get();
+    }
+
+    /**
+     * Sum of sizes of keys and current values.
+     */
+    @Override
+    public long byteSize() {
+        return byteSize.get();
+    }
+
+    /**
+     * Bytes allocated in chunks including nodes and older versions, and size of range tombstones.
+     */
+    @Override
+    public long memoryUsage() {
+        return allocated.get() + rangeTombstones.byteSize();
+    }
+
+    @Override
+    public int tableNumber() {
+        return tableNumber;
+    }
+
+    @Override
+    public boolean tryRetain() {
+        int count = references.get();
+        while (count > 0) {
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+            count = references.get();
+        }
+        return false;
+    }
+
+    /**
+     * Removes reference, the last one frees all chunks. Keys and values read from table are invalid after that.
+     */
+    @Override
+    public void release() {
+        int count = references.decrementAndGet();
+        if (count == 0) {
+            arena.close();
+        } else if (count < 0) {
+            throw new IllegalStateException("Memtable is already released");
+        }
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    /**
+     * Releases reference of owner, chunks are freed at once when readers release their references too.
+     */
+    @Override
+    public void clear() {
+        release();
+    }
+
+    /**
+     * Cursor over nodes with versions visible to snapshot, nodes deleted by range tombstones are skipped.
+     */
+    private final class NodeCursor implements Cursor<MemorySegment> {
+        private final long snapshot;
+        private final RangeTombstoneIndex deletions = rangeTombstones.index();
+        private final List<RangeTombstone<MemorySegment>> visibleTombstones;
+        private long node = NIL;
+        private long version = NIL;
+
+        NodeCursor(long snapshot) {
+            this.snapshot = snapshot;
+            this.visibleTombstones = deletions.isEmpty() ? List.of() : deletions.ranges(null, null, snapshot);
+        }
+
+        @Override
+        public void seekToFirst() {
+            moveTo(nextNode(head, 0));
+        }
+
+        @Override
+        public void seek(MemorySegment target) {
+            moveTo(ArenaMemTable.this.seek(target, true));
+        }
+
+        @Override
+        public boolean isValid() {
+            return node != NIL;
+        }
+
+        @Override
+        public void next() {
+            moveTo(nextNode(node, 0));
+        }
+
+        @Override
+        public MemorySegment key() {
+            return ArenaMemTable.this.key(node);
+        }
+
+        @Override
+        public MemorySegment value() {
+            return ArenaMemTable.this.value(version);
+        }
+
+        void previous() {
+            moveBackTo(findLast(ArenaMemTable.this.key(node), false));
+        }
+
+        /**
+         * Moves to the first node from start which was inserted before snapshot and isn't deleted.
+         */
+        void moveTo(long start) {
+            for (node = start; node != NIL; node = nextNode(node, 0)) {
+                if (isVisible()) {
+                    return;
+                }
+            }
+            version = NIL;
+        }
+
+        /**
+         * Moves to the last node before start or start itself which is visible, like {@link #moveTo(long)}.
+         */
+        void moveBackTo(long start) {
+            for (node = start; node != NIL; node = findLast(ArenaMemTable.this.key(node), false)) {
+                if (isVisible()) {
+                    return;
+                }
+            }
+            version = NIL;
+        }
+
+        private boolean isVisible() {
+            version = visibleVersion(node, snapshot);
+            return version != NIL && (visibleTombstones.isEmpty()
+                    || sequence(version) >= deletions.maxTag(ArenaMemTable.this.key(node), snapshot));
+        }
+    }
+
+    /**
+     * Moves node cursor forward or backward until bound.
+     */
+    private final class NodeRangeCursor implements TableCursor<MemorySegment> {
+        private final NodeCursor cursor;
+        private final MemorySegment bound;
+        private final boolean boundInclusive;
+        private final boolean descending;
+
+        NodeRangeCursor(NodeCursor cursor, MemorySegment bound, boolean boundInclusive, boolean descending) {
+            this.cursor = cursor;
+            this.bound = bound;
+            this.boundInclusive = boundInclusive;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean isValid() {
+            if (!cursor.isValid()) {
+                return false;
+            }
+            if (bound == null) {
+                return true;
+            }
+            int compare = compareKey(cursor.node, bound);
+            return (descending ? compare > 0 : compare < 0) || (boundInclusive && compare == 0);
+        }
+
+        @Override
+        public void next() {
+            if (descending) {
+                cursor.previous();
+            } else {
+                cursor.next();
+            }
+        }
+
+        @Override
+        public MemorySegment key() {
+            return cursor.key();
+        }
+
+        @Override
+        public MemorySegment value() {
+            return cursor.value();
+        }
+
+        @Override
+        public List<RangeTombstone<MemorySegment>> rangeTombstones() {
+            return cursor.visibleTombstones;
+        }
+    }
+
+    /**
+     * Iterates entries of range cursor, keys and values are slices of chunks, so they stay valid after moves.
+     */
+    private final class NodeIterator implements TableIterator<MemorySegment> {
+        private final TableCursor<MemorySegment> cursor;
+
+        NodeIterator(TableCursor<MemorySegment> cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public int getTableNumber() {
+            return tableNumber;
+        }
+
+        @Override
+        public List<RangeTombstone<MemorySegment>> rangeTombstones() {
+            return cursor.rangeTombstones();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor.isValid();
+        }
+
+        @Override
+        public Entry<MemorySegment> next() {
+            if (!cursor.isValid()) {
+                throw new NoSuchElementException();
+            }
+            Entry<MemorySegment> entry = new BaseEntry<>(cursor.key(), cursor.value());
+            cursor.next();
+            return entry;
+        }
+    }
+
+    /**
+     * Returns the first node which key is greater or equal (greater if not inclusive) to key, or NIL.
+     */
+    private long seek(MemorySegment key, boolean inclusive) {
+        long node = head;
+        for (int level = MAX_HEIGHT - 1; level >= 0; level--) {
+            while (true) {
+                long next = nextNode(node, level);
+                if (next == NIL) {
+                    break;
+                }
+                int compare = compareKey(next, key);
+                if (compare > 0 || (inclusive && compare == 0)) {
+                    break;
+                }
+                node = next;
+            }
+        }
+        return nextNode(node, 0);
+    }
+
+    /**
+     * Returns the last node which key is less (less or equal if inclusive) than key, or NIL.
+     * Null key means the last node of table.
+     */
+    private long findLast(MemorySegment key, boolean inclusive) {
+        long node = head;
+        for (int level = MAX_HEIGHT - 1; level >= 0; level--) {
+            while (true) {
+                long next = nextNode(node, level);
+                if (next == NIL) {
+                    break;
+                }
+                if (key != null) {
+                    int compare = compareKey(next, key);
+                    if (compare > 0 || (!inclusive && compare == 0)) {
+                        break;
+                    }
+                }
+                node = next;
+            }
+        }
+        return node == head ? NIL : node;
+    }
+
+    private long newNode(MemorySegment key, MemorySegment value, long sequence, int height) {
+        long keyOffset = NEXT_OFFSET + (long) height * Long.BYTES;
+        long nodeSize = align(keyOffset + key.byteSize());
+        long node = allocate(nodeSize + versionSize(value));
+        MemorySegment chunk = chunk(node);
+        long offset = offset(node);
+        chunk.set(ValueLayout.JAVA_INT, offset + HEIGHT_OFFSET, height);
+        chunk.set(ValueLayout.JAVA_INT, offset + KEY_SIZE_OFFSET, Math.toIntExact(key.byteSize()));
+        MemorySegment.copy(key, 0, chunk, offset + keyOffset, key.byteSize());
+        writeVersion(chunk, offset + nodeSize, value, sequence, NIL);
+        chunk.set(ValueLayout.JAVA_LONG, offset + VALUE_OFFSET, node + nodeSize);
+        return node;
+    }
+
+    /**
+     * Links the new version before the newest one and accounts the difference with the replaced value.
+     * Without snapshots the new version has no older ones, otherwise versions after the newest one visible
+     * to the oldest snapshot are unlinked.
+     */
+    private void addVersion(long node, MemorySegment value, long sequence, long oldestSnapshot) {
+        long version = allocate(versionSize(value));
+        MemorySegment versionChunk = chunk(version);
+        MemorySegment chunk = chunk(node);
+        long previous;
+        do {
+            previous = (long) LONGS.getVolatile(chunk, index(node, VALUE_OFFSET));
+            if (sequence(previous) > sequence) {
+                insertOlder(previous, version, value, sequence, oldestSnapshot);
+                return;
+            }
+            writeVersion(versionChunk, offset(version), value, sequence,
+                    oldestSnapshot == NO_SNAPSHOTS ? NIL : previous);
+        } while (!LONGS.compareAndSet(chunk, index(node, VALUE_OFFSET), previous, version));
+        if (oldestSnapshot != NO_SNAPSHOTS) {
+            unlinkOlder(previous, oldestSnapshot);
+        }
+        long delta = value == null ? 0 : value.byteSize();
+        long previousSize = chunk(previous).get(ValueLayout.JAVA_LONG, offset(previous) + VALUE_SIZE_OFFSET);
+        byteSize.addAndGet(delta - Math.max(previousSize, 0));
+    }
+
+    /**
+     * Links version after the last version with greater sequence, the newest value and size don't change.
+     * Without snapshots only the newest version is read, so the version is dropped.
+     * Version cut concurrently by {@link #unlinkOlder} is older than any version visible to snapshots.
+     */
+    private void insertOlder(long newer, long version, MemorySegment value, long sequence, long oldestSnapshot) {
+        if (oldestSnapshot == NO_SNAPSHOTS) {
+            return;
+        }
+        while (true) {
+            long older = older(newer);
+            if (older != NIL && sequence(older) > sequence) {
+                newer = older;
+                continue;
+            }
+            writeVersion(chunk(version), offset(version), value, sequence, older);
+            if (LONGS.compareAndSet(chunk(newer), index(newer, OLDER_OFFSET), older, version)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Cuts versions older than the first one from version which is visible to the oldest snapshot.
+     */
+    private void unlinkOlder(long version, long oldestSnapshot) {
+        while (version != NIL && sequence(version) > oldestSnapshot) {
+            version = older(version);
+        }
+        if (version != NIL) {
+            LONGS.setVolatile(chunk(version), index(version, OLDER_OFFSET), NIL);
+        }
+    }
+
+    private static long versionSize(MemorySegment value) {
+        return VERSION_HEADER_SIZE + (value == null ? 0 : value.byteSize());
+    }
+
+    private static void writeVersion(MemorySegment chunk, long offset, MemorySegment value,
+                                     long sequence, long older) {
+        chunk.set(ValueLayout.JAVA_LONG, offset, sequence);
+        chunk.set(ValueLayout.JAVA_LONG, offset + OLDER_OFFSET, older);
+        if (value == null) {
+            chunk.set(ValueLayout.JAVA_LONG, offset + VALUE_SIZE_OFFSET, TOMBSTONE_SIZE);
+        } else {
+            chunk.set(ValueLayout.JAVA_LONG, offset + VALUE_SIZE_OFFSET, value.byteSize());
+            MemorySegment.copy(value, 0, chunk, offset + VERSION_HEADER_SIZE, value.byteSize());
+        }
+    }
+
+    /**
+     * Returns the newest version of node with sequence not greater than snapshot, or NIL.
+     */
+    private long visibleVersion(long node, long snapshot) {
+        long version = (long) LONGS.getVolatile(chunk(node), index(node, VALUE_OFFSET));
+        while (version != NIL) {
+            MemorySegment chunk = chunk(version);
+            if (chunk.get(ValueLayout.JAVA_LONG, offset(version)) <= snapshot) {
+                return version;
+            }
+            version = older(version);
+        }
+        return NIL;
+    }
+
+    private long sequence(long version) {
+        return chunk(version).get(ValueLayout.JAVA_LONG, offset(version));
+    }
+
+    private long older(long version) {
+        return (long) LONGS.getVolatile(chunk(version), index(version, OLDER_OFFSET));
+    }
+
+    private MemorySegment value(long version) {
+        MemorySegment chunk = chunk(version);
+        long offset = offset(version);
+        long valueSize = chunk.get(ValueLayout.JAVA_LONG, offset + VALUE_SIZE_OFFSET);
+        return valueSize == TOMBSTONE_SIZE ? null : chunk.asSlice(offset + VERSION_HEADER_SIZE, valueSize);
+    }
+
+    private MemorySegment key(long node) {
+        MemorySegment chunk = chunk(node);
+        long offset = offset(node);
+        int height = chunk.get(ValueLayout.JAVA_INT, offset + HEIGHT_OFFSET);
+        int keySize = chunk.get(ValueLayout.JAVA_INT, offset + KEY_SIZE_OFFSET);
+        return chunk.asSlice(offset + NEXT_OFFSET + (long) height * Long.BYTES, keySize);
+    }
+
+    private int compareKey(long node, MemorySegment key) {
+        MemorySegment chunk = chunk(node);
+        long offset = offset(node);
+        int height = chunk.get(ValueLayout.JAVA_INT, offset + HEIGHT_OFFSET);
+        int keySize = chunk.get(ValueLayout.JAVA_INT, offset + KEY_SIZE_OFFSET);
+        long keyOffset = offset + NEXT_OFFSET + (long) height * Long.BYTES;
+        return KeyComparator.compare(chunk, keyOffset, keyOffset + keySize, key, 0, key.byteSize());
+    }
+
+    private long nextNode(long node, int level) {
+        return (long) LONGS.getVolatile(chunk(node), index(node, NEXT_OFFSET) + level);
+    }
+
+    private void setNext(long node, int level, long next) {
+        LONGS.set(chunk(node), index(node, NEXT_OFFSET) + level, next);
+    }
+
+    private boolean casNext(long node, int level, long expected, long next) {
+        return LONGS.compareAndSet(chunk(node), index(node, NEXT_OFFSET) + level, expected, next);
+    }
+
+    /**
+     * Bump allocation of 8-byte aligned memory: position in the last chunk is moved by CAS.
+     */
+    private long allocate(long size) {
+        long aligned = align(size);
+        while (true) {
+            long current = position.get();
+            int chunkIndex = (int) (current >>> 32);
+            if (offset(current) + aligned <= chunks[chunkIndex].byteSize()) {
+                if (position.compareAndSet(current, current + aligned)) {
+                    allocated.addAndGet(aligned);
+                    return current;
+                }
+            } else {
+                long ref = allocateChunk(chunkIndex, aligned);
+                if (ref != NO_CHUNK) {
+                    allocated.addAndGet(aligned);
+                    return ref;
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends new chunk after the full one and takes its first bytes, the chunk is published before position
+     * points to it. Returns {@link #NO_CHUNK} if another thread already switched to a new chunk.
+     */
+    private long allocateChunk(int fullChunk, long size) {
+        synchronized (chunkLock) {
+            if ((int) (position.get() >>> 32) != fullChunk) {
+                return NO_CHUNK;
+            }
+            MemorySegment[] current = Arrays.copyOf(chunks, fullChunk + 2);
+            current[fullChunk + 1] = arena.allocate(Math.max(CHUNK_SIZE, size), Long.BYTES);
+            chunks = current;
+            long ref = (long) (fullChunk + 1) << 32;
+            // Only this thread switches chunks, others may still take the rest of the full chunk meanwhile.
+            long previous;
+            do {
+                previous = position.get();
+            } while (!position.compareAndSet(previous, ref + size));
+            return ref;
+        }
+    }
+
+    private MemorySegment chunk(long ref) {
+        return chunks[(int) (ref >>> 32)];
+    }
+
+    private static long offset(long ref) {
+        return ref & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Index of long field of node for {@link #LONGS}.
+     */
+    private static long index(long ref, long fieldOffset) {
+        return (offset(ref) + fieldOffset) / Long.BYTES;
+    }
+
+    private static long align(long size) {
+        return (size + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    private static final class Splice {
+        final long[] prev = new long[MAX_HEIGHT];
+        final long[] succ = new long[MAX_HEIGHT];
+    }
+
+    /**
+     * Height with probability 1/4 of every next level.
+     */
+    private static int randomHeight() {
+        int height = 1;
+        while (height < MAX_HEIGHT && ThreadLocalRandom.current().nextInt(4) == 0) {
+            height++;
+        }
+        return height;
+    }
+}
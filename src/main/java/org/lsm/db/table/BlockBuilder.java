@@ -0,0 +1,121 @@
+package org.lsm.db.table;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+/**
+ * Builds data block of SSTable in heap buffer.
+ * Block has the following format: <var>record1 record2 ... record_n restart1 ... restart_m m</var>,
+ * where every record is <var>shared unshared valueSize keyDelta value</var>.
+ * Shared, unshared and valueSize are varints, valueSize is stored as size + 1 and zero means tombstone.
+ * Every {@link #RESTART_INTERVAL}-th record is a restart point and stores the whole key (shared is zero).
+ * Restart points are int offsets of such records from block start.
+ */
+public class BlockBuilder {
+    public static final int RESTART_INTERVAL = 16;
+    /**
+     * Max encoded size of three varints of record.
+     */
+    public static final int MAX_RECORD_OVERHEAD = 3 * 10;
+
+    private byte[] buffer;
+    private int size;
+    private int[] restarts;
+    private int restartsCount;
+    private int counter;
+    private byte[] lastKey;
+    private int lastKeySize;
+    private int entries;
+
+    public BlockBuilder(int blockSize) {
+        this.buffer = new byte[blockSize];
+        this.restarts = new int[blockSize / RESTART_INTERVAL + 1];
+        this.lastKey = new byte[0];
+    }
+
+    public void add(MemorySegment key, MemorySegment value) {
+        int keySize = Math.toIntExact(key.byteSize());
+        int shared = 0;
+        if (counter == RESTART_INTERVAL || entries == 0) {
+            if (restartsCount == restarts.length) {
+                restarts = Arrays.copyOf(restarts, restartsCount * 2);
+            }
+            restarts[restartsCount++] = size;
+            counter = 0;
+        } else {
+            long mismatch = MemorySegment.ofArray(lastKey).asSlice(0, lastKeySize).mismatch(key);
+            shared = mismatch == -1 ? keySize : (int) mismatch;
+        }
+        int unshared = keySize - shared;
+        long valueSize = value == null ? 0 : value.byteSize() + 1;
+        ensureCapacity(MAX_RECORD_OVERHEAD + unshared + Math.max(valueSize - 1, 0));
+        putVarLong(shared);
+        putVarLong(unshared);
+        putVarLong(valueSize);
+        MemorySegment.copy(key, ValueLayout.JAVA_BYTE, shared, buffer, size, unshared);
+        size += unshared;
+        if (value != null) {
+            int valueBytes = Math.toIntExact(value.byteSize());
+            MemorySegment.copy(value, ValueLayout.JAVA_BYTE, 0, buffer, size, valueBytes);
+            size += valueBytes;
+        }
+        if (lastKey.length < keySize) {
+            lastKey = Arrays.copyOf(lastKey, Math.max(keySize, 2 * lastKey.length));
+        }
+        MemorySegment.copy(key, ValueLayout.JAVA_BYTE, shared, lastKey, shared, unshared);
+        lastKeySize = keySize;
+        counter++;
+        entries++;
+    }
+
+    /**
+     * Size of block if it is finished now.
+     */
+    public int estimatedSize() {
+        return size + (restartsCount + 1) * Integer.BYTES;
+    }
+
+    public boolean isEmpty() {
+        return entries == 0;
+    }
+
+    /**
+     * Appends restart points and returns block. Segment is valid until {@link #reset()}.
+     */
+    public MemorySegment finish() {
+        ensureCapacity((restartsCount + 1L) * Integer.BYTES);
+        MemorySegment block = MemorySegment.ofArray(buffer);
+        for (int i = 0; i < restartsCount; i++) {
+            block.set(ValueLayout.JAVA_INT_UNALIGNED, size, restarts[i]);
+            size += Integer.BYTES;
+        }
+        block.set(ValueLayout.JAVA_INT_UNALIGNED, size, restartsCount);
+        size += Integer.BYTES;
+        return block.asSlice(0, size);
+    }
+
+    public void reset() {
+        size = 0;
+        restartsCount = 0;
+        counter = 0;
+        lastKeySize = 0;
+        entries = 0;
+    }
+
+    private void putVarLong(long value) {
+        long rest = value;
+        while ((rest & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+        buffer[size++] = (byte) rest;
+    }
+
+    private void ensureCapacity(long additional) {
+        long required = size + additional;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.toIntExact(Math.max(required, 2L * buffer.length)));
+        }
+    }
+}
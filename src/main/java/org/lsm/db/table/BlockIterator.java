@@ -0,0 +1,153 @@
+package org.lsm.db.table;
+
+import org.lsm.db.exception.InvalidBlockException;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Reads records of one data block written by {@link BlockBuilder}.
+ * Current key is decoded into reusable buffer, so {@link #key()} is valid until the next move.
+ */
+public class BlockIterator {
+    private final MemorySegment block;
+    private final Comparator<MemorySegment> comparator;
+    private final long restartsOffset;
+    private final int restartsCount;
+    private long position;
+    private byte[] key;
+    private MemorySegment keySegment;
+    /**
+     * Slices returned by {@link #key()} and {@link #value()}, they are created once per record
+     * as merge reads the current record several times.
+     */
+    private MemorySegment keyView;
+    private MemorySegment valueView;
+    private int keySize;
+    private long valueOffset;
+    private long valueSize;
+    private boolean valid;
+
+    public BlockIterator(MemorySegment block, Comparator<MemorySegment> comparator) {
+        this.block = block;
+        this.comparator = comparator;
+        this.restartsCount = block.get(ValueLayout.JAVA_INT_UNALIGNED, block.byteSize() - Integer.BYTES);
+        this.restartsOffset = block.byteSize() - (restartsCount + 1L) * Integer.BYTES;
+        if (restartsCount <= 0 || restartsOffset < 0) {
+            throw new InvalidBlockException("Invalid amount of restart points in block: " + restartsCount);
+        }
+        this.key = new byte[16];
+        this.keySegment = MemorySegment.ofArray(key);
+    }
+
+    public void seekToFirst() {
+        position = restartPoint(0);
+        keySize = 0;
+        next();
+    }
+
+    /**
+     * Moves to the first record with key greater or equal to target.
+     */
+    public void seek(MemorySegment target) {
+        int l = 0;
+        int r = restartsCount - 1;
+        while (l < r) {
+            int mid = l + (r - l + 1) / 2;
+            if (comparator.compare(restartKey(mid), target) < 0) {
+                l = mid;
+            } else {
+                r = mid - 1;
+            }
+        }
+        position = restartPoint(l);
+        keySize = 0;
+        next();
+        while (valid && comparator.compare(key(), target) < 0) {
+            next();
+        }
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public void next() {
+        if (position >= restartsOffset) {
+            valid = false;
+            return;
+        }
+        int shared = Math.toIntExact(readVarLong());
+        int unshared = Math.toIntExact(readVarLong());
+        long encodedValueSize = readVarLong();
+        if (shared > keySize) {
+            throw new InvalidBlockException("Invalid shared prefix " + shared + " at block position " + position);
+        }
+        if (key.length < shared + unshared) {
+            key = Arrays.copyOf(key, Math.max(shared + unshared, 2 * key.length));
+            keySegment = MemorySegment.ofArray(key);
+        }
+        MemorySegment.copy(block, ValueLayout.JAVA_BYTE, position, key, shared, unshared);
+        keySize = shared + unshared;
+        keyView = null;
+        valueView = null;
+        position += unshared;
+        valueOffset = position;
+        valueSize = encodedValueSize - 1;
+        position += Math.max(valueSize, 0);
+        valid = true;
+    }
+
+    /**
+     * Key of current record, valid until the next move.
+     */
+    public MemorySegment key() {
+        if (keyView == null) {
+            keyView = keySegment.asSlice(0, keySize);
+        }
+        return keyView;
+    }
+
+    /**
+     * Copy of key of current record.
+     */
+    public MemorySegment copyKey() {
+        return MemorySegment.ofArray(Arrays.copyOf(key, keySize));
+    }
+
+    /**
+     * Value of current record or null for tombstone.
+     */
+    public MemorySegment value() {
+        if (valueView == null && valueSize >= 0) {
+            valueView = block.asSlice(valueOffset, valueSize);
+        }
+        return valueView;
+    }
+
+    private long restartPoint(int i) {
+        return block.get(ValueLayout.JAVA_INT_UNALIGNED, restartsOffset + (long) i * Integer.BYTES);
+    }
+
+    private MemorySegment restartKey(int i) {
+        position = restartPoint(i);
+        readVarLong(); // shared prefix is always empty in restart point
+        long unshared = readVarLong();
+        readVarLong();
+        return block.asSlice(position, unshared);
+    }
+
+    private long readVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = block.get(ValueLayout.JAVA_BYTE, position++);
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new InvalidBlockException("Malformed varint at block position " + position);
+    }
+}
@@ -0,0 +1,265 @@
+package org.lsm.db.table;
+
+import org.lsm.db.entry.RangeTombstone;
+import org.lsm.db.exception.WriteFailureException;
+import org.lsm.db.filter.BloomFilter;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes table into file in one pass, file is only appended, so its size is not estimated in advance.
+ * File has the following format: <var>block1 block2 ... block_n filter index rangeTombstones footer</var>.
+ * Blocks are stored in format of {@link Compression} of table, index points to stored blocks.
+ * Data blocks are built by {@link BlockBuilder} and don't exceed {@link #BLOCK_SIZE} unless block
+ * consists of one large record, so they fit into slots of {@link org.lsm.db.cache.BlockCache}.
+ * Filter is {@link BloomFilter} of all keys, its size is chosen by the expected amount of rows when writer is created,
+ * so keys are added to it as they are written instead of being kept until {@link #finish()}.
+ * Index has the following format: <var>blockOff1:keyOff1:prefix1 blockOff2:keyOff2:prefix2 ...
+ * blockOff_n:keyOff_n:prefix_n dataEnd:indexEnd:0 firstKey1 firstKey2 ... firstKey_n</var>
+ * without any : and spaces, where key offsets are relative to index start
+ * and prefixes are {@link KeyComparator#prefix(MemorySegment)} of first keys.
+ * Range tombstones are stored as <var>count fromSize_1 toSize_1 from_1 to_1 ... from_n to_n</var>,
+ * the block is omitted if table has no range tombstones.
+ * Blocks are collected in heap buffer, block which doesn't fit is written together with buffered ones
+ * by one gather write. Filter, index, range tombstones and footer are built in heap by {@link #finish()}
+ * and appended after data the same way.
+ */
+public class ChannelTableWriter implements TableWriter {
+    private static final int BUFFER_SIZE = 16 * BLOCK_SIZE;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final MemorySegment blockHeader;
+    private final BlockBuilder blockBuilder;
+    private final int level;
+    private final Compression compression;
+    private final Deflater deflater;
+    private byte[] compressed;
+    /**
+     * Size of written and buffered data, it is offset of the next block.
+     */
+    private long dataOffset;
+    private long rows;
+    private long byteSize;
+    private long[] blockOffsets;
+    private long[] keyOffsets;
+    private long[] keyPrefixes;
+    private int blocks;
+    private byte[] firstKeys;
+    private int firstKeysSize;
+    private final BloomFilter.Builder filter;
+    private List<RangeTombstone<MemorySegment>> rangeTombstones = List.of();
+
+    /**
+     * Creates writer of table in the given level of LSM tree, expectedRows sizes filter of table.
+     */
+    public ChannelTableWriter(Path path, int level, Compression compression, long expectedRows) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        );
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.blockHeader = MemorySegment.ofArray(new byte[(int) Compression.HEADER_SIZE]);
+        this.blockBuilder = new BlockBuilder(BLOCK_SIZE);
+        this.level = level;
+        this.compression = compression;
+        this.deflater = compression == Compression.DEFLATE ? new Deflater(Deflater.BEST_SPEED, true) : null;
+        this.blockOffsets = new long[16];
+        this.keyOffsets = new long[16];
+        this.keyPrefixes = new long[16];
+        this.firstKeys = new byte[256];
+        this.filter = new BloomFilter.Builder(expectedRows);
+        this.compressed = new byte[0];
+    }
+
+    @Override
+    public void writeEntry(MemorySegment key, MemorySegment value) {
+        long recordSize = BlockBuilder.MAX_RECORD_OVERHEAD + Integer.BYTES + key.byteSize()
+                + (value == null ? 0 : value.byteSize());
+        if (!blockBuilder.isEmpty() && blockBuilder.estimatedSize() + recordSize > BLOCK_SIZE) {
+            flushBlock();
+        }
+        if (blockBuilder.isEmpty()) {
+            addIndexEntry(key);
+        }
+        blockBuilder.add(key, value);
+        filter.add(key);
+        rows++;
+        byteSize += key.byteSize() + (value == null ? 0 : value.byteSize());
+    }
+
+    @Override
+    public void writeRangeTombstones(List<RangeTombstone<MemorySegment>> tombstones) {
+        this.rangeTombstones = tombstones;
+    }
+
+    @Override
+    public void finish() {
+        if (!blockBuilder.isEmpty()) {
+            flushBlock();
+        }
+        long filterSize = filter.byteSize();
+        long entriesSize = (blocks + 1L) * 3 * Long.BYTES;
+        long indexSize = entriesSize + firstKeysSize;
+        long tombstonesSize = rangeTombstones.isEmpty() ? 0 : Long.BYTES;
+        for (RangeTombstone<MemorySegment> tombstone : rangeTombstones) {
+            tombstonesSize += 2L * Long.BYTES + tombstone.from().byteSize() + tombstone.to().byteSize();
+        }
+        long tailOffset = dataOffset;
+        int tailSize = Math.toIntExact(filterSize + indexSize + tombstonesSize);
+        MemorySegment tail = MemorySegment.ofArray(new byte[tailSize]);
+        long offset = filter.write(tail, 0L);
+        Handle filterHandle = new Handle(tailOffset, filterSize);
+        Handle indexHandle = new Handle(tailOffset + offset, indexSize);
+        for (int i = 0; i < blocks; i++) {
+            offset = copyToSegment(tail, blockOffsets[i], offset);
+            offset = copyToSegment(tail, entriesSize + keyOffsets[i], offset);
+            offset = copyToSegment(tail, keyPrefixes[i], offset);
+        }
+        offset = copyToSegment(tail, tailOffset, offset);
+        offset = copyToSegment(tail, indexSize, offset);
+        offset = copyToSegment(tail, 0L, offset);
+        MemorySegment.copy(firstKeys, 0, tail, ValueLayout.JAVA_BYTE, offset, firstKeysSize);
+        offset += firstKeysSize;
+        Handle rangeTombstonesHandle = new Handle(tailOffset + offset, tombstonesSize);
+        if (!rangeTombstones.isEmpty()) {
+            offset = copyToSegment(tail, rangeTombstones.size(), offset);
+            for (RangeTombstone<MemorySegment> tombstone : rangeTombstones) {
+                offset = copyToSegment(tail, tombstone.from().byteSize(), offset);
+                offset = copyToSegment(tail, tombstone.to().byteSize(), offset);
+                MemorySegment.copy(tombstone.from(), 0, tail, offset, tombstone.from().byteSize());
+                offset += tombstone.from().byteSize();
+                MemorySegment.copy(tombstone.to(), 0, tail, offset, tombstone.to().byteSize());
+                offset += tombstone.to().byteSize();
+            }
+        }
+        Footer footer = new Footer(Footer.CURRENT_VERSION, indexHandle, filterHandle, rows, byteSize, level,
+                compression, rangeTombstonesHandle);
+        MemorySegment footerSegment = MemorySegment.ofArray(new byte[(int) footer.footerSize()]);
+        footer.write(footerSegment, 0L);
+        append(tail, footerSegment);
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void flushBlock() {
+        MemorySegment block = blockBuilder.finish();
+        if (compression == Compression.NONE) {
+            append(block);
+        } else {
+            appendCompressed(block);
+        }
+        blockBuilder.reset();
+    }
+
+    /**
+     * Deflates block into heap buffer, block is stored raw if it doesn't shrink.
+     */
+    private void appendCompressed(MemorySegment block) {
+        int blockSize = (int) block.byteSize();
+        if (compressed.length < blockSize) {
+            compressed = new byte[blockSize];
+        }
+        deflater.reset();
+        deflater.setInput(block.asByteBuffer());
+        deflater.finish();
+        int compressedSize = deflater.deflate(compressed, 0, blockSize);
+        Compression type = Compression.DEFLATE;
+        MemorySegment payload = MemorySegment.ofArray(compressed).asSlice(0, compressedSize);
+        if (!deflater.finished()) {
+            payload = block;
+            type = Compression.NONE;
+        }
+        blockHeader.set(ValueLayout.JAVA_BYTE, 0L, (byte) type.id());
+        blockHeader.set(ValueLayout.JAVA_INT_UNALIGNED, Byte.BYTES, blockSize);
+        append(blockHeader, payload);
+    }
+
+    /**
+     * Copies parts into buffer if they fit, otherwise writes buffer and parts by one gather write.
+     * Parts may be reused by caller after return.
+     */
+    private void append(MemorySegment... parts) {
+        long size = 0;
+        for (MemorySegment part : parts) {
+            size += part.byteSize();
+        }
+        if (size <= buffer.remaining()) {
+            for (MemorySegment part : parts) {
+                buffer.put(part.asByteBuffer());
+            }
+        } else {
+            ByteBuffer[] buffers = new ByteBuffer[parts.length + 1];
+            buffers[0] = buffer.flip();
+            for (int i = 0; i < parts.length; i++) {
+                buffers[i + 1] = parts[i].asByteBuffer();
+            }
+            write(buffers);
+            buffer.clear();
+        }
+        dataOffset += size;
+    }
+
+    private void write(ByteBuffer... buffers) {
+        try {
+            for (ByteBuffer remaining : buffers) {
+                while (remaining.hasRemaining()) {
+                    channel.write(buffers);
+                }
+            }
+        } catch (IOException ex) {
+            throw new WriteFailureException("Couldn't write table " + path, ex);
+        }
+    }
+
+    private void addIndexEntry(MemorySegment firstKey) {
+        if (blocks == blockOffsets.length) {
+            blockOffsets = Arrays.copyOf(blockOffsets, 2 * blocks);
+            keyOffsets = Arrays.copyOf(keyOffsets, 2 * blocks);
+            keyPrefixes = Arrays.copyOf(keyPrefixes, 2 * blocks);
+        }
+        int keySize = Math.toIntExact(firstKey.byteSize());
+        if (firstKeysSize + keySize > firstKeys.length) {
+            firstKeys = Arrays.copyOf(firstKeys, Math.max(firstKeysSize + keySize, 2 * firstKeys.length));
+        }
+        MemorySegment.copy(firstKey, ValueLayout.JAVA_BYTE, 0, firstKeys, firstKeysSize, keySize);
+        blockOffsets[blocks] = dataOffset;
+        keyOffsets[blocks] = firstKeysSize;
+        keyPrefixes[blocks] = KeyComparator.prefix(firstKey);
+        firstKeysSize += keySize;
+        blocks++;
+    }
+
+    /**
+     * Copy long to MemorySegment and return new offset in destination segment.
+     */
+    private long copyToSegment(MemorySegment dest, long value, long offset) {
+        dest.set(ValueLayout.JAVA_LONG_UNALIGNED, offset, value);
+        return offset + Long.BYTES;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (channel.isOpen()) {
+            channel.force(true);
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,92 @@
+package org.lsm.db.table;
+
+import org.lsm.db.exception.InvalidBlockException;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Codec of SSTable data blocks, recorded in {@link Footer}.
+ * Blocks of compressed tables are stored as <var>type rawSize payload</var>, where type is id of codec
+ * which compressed the payload: block which doesn't shrink is stored as is with type of {@link #NONE}.
+ * Blocks are compressed independently, so reader inflates only blocks it touches.
+ * Payload is copied to heap before inflating, since inflater doesn't accept buffers of shared arena:
+ * each thread reuses its inflater and input buffer, so only the raw block is allocated per decode.
+ */
+public enum Compression {
+    NONE(0),
+    /**
+     * {@link java.util.zip.Deflater} with the fastest level and no zlib wrapper.
+     */
+    DEFLATE(1);
+
+    public static final long HEADER_SIZE = Byte.BYTES + Integer.BYTES;
+    private static final ThreadLocal<Decoder> DECODERS = ThreadLocal.withInitial(Decoder::new);
+
+    private final int id;
+
+    Compression(int id) {
+        this.id = id;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public static Compression of(int id) {
+        for (Compression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+        throw new InvalidBlockException("Unsupported compression: " + id);
+    }
+
+    /**
+     * Returns raw block by block stored in table of this codec.
+     */
+    public MemorySegment decode(MemorySegment stored) {
+        if (this == NONE) {
+            return stored;
+        }
+        int type = stored.get(ValueLayout.JAVA_BYTE, 0);
+        int rawSize = stored.get(ValueLayout.JAVA_INT_UNALIGNED, Byte.BYTES);
+        MemorySegment payload = stored.asSlice(HEADER_SIZE);
+        if (type == NONE.id) {
+            return payload;
+        }
+        if (type != DEFLATE.id) {
+            throw new InvalidBlockException("Unsupported block compression: " + type);
+        }
+        return MemorySegment.ofArray(DECODERS.get().inflate(payload, rawSize));
+    }
+
+    /**
+     * Inflater and input buffer of one thread, input grows to the largest payload the thread has read.
+     */
+    private static final class Decoder {
+        private final Inflater inflater = new Inflater(true);
+        private byte[] input = new byte[0];
+
+        byte[] inflate(MemorySegment payload, int rawSize) {
+            int size = Math.toIntExact(payload.byteSize());
+            if (input.length < size) {
+                input = new byte[size];
+            }
+            MemorySegment.copy(payload, ValueLayout.JAVA_BYTE, 0, input, 0, size);
+            byte[] raw = new byte[rawSize];
+            inflater.reset();
+            inflater.setInput(input, 0, size);
+            try {
+                if (inflater.inflate(raw) != rawSize) {
+                    throw new InvalidBlockException("Block is shorter than " + rawSize + " bytes");
+                }
+            } catch (DataFormatException ex) {
+                throw new InvalidBlockException("Couldn't inflate block", ex);
+            }
+            return raw;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.lsm.db.table;
+
+import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
+
+import java.util.List;
+
+/**
+ * Immutable table stored in file with metadata used by compaction.
+ * Table is referenced by every version of levels which contains it and is closed when the last one is released.
+ */
+public interface DiskTable<K> extends Table<K> {
+    /**
+     * Unique number of table, it is also a suffix of its file.
+     */
+    int tableNumber();
+
+    /**
+     * Level of table in LSM tree.
+     */
+    int level();
+
+    /**
+     * The least key or start of range tombstone of table, null if table is empty.
+     */
+    K minKey();
+
+    /**
+     * The greatest key or exclusive end of range tombstone of table, null if table is empty.
+     */
+    K maxKey();
+
+    /**
+     * Looks up sorted keys with indexes in [from;to) which entries are still null and sets found entries,
+     * tombstones included, at the same indexes. Returns amount of found entries.
+     */
+    default int getAll(List<K> keys, List<Entry<K>> entries, int from, int to) {
+        int found = 0;
+        for (int i = from; i < to; i++) {
+            if (entries.get(i) == null) {
+                Entry<K> entry = get(keys.get(i));
+                if (entry != null) {
+                    entries.set(i, entry);
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Disjoint ranges deleted by table in ascending order, they hide keys of older tables.
+     */
+    List<RangeTombstone<K>> rangeTombstones();
+
+    /**
+     * Size of table file in bytes.
+     */
+    long fileSize();
+
+    /**
+     * Keys which split table into ranges of similar size in ascending order, the first one is the least key.
+     * Compaction uses them to merge key ranges in parallel.
+     */
+    List<K> splitKeys();
+
+    /**
+     * Hints how mapped data of table will be read, does nothing by default.
+     */
+    default void advise(AccessHint hint) {
+        // Do nothing
+    }
+
+    /**
+     * Adds reference to table.
+     */
+    void retain();
+
+    /**
+     * Removes reference to table and closes it if the reference was the last one.
+     */
+    void release();
+}
@@ -2,25 +2,128 @@ package org.lsm.db.table;
 
 import org.lsm.db.exception.InvalidBlockException;
 
+import java.io.IOException;
+import java.lang.foreign.Arena;
 import java.lang.foreign.MemorySegment;
 import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
 
+/**
+ * Last bytes of SSTable file.
+ * Legacy tables end with <var>indexOffset indexSize</var>.
+ * Versioned tables end with <var>indexOffset indexSize filterOffset filterSize rows byteSize level
+ * compression rangeTombstonesOffset rangeTombstonesSize version footerSize magic</var>,
+ * so the trailer <var>version footerSize magic</var> is enough to recognize the format.
+ * Tables of {@link #BLOCK_VERSION} have no filter handle,
+ * tables before {@link #LEVEL_VERSION} have no level and belong to level 0,
+ * tables before {@link #COMPRESSION_VERSION} have uncompressed blocks,
+ * tables before {@link #PREFIX_VERSION} have no key prefixes in index entries,
+ * tables before {@link #RANGE_TOMBSTONE_VERSION} have no range tombstones.
+ */
 public class Footer {
     public static final long FOOTER_SIZE = 2 * Long.BYTES;
-    private Handle indexHandle;
+    public static final long TRAILER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    public static final long MAGIC = 0x4C534D5353544142L; // LSMSSTAB
+    public static final int LEGACY_VERSION = 1;
+    public static final int BLOCK_VERSION = 2;
+    public static final int FILTER_VERSION = 3;
+    public static final int LEVEL_VERSION = 4;
+    public static final int COMPRESSION_VERSION = 5;
+    public static final int PREFIX_VERSION = 6;
+    public static final int RANGE_TOMBSTONE_VERSION = 7;
+    public static final int CURRENT_VERSION = RANGE_TOMBSTONE_VERSION;
+    private static final Handle EMPTY_HANDLE = new Handle(0L, 0L);
 
-    public Footer(Handle indexHandle) {
+    private final int version;
+    private final Handle indexHandle;
+    private final Handle filterHandle;
+    private final long rows;
+    private final long byteSize;
+    private final int level;
+    private final Compression compression;
+    private final Handle rangeTombstonesHandle;
+
+    public Footer(int version, Handle indexHandle, Handle filterHandle, long rows, long byteSize, int level,
+                  Compression compression, Handle rangeTombstonesHandle) {
+        this.version = version;
         this.indexHandle = indexHandle;
+        this.filterHandle = filterHandle;
+        this.rows = rows;
+        this.byteSize = byteSize;
+        this.level = level;
+        this.compression = compression;
+        this.rangeTombstonesHandle = rangeTombstonesHandle;
     }
 
-    public void setIndexHandle(Handle indexHandle) {
-        this.indexHandle = indexHandle;
+    public int getVersion() {
+        return version;
     }
 
     public Handle getIndexHandle() {
         return indexHandle;
     }
 
+    /**
+     * Handle of bloom filter block, empty if table has no filter.
+     */
+    public Handle getFilterHandle() {
+        return filterHandle;
+    }
+
+    /**
+     * Amount of entries in table.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Sum of key and value sizes of all entries before encoding.
+     */
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * Level of table in LSM tree.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Codec of data blocks.
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Handle of range tombstones block, empty if table has no range tombstones.
+     */
+    public Handle getRangeTombstonesHandle() {
+        return rangeTombstonesHandle;
+    }
+
+    /**
+     * Size of this footer on disk.
+     */
+    public long footerSize() {
+        return footerSize(version);
+    }
+
+    private static long footerSize(int version) {
+        return switch (version) {
+            case LEGACY_VERSION -> FOOTER_SIZE;
+            case BLOCK_VERSION -> 4 * Long.BYTES + TRAILER_SIZE;
+            case FILTER_VERSION -> 6 * Long.BYTES + TRAILER_SIZE;
+            case LEVEL_VERSION -> 7 * Long.BYTES + TRAILER_SIZE;
+            case COMPRESSION_VERSION, PREFIX_VERSION -> 8 * Long.BYTES + TRAILER_SIZE;
+            case RANGE_TOMBSTONE_VERSION -> 10 * Long.BYTES + TRAILER_SIZE;
+            default -> throw new InvalidBlockException("Unsupported footer version: " + version);
+        };
+    }
+
     public static Footer createFooter(MemorySegment segment) {
         if (segment.byteSize() != FOOTER_SIZE) {
             throw new InvalidBlockException(
@@ -30,6 +133,84 @@ public class Footer {
         }
         long offset = segment.get(ValueLayout.JAVA_LONG_UNALIGNED, 0L);
         long size = segment.get(ValueLayout.JAVA_LONG_UNALIGNED, Long.BYTES);
-        return new Footer(new Handle(offset, size));
+        long rows = size / (2L * Long.BYTES) - 1;
+        return new Footer(LEGACY_VERSION, new Handle(offset, size), EMPTY_HANDLE, rows, offset, 0, Compression.NONE,
+                EMPTY_HANDLE);
+    }
+
+    /**
+     * Reads footer of any supported version from the end of channel.
+     */
+    public static Footer read(FileChannel channel, Arena arena) throws IOException {
+        FileChannel.MapMode mode = FileChannel.MapMode.READ_ONLY;
+        long channelSize = channel.size();
+        if (channelSize >= TRAILER_SIZE) {
+            MemorySegment trailer = channel.map(mode, channelSize - TRAILER_SIZE, TRAILER_SIZE, arena);
+            if (trailer.get(ValueLayout.JAVA_LONG_UNALIGNED, 2L * Integer.BYTES) == MAGIC) {
+                int version = trailer.get(ValueLayout.JAVA_INT_UNALIGNED, 0L);
+                int size = trailer.get(ValueLayout.JAVA_INT_UNALIGNED, Integer.BYTES);
+                if (version == LEGACY_VERSION || size != footerSize(version)) {
+                    throw new InvalidBlockException(
+                            String.format("Unsupported footer, version: %s, size: %s", version, size)
+                    );
+                }
+                MemorySegment segment = channel.map(mode, channelSize - size, size, arena);
+                long offset = 0L;
+                Handle indexHandle = readHandle(segment, offset);
+                offset += 2L * Long.BYTES;
+                Handle filterHandle = EMPTY_HANDLE;
+                if (version >= FILTER_VERSION) {
+                    filterHandle = readHandle(segment, offset);
+                    offset += 2L * Long.BYTES;
+                }
+                long rows = segment.get(ValueLayout.JAVA_LONG_UNALIGNED, offset);
+                long byteSize = segment.get(ValueLayout.JAVA_LONG_UNALIGNED, offset + Long.BYTES);
+                offset += 2L * Long.BYTES;
+                int level = version >= LEVEL_VERSION
+                        ? Math.toIntExact(segment.get(ValueLayout.JAVA_LONG_UNALIGNED, offset))
+                        : 0;
+                offset += Long.BYTES;
+                Compression compression = version >= COMPRESSION_VERSION
+                        ? Compression.of(Math.toIntExact(segment.get(ValueLayout.JAVA_LONG_UNALIGNED, offset)))
+                        : Compression.NONE;
+                offset += Long.BYTES;
+                Handle rangeTombstonesHandle = version >= RANGE_TOMBSTONE_VERSION
+                        ? readHandle(segment, offset)
+                        : EMPTY_HANDLE;
+                return new Footer(version, indexHandle, filterHandle, rows, byteSize, level, compression,
+                        rangeTombstonesHandle);
+            }
+        }
+        return createFooter(channel.map(mode, channelSize - FOOTER_SIZE, FOOTER_SIZE, arena));
+    }
+
+    /**
+     * Writes footer of {@link #CURRENT_VERSION} to segment and returns new offset in it.
+     */
+    public long write(MemorySegment segment, long offset) {
+        long position = writeHandle(segment, offset, indexHandle);
+        position = writeHandle(segment, position, filterHandle);
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, position, rows);
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, position + Long.BYTES, byteSize);
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, position + 2L * Long.BYTES, level);
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, position + 3L * Long.BYTES, compression.id());
+        position = writeHandle(segment, position + 4L * Long.BYTES, rangeTombstonesHandle);
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, position, CURRENT_VERSION);
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, position + Integer.BYTES, (int) footerSize(CURRENT_VERSION));
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, position + 2L * Integer.BYTES, MAGIC);
+        return position + TRAILER_SIZE;
+    }
+
+    private static Handle readHandle(MemorySegment segment, long offset) {
+        return new Handle(
+                segment.get(ValueLayout.JAVA_LONG_UNALIGNED, offset),
+                segment.get(ValueLayout.JAVA_LONG_UNALIGNED, offset + Long.BYTES)
+        );
+    }
+
+    private static long writeHandle(MemorySegment segment, long offset, Handle handle) {
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, offset, handle.offset());
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, offset + Long.BYTES, handle.size());
+        return offset + 2L * Long.BYTES;
     }
 }
@@ -2,9 +2,14 @@ package org.lsm.db.table;
 
 import java.lang.foreign.MemorySegment;
 import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
 import java.util.Comparator;
 
 public class KeyComparator implements Comparator<MemorySegment> {
+    private static final ValueLayout.OfLong BIG_ENDIAN_LONG =
+            ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final long SIGN_BITS = 0x8080808080808080L;
+
     @Override
     public int compare(MemorySegment first, MemorySegment second) {
         if (first == null || second == null) return -1;
@@ -20,4 +25,43 @@ public class KeyComparator implements Comparator<MemorySegment> {
                 second.getAtIndex(ValueLayout.JAVA_BYTE, missIndex)
         );
     }
+
+    /**
+     * Returns the first 8 bytes of key as big-endian long with flipped sign bits, short key is padded with zeros.
+     * Unsigned order of prefixes doesn't contradict order of keys, equal prefixes need comparison of keys.
+     */
+    public static long prefix(MemorySegment key) {
+        if (key.byteSize() >= Long.BYTES) {
+            return key.get(BIG_ENDIAN_LONG, 0) ^ SIGN_BITS;
+        }
+        long prefix = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            prefix <<= Byte.SIZE;
+            if (i < key.byteSize()) {
+                prefix |= (key.get(ValueLayout.JAVA_BYTE, i) ^ 0x80) & 0xFF;
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * Compares slices of segments in the same order without creating slices.
+     */
+    public static int compare(MemorySegment first, long firstFrom, long firstTo,
+                              MemorySegment second, long secondFrom, long secondTo) {
+        long missIndex = MemorySegment.mismatch(first, firstFrom, firstTo, second, secondFrom, secondTo);
+        if (missIndex == -1) {
+            return 0;
+        }
+        if (missIndex == firstTo - firstFrom) {
+            return -1;
+        }
+        if (missIndex == secondTo - secondFrom) {
+            return 1;
+        }
+        return Byte.compare(
+                first.get(ValueLayout.JAVA_BYTE, firstFrom + missIndex),
+                second.get(ValueLayout.JAVA_BYTE, secondFrom + missIndex)
+        );
+    }
 }
@@ -0,0 +1,178 @@
+package org.lsm.db.table;
+
+import org.lsm.db.cache.BlockCache;
+import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
+import org.lsm.db.exception.FileChannelException;
+import org.lsm.db.iterator.Cursor;
+import org.lsm.db.iterator.TableCursor;
+import org.lsm.db.iterator.TableIterator;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SSTable which file is mapped on the first read. Metadata used by levels and compaction comes
+ * from {@link TableMeta}, so opening dao doesn't touch files of tables.
+ */
+public class LazySSTable implements DiskTable<MemorySegment> {
+    private final TableMeta meta;
+    private final Path path;
+    private final Comparator<MemorySegment> comparator;
+    private final BlockCache cache;
+    private final AtomicInteger references = new AtomicInteger();
+    private volatile DiskTable<MemorySegment> table;
+    private boolean closed;
+
+    public LazySSTable(TableMeta meta, Path path, Comparator<MemorySegment> comparator, BlockCache cache) {
+        this.meta = meta;
+        this.path = path;
+        this.comparator = comparator;
+        this.cache = cache;
+    }
+
+    private DiskTable<MemorySegment> table() {
+        DiskTable<MemorySegment> opened = table;
+        if (opened != null) {
+            return opened;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Table is closed: " + path);
+            }
+            if (table == null) {
+                table = SSTable.open(path, comparator, meta.number(), cache);
+            }
+            return table;
+        }
+    }
+
+    @Override
+    public TableIterator<MemorySegment> tableIterator(MemorySegment from, boolean fromInclusive,
+                                                      MemorySegment to, boolean toInclusive) {
+        return table().tableIterator(from, fromInclusive, to, toInclusive);
+    }
+
+    @Override
+    public TableIterator<MemorySegment> descendingIterator(MemorySegment from, boolean fromInclusive,
+                                                           MemorySegment to, boolean toInclusive) {
+        return table().descendingIterator(from, fromInclusive, to, toInclusive);
+    }
+
+    @Override
+    public int getAll(List<MemorySegment> keys, List<Entry<MemorySegment>> entries, int from, int to) {
+        return table().getAll(keys, entries, from, to);
+    }
+
+    @Override
+    public Cursor<MemorySegment> cursor() {
+        return table().cursor();
+    }
+
+    @Override
+    public TableCursor<MemorySegment> rangeCursor(MemorySegment from, boolean fromInclusive, MemorySegment to,
+                                                  boolean toInclusive, boolean descending) {
+        return table().rangeCursor(from, fromInclusive, to, toInclusive, descending);
+    }
+
+    @Override
+    public Entry<MemorySegment> get(MemorySegment key) {
+        return table().get(key);
+    }
+
+    @Override
+    public List<MemorySegment> splitKeys() {
+        return table().splitKeys();
+    }
+
+    @Override
+    public List<RangeTombstone<MemorySegment>> rangeTombstones() {
+        return table().rangeTombstones();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (table != null) {
+            try {
+                table.close();
+            } catch (IOException ex) {
+                throw new FileChannelException("Couldn't close table " + path, ex);
+            }
+        }
+    }
+
+    @Override
+    public void retain() {
+        references.incrementAndGet();
+    }
+
+    @Override
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            close();
+        }
+    }
+
+    /**
+     * Table which is not mapped yet has no pages to drop, other hints map it.
+     */
+    @Override
+    public void advise(AccessHint hint) {
+        DiskTable<MemorySegment> opened = table;
+        if (opened != null) {
+            opened.advise(hint);
+        } else if (hint != AccessHint.DONT_NEED) {
+            table().advise(hint);
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new FileChannelException("Couldn't remove file channel by path " + path, e);
+        }
+    }
+
+    @Override
+    public int rows() {
+        return meta.rows();
+    }
+
+    @Override
+    public long byteSize() {
+        return meta.byteSize();
+    }
+
+    @Override
+    public long fileSize() {
+        return meta.fileSize();
+    }
+
+    @Override
+    public int tableNumber() {
+        return meta.number();
+    }
+
+    @Override
+    public int level() {
+        return meta.level();
+    }
+
+    @Override
+    public MemorySegment minKey() {
+        return meta.minKey();
+    }
+
+    @Override
+    public MemorySegment maxKey() {
+        return meta.maxKey();
+    }
+}
@@ -0,0 +1,317 @@
+package org.lsm.db.table;
+
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
+import org.lsm.db.exception.FileChannelException;
+import org.lsm.db.iterator.Cursor;
+import org.lsm.db.iterator.RangeCursor;
+import org.lsm.db.iterator.TableCursor;
+import org.lsm.db.iterator.TableIterator;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SSTable of {@link Footer#LEGACY_VERSION} format with dense index: two longs per entry.
+ * Such tables are only read, new tables are written in block format, see {@link SSTable}.
+ * Keys and values of returned entries are slices of mapped file, they are valid while table is retained.
+ */
+public class LegacySSTable implements DiskTable<MemorySegment> {
+    /**
+     * Amount of entries between split keys.
+     */
+    private static final int SPLIT_ROWS = 64;
+
+    /**
+     * Constable size of SSTable.
+     */
+    private final int rows;
+
+    /**
+     * Unique number of this SST.
+     */
+    private final int sstNumber; // System.currentTimeMillis() timestamp in metaHandleBLock
+    private final Arena arena;
+    private final Path path;
+    private final MemorySegment index;
+    private final MemorySegment data;
+    private final long byteSize;
+    private final long fileSize;
+    private final Comparator<MemorySegment> comparator;
+    private final AtomicInteger references = new AtomicInteger();
+
+    public LegacySSTable(Path path, Arena arena, FileChannel sstChannel, Footer footer,
+                         Comparator<MemorySegment> comparator, int sstNumber) throws IOException {
+        FileChannel.MapMode mode = FileChannel.MapMode.READ_ONLY;
+        Handle indexHandle = footer.getIndexHandle();
+        this.arena = arena;
+        this.index = sstChannel.map(mode, indexHandle.offset(), indexHandle.size(), arena);
+        this.data = sstChannel.map(mode, 0L, indexHandle.offset(), arena);
+        AccessHint.RANDOM.advise(data);
+        this.byteSize = footer.getByteSize();
+        this.fileSize = sstChannel.size();
+        this.rows = Math.toIntExact(footer.getRows());
+        this.sstNumber = sstNumber;
+        this.comparator = comparator;
+        this.path = path;
+    }
+
+    @Override
+    public void close() {
+        if (arena.scope().isAlive()) {
+            arena.close();
+        }
+    }
+
+    @Override
+    public void retain() {
+        references.incrementAndGet();
+    }
+
+    @Override
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            close();
+        }
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public TableIterator<MemorySegment> tableIterator(MemorySegment from, boolean fromInclusive,
+                                                      MemorySegment to, boolean toInclusive) {
+        return new TableIterator<>() {
+            int start = from == null ? 0 : binarySearch(from, !fromInclusive);
+            final int end = (to == null ? rows : binarySearch(to, toInclusive)) - 1;
+
+            @Override
+            public int getTableNumber() {
+                return sstNumber;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return start < rows && start <= end;
+            }
+
+            @Override
+            public Entry<MemorySegment> next() {
+                MemorySegment key = getKeyByIndex(start);
+                return new BaseEntry<>(key, getValueByIndex(start++));
+            }
+        };
+    }
+
+    @Override
+    public TableIterator<MemorySegment> descendingIterator(MemorySegment from, boolean fromInclusive,
+                                                           MemorySegment to, boolean toInclusive) {
+        return new TableIterator<>() {
+            int start = (to == null ? rows : binarySearch(to, toInclusive)) - 1;
+            final int end = from == null ? 0 : binarySearch(from, !fromInclusive);
+
+            @Override
+            public int getTableNumber() {
+                return sstNumber;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return start >= 0 && start >= end;
+            }
+
+            @Override
+            public Entry<MemorySegment> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                MemorySegment key = getKeyByIndex(start);
+                return new BaseEntry<>(key, getValueByIndex(start--));
+            }
+        };
+    }
+
+    /**
+     * Returns cursor which key and value are slices of mapped data.
+     */
+    @Override
+    public Cursor<MemorySegment> cursor() {
+        return new Cursor<>() {
+            int position = rows;
+
+            @Override
+            public void seekToFirst() {
+                position = 0;
+            }
+
+            @Override
+            public void seek(MemorySegment target) {
+                position = binarySearch(target, false);
+            }
+
+            @Override
+            public boolean isValid() {
+                return position < rows;
+            }
+
+            @Override
+            public void next() {
+                position++;
+            }
+
+            @Override
+            public MemorySegment key() {
+                return getKeyByIndex(position);
+            }
+
+            @Override
+            public MemorySegment value() {
+                return getValueByIndex(position);
+            }
+        };
+    }
+
+    /**
+     * Ascending cursor walks mapped data in place, descending one adapts {@link #descendingIterator}.
+     */
+    @Override
+    public TableCursor<MemorySegment> rangeCursor(MemorySegment from, boolean fromInclusive, MemorySegment to,
+                                                  boolean toInclusive, boolean descending) {
+        return descending
+                ? TableCursor.of(descendingIterator(from, fromInclusive, to, toInclusive))
+                : new RangeCursor(cursor(), from, fromInclusive, to, toInclusive, comparator, List.of());
+    }
+
+    @Override
+    public Entry<MemorySegment> get(MemorySegment key) {
+        int i = binarySearch(key, false);
+        if (i == rows || comparator.compare(key, getKeyByIndex(i)) != 0) {
+            return null;
+        }
+        return new BaseEntry<>(key, getValueByIndex(i));
+    }
+
+    @Override
+    public void advise(AccessHint hint) {
+        hint.advise(data);
+    }
+
+    @Override
+    public void clear() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new FileChannelException("Couldn't remove file channel by path " + path, e);
+        }
+    }
+
+    @Override
+    public long byteSize() {
+        return byteSize;
+    }
+
+    @Override
+    public long fileSize() {
+        return fileSize;
+    }
+
+    @Override
+    public int tableNumber() {
+        return sstNumber;
+    }
+
+    @Override
+    public int level() {
+        return 0;
+    }
+
+    @Override
+    public MemorySegment minKey() {
+        return rows == 0 ? null : getKeyByIndex(0);
+    }
+
+    @Override
+    public MemorySegment maxKey() {
+        return rows == 0 ? null : getKeyByIndex(rows - 1);
+    }
+
+    /**
+     * Returns every {@link #SPLIT_ROWS}-th key, they are slices of mapped data.
+     */
+    @Override
+    public List<MemorySegment> splitKeys() {
+        List<MemorySegment> keys = new ArrayList<>(rows / SPLIT_ROWS + 1);
+        for (int i = 0; i < rows; i += SPLIT_ROWS) {
+            keys.add(getKeyByIndex(i));
+        }
+        return keys;
+    }
+
+    /**
+     * Tables of legacy format have no range tombstones.
+     */
+    @Override
+    public List<RangeTombstone<MemorySegment>> rangeTombstones() {
+        return List.of();
+    }
+
+    private MemorySegment getKeyByIndex(int index) {
+        Objects.checkIndex(index, rows);
+        long keyOffset = getKeyOffset(index);
+        long valueOffset = Math.abs(getValueOffset(index));
+        return data.asSlice(keyOffset, valueOffset - keyOffset);
+    }
+
+    private MemorySegment getValueByIndex(int index) {
+        Objects.checkIndex(index, rows);
+        long valueOffset = getValueOffset(index);
+        if (valueOffset < 0) {
+            return null;
+        }
+        long nextKeyOffset = getKeyOffset(index + 1);
+        return data.asSlice(valueOffset, nextKeyOffset - valueOffset);
+    }
+
+    private long getKeyOffset(int i) {
+        long rawOffset = 2L * i * Long.BYTES;
+        return index.get(ValueLayout.JAVA_LONG_UNALIGNED, rawOffset);
+    }
+
+    private long getValueOffset(int i) {
+        long rawOffset = (2L * i + 1) * (long) Long.BYTES;
+        return index.get(ValueLayout.JAVA_LONG_UNALIGNED, rawOffset);
+    }
+
+    /**
+     * Returns index of the first key greater than key (strict) or greater or equal to key.
+     */
+    private int binarySearch(MemorySegment key, boolean strict) {
+        int l = 0;
+        int r = rows - 1;
+        while (l <= r) {
+            int mid = l + (r - l) / 2;
+            MemorySegment middle = getKeyByIndex(mid);
+            int compare = comparator.compare(key, middle);
+            if (compare < 0 || (!strict && compare == 0)) {
+                r = mid - 1;
+            } else {
+                l = mid + 1;
+            }
+        }
+        return l;
+    }
+}
@@ -0,0 +1,83 @@
+package org.lsm.db.table;
+
+import org.lsm.db.entry.RangeTombstone;
+import org.lsm.db.iterator.RangeTombstoneIndex;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Range tombstones of memtable tagged by their sequence numbers.
+ * Deletions are rare, so index is rebuilt by the first read after deletion and reads of memtable
+ * without range tombstones check only the empty index.
+ */
+final class MemRangeTombstones {
+    private final Comparator<MemorySegment> comparator;
+    private final List<RangeTombstone<MemorySegment>> tombstones = new ArrayList<>();
+    private final List<Long> sequences = new ArrayList<>();
+    private volatile RangeTombstoneIndex index = RangeTombstoneIndex.EMPTY;
+    private long byteSize;
+
+    MemRangeTombstones(Comparator<MemorySegment> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Adds heap copy of range and returns its size.
+     */
+    synchronized long add(MemorySegment from, MemorySegment to, long sequence) {
+        tombstones.add(new RangeTombstone<>(copy(from), copy(to)));
+        sequences.add(sequence);
+        index = null;
+        long size = from.byteSize() + to.byteSize();
+        byteSize += size;
+        return size;
+    }
+
+    RangeTombstoneIndex index() {
+        RangeTombstoneIndex current = index;
+        return current == null ? rebuild() : current;
+    }
+
+    /**
+     * Returns sequence of the newest tombstone visible to snapshot which deletes key, or -1.
+     */
+    long deletedAt(MemorySegment key, long snapshot) {
+        RangeTombstoneIndex current = index();
+        return current.isEmpty() ? -1 : current.maxTag(key, snapshot);
+    }
+
+    List<RangeTombstone<MemorySegment>> visible(long snapshot) {
+        RangeTombstoneIndex current = index();
+        return current.isEmpty() ? List.of() : current.ranges(null, null, snapshot);
+    }
+
+    synchronized long byteSize() {
+        return byteSize;
+    }
+
+    synchronized void clear() {
+        tombstones.clear();
+        sequences.clear();
+        index = RangeTombstoneIndex.EMPTY;
+        byteSize = 0;
+    }
+
+    private synchronized RangeTombstoneIndex rebuild() {
+        if (index == null) {
+            RangeTombstoneIndex.Builder builder = new RangeTombstoneIndex.Builder(comparator);
+            for (int i = 0; i < tombstones.size(); i++) {
+                builder.add(tombstones.get(i), sequences.get(i));
+            }
+            index = builder.build();
+        }
+        return index;
+    }
+
+    private static MemorySegment copy(MemorySegment segment) {
+        return MemorySegment.ofArray(segment.toArray(ValueLayout.JAVA_BYTE));
+    }
+}
@@ -1,38 +1,103 @@
 package org.lsm.db.table;
 
+import org.lsm.db.entry.BaseEntry;
 import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
+import org.lsm.db.iterator.Cursor;
+import org.lsm.db.iterator.RangeTombstoneIndex;
+import org.lsm.db.iterator.TableCursor;
 import org.lsm.db.iterator.TableIterator;
 
 import java.lang.foreign.MemorySegment;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NavigableMap;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
-public class MemTable implements Table<MemorySegment> {
+/**
+ * Memtable which keeps versions of every key from the newest to the oldest in order of sequence numbers,
+ * so writes which are inserted in other order than they were logged are read as after replay of log.
+ * Writers of the same key are serialized by its versions, readers are lock-free.
+ * Versions which are not visible to live snapshots are unlinked on the next upsert of key.
+ * Range tombstones are kept aside of versions, they hide versions with less sequence from reads.
+ */
+public class MemTable implements MutableTable {
+    private static final Function<MemorySegment, Versions> NEW_VERSIONS = key -> new Versions();
 
-    private final ConcurrentSkipListMap<MemorySegment, Entry<MemorySegment>> entriesMap;
+    private final ConcurrentSkipListMap<MemorySegment, Versions> entriesMap;
     private final AtomicLong byteSize;
+    /**
+     * Size of values of versions which are not the newest.
+     */
+    private final AtomicLong olderVersionsSize;
+    private final MemRangeTombstones rangeTombstones;
+    private final int tableNumber;
 
     public MemTable(Comparator<MemorySegment> comparator) {
+        this(comparator, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates memtable which entries override entries of tables with lower numbers.
+     */
+    public MemTable(Comparator<MemorySegment> comparator, int tableNumber) {
         this.entriesMap = new ConcurrentSkipListMap<>(comparator);
         this.byteSize = new AtomicLong();
+        this.olderVersionsSize = new AtomicLong();
+        this.rangeTombstones = new MemRangeTombstones(comparator);
+        this.tableNumber = tableNumber;
+    }
+
+    /**
+     * Finds versions of key in one traversal of map for existing key, size is updated by the replaced version.
+     */
+    @Override
+    public void upsert(Entry<MemorySegment> entry, long sequence, long oldestSnapshot) {
+        Versions versions = entriesMap.computeIfAbsent(entry.key(), NEW_VERSIONS);
+        byteSize.addAndGet(versions.push(entry, sequence, oldestSnapshot, olderVersionsSize));
+    }
+
+    /**
+     * Puts entries and updates size once for all of them.
+     */
+    @Override
+    public void upsertAll(List<Entry<MemorySegment>> entries, long sequence, long oldestSnapshot) {
+        long delta = 0;
+        for (Entry<MemorySegment> entry : entries) {
+            Versions versions = entriesMap.computeIfAbsent(entry.key(), NEW_VERSIONS);
+            delta += versions.push(entry, sequence, oldestSnapshot, olderVersionsSize);
+        }
+        byteSize.addAndGet(delta);
+    }
+
+    private static long valueSize(Entry<MemorySegment> entry) {
+        return entry.value() == null ? 0 : entry.value().byteSize();
+    }
+
+    @Override
+    public void deleteRange(MemorySegment from, MemorySegment to, long sequence) {
+        byteSize.addAndGet(rangeTombstones.add(from, to, sequence));
     }
 
-    public void upsert(Entry<MemorySegment> entry) {
-        updateByteSize(entry);
-        entriesMap.put(entry.key(), entry);
+    @Override
+    public List<RangeTombstone<MemorySegment>> rangeTombstones(long snapshot) {
+        return rangeTombstones.visible(snapshot);
     }
 
-    private void updateByteSize(Entry<MemorySegment> entry) {
-        if (entriesMap.containsKey(entry.key())) {
-            var oldValue = entriesMap.get(entry.key()).value();
-            byteSize.addAndGet(oldValue == null ? 0 : -oldValue.byteSize());
-        } else {
-            byteSize.addAndGet(entry.key().byteSize());
+    @Override
+    public Entry<MemorySegment> get(MemorySegment key, long snapshot) {
+        Versions versions = entriesMap.get(key);
+        Version version = versions == null ? null : versions.visible(snapshot);
+        long deleted = rangeTombstones.deletedAt(key, snapshot);
+        if (version == null) {
+            return deleted < 0 ? null : new BaseEntry<>(key, null);
         }
-        byteSize.addAndGet(entry.value() == null ? 0 : entry.value().byteSize());
+        return version.sequence < deleted ? new BaseEntry<>(key, null) : version.entry;
     }
 
     @Override
@@ -42,36 +107,110 @@ public class MemTable implements Table<MemorySegment> {
 
     @Override
     public TableIterator<MemorySegment> tableIterator(MemorySegment from, boolean fromInclusive,
-                                                      MemorySegment to, boolean toInclusive) {
+                                                      MemorySegment to, boolean toInclusive, long snapshot) {
+        return new VersionsIterator(getSubMap(from, fromInclusive, to, toInclusive).values().iterator(), snapshot);
+    }
+
+    /**
+     * Iterates descending view of map.
+     */
+    @Override
+    public TableIterator<MemorySegment> descendingIterator(MemorySegment from, boolean fromInclusive,
+                                                           MemorySegment to, boolean toInclusive, long snapshot) {
+        NavigableMap<MemorySegment, Versions> descending = getSubMap(from, fromInclusive, to, toInclusive)
+                .descendingMap();
+        return new VersionsIterator(descending.values().iterator(), snapshot);
+    }
+
+    /**
+     * Returns cursor which key and value are upserted segments, moves walk nodes of map without copying.
+     */
+    @Override
+    public Cursor<MemorySegment> cursor(long snapshot) {
+        RangeTombstoneIndex deletions = rangeTombstones.index();
+        return new Cursor<>() {
+            Iterator<Versions> it = Collections.emptyIterator();
+            Entry<MemorySegment> current;
 
-        return new TableIterator<>() {
-            final Iterator<Entry<MemorySegment>> it = getSubMap(from, fromInclusive, to, toInclusive)
-                    .values().iterator();
+            @Override
+            public void seekToFirst() {
+                it = entriesMap.values().iterator();
+                next();
+            }
 
             @Override
-            public int getTableNumber() {
-                return Integer.MAX_VALUE;
+            public void seek(MemorySegment target) {
+                it = entriesMap.tailMap(target, true).values().iterator();
+                next();
             }
 
             @Override
-            public boolean hasNext() {
-                return it.hasNext();
+            public boolean isValid() {
+                return current != null;
             }
 
             @Override
-            public Entry<MemorySegment> next() {
-                return it.next();
+            public void next() {
+                current = null;
+                while (current == null && it.hasNext()) {
+                    current = visibleEntry(it.next(), snapshot, deletions);
+                }
+            }
+
+            @Override
+            public MemorySegment key() {
+                return current.key();
+            }
+
+            @Override
+            public MemorySegment value() {
+                return current.value();
             }
         };
     }
 
+    /**
+     * Walks ascending or descending view of map, key and value are upserted segments.
+     */
+    @Override
+    public TableCursor<MemorySegment> rangeCursor(MemorySegment from, boolean fromInclusive, MemorySegment to,
+                                                  boolean toInclusive, long snapshot, boolean descending) {
+        NavigableMap<MemorySegment, Versions> range = getSubMap(from, fromInclusive, to, toInclusive);
+        return new VersionsCursor((descending ? range.descendingMap() : range).values().iterator(), snapshot);
+    }
+
+    /**
+     * Returns the newest entry visible to snapshot, or null if there is no such entry or range tombstone deletes it.
+     */
+    private static Entry<MemorySegment> visibleEntry(Versions versions, long snapshot, RangeTombstoneIndex deletions) {
+        Version version = versions.visible(snapshot);
+        if (version == null || (!deletions.isEmpty()
+                && version.sequence < deletions.maxTag(version.entry.key(), snapshot))) {
+            return null;
+        }
+        return version.entry;
+    }
+
+    @Override
+    public int tableNumber() {
+        return tableNumber;
+    }
+
+    @Override
+    public long memoryUsage() {
+        return byteSize.get() + olderVersionsSize.get();
+    }
+
+    /**
+     * Sum of sizes of keys and the newest values.
+     */
     @Override
     public long byteSize() {
         return this.byteSize.get();
     }
 
-    private NavigableMap<MemorySegment, Entry<MemorySegment>> getSubMap(MemorySegment from, boolean fromInclusive,
-                                                                        MemorySegment to, boolean toInclusive) {
+    private NavigableMap<MemorySegment, Versions> getSubMap(MemorySegment from, boolean fromInclusive,
+                                                           MemorySegment to, boolean toInclusive) {
         if (from != null && to != null) {
             return entriesMap.subMap(from, fromInclusive, to, toInclusive);
         }
@@ -92,6 +231,199 @@ public class MemTable implements Table<MemorySegment> {
     @Override
     public void clear() {
         entriesMap.clear();
+        rangeTombstones.clear();
         byteSize.set(0);
+        olderVersionsSize.set(0);
+    }
+
+    /**
+     * Cursor over the same entries as {@link VersionsIterator}, it moves without allocating entries.
+     */
+    private final class VersionsCursor implements TableCursor<MemorySegment> {
+        private final Iterator<Versions> it;
+        private final long snapshot;
+        private final RangeTombstoneIndex deletions = rangeTombstones.index();
+        private final List<RangeTombstone<MemorySegment>> visibleTombstones;
+        private Entry<MemorySegment> current;
+
+        VersionsCursor(Iterator<Versions> it, long snapshot) {
+            this.it = it;
+            this.snapshot = snapshot;
+            this.visibleTombstones = deletions.isEmpty() ? List.of() : deletions.ranges(null, null, snapshot);
+            next();
+        }
+
+        @Override
+        public boolean isValid() {
+            return current != null;
+        }
+
+        @Override
+        public void next() {
+            current = null;
+            while (current == null && it.hasNext()) {
+                current = visibleEntry(it.next(), snapshot, deletions);
+            }
+        }
+
+        @Override
+        public MemorySegment key() {
+            return current.key();
+        }
+
+        @Override
+        public MemorySegment value() {
+            return current.value();
+        }
+
+        @Override
+        public List<RangeTombstone<MemorySegment>> rangeTombstones() {
+            return visibleTombstones;
+        }
+    }
+
+    /**
+     * Returns the newest entries of keys in order of the given iterator.
+     */
+    private final class VersionsIterator implements TableIterator<MemorySegment> {
+        private final Iterator<Versions> it;
+        private final long snapshot;
+        private final RangeTombstoneIndex deletions = rangeTombstones.index();
+        private final List<RangeTombstone<MemorySegment>> visibleTombstones;
+        private Entry<MemorySegment> next;
+
+        VersionsIterator(Iterator<Versions> it, long snapshot) {
+            this.it = it;
+            this.snapshot = snapshot;
+            this.visibleTombstones = deletions.isEmpty() ? List.of() : deletions.ranges(null, null, snapshot);
+            this.next = advance();
+        }
+
+        @Override
+        public int getTableNumber() {
+            return tableNumber;
+        }
+
+        @Override
+        public List<RangeTombstone<MemorySegment>> rangeTombstones() {
+            return visibleTombstones;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<MemorySegment> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<MemorySegment> result = next;
+            next = advance();
+            return result;
+        }
+
+        /**
+         * Skips keys which were inserted after snapshot or deleted by range tombstones.
+         */
+        private Entry<MemorySegment> advance() {
+            while (it.hasNext()) {
+                Entry<MemorySegment> entry = visibleEntry(it.next(), snapshot, deletions);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Version of key, older is unlinked only when no live snapshot can reach it.
+     */
+    private static final class Version {
+        final Entry<MemorySegment> entry;
+        final long sequence;
+        volatile Version older;
+
+        Version(Entry<MemorySegment> entry, long sequence, Version older) {
+            this.entry = entry;
+            this.sequence = sequence;
+            this.older = older;
+        }
+    }
+
+    private static final class Versions {
+        volatile Version newest;
+
+        /**
+         * Returns the newest version with sequence not greater than snapshot, or null.
+         */
+        Version visible(long snapshot) {
+            for (Version version = newest; version != null; version = version.older) {
+                if (version.sequence <= snapshot) {
+                    return version;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Makes entry the newest version and returns change of size of keys and the newest values.
+         * Snapshots older than the new version read the newest version they see, so versions after
+         * the newest one visible to the oldest snapshot are unlinked.
+         */
+        synchronized long push(Entry<MemorySegment> entry, long sequence, long oldestSnapshot,
+                               AtomicLong olderVersionsSize) {
+            Version previous = newest;
+            if (previous != null && previous.sequence > sequence) {
+                insertOlder(entry, sequence, oldestSnapshot, olderVersionsSize);
+                return 0;
+            }
+            Version retained = oldestSnapshot == NO_SNAPSHOTS ? null : previous;
+            newest = new Version(entry, sequence, retained);
+            long olderDelta = 0;
+            Version version = retained;
+            while (version != null && version.sequence > oldestSnapshot) {
+                version = version.older;
+            }
+            if (version != null) {
+                for (Version unlinked = version.older; unlinked != null; unlinked = unlinked.older) {
+                    olderDelta -= valueSize(unlinked.entry);
+                }
+                version.older = null;
+            }
+            if (previous == null) {
+                return entry.key().byteSize() + valueSize(entry);
+            }
+            if (retained != null) {
+                olderDelta += valueSize(previous.entry);
+            } else {
+                for (Version unlinked = previous.older; unlinked != null; unlinked = unlinked.older) {
+                    olderDelta -= valueSize(unlinked.entry);
+                }
+            }
+            if (olderDelta != 0) {
+                olderVersionsSize.addAndGet(olderDelta);
+            }
+            return valueSize(entry) - valueSize(previous.entry);
+        }
+
+        /**
+         * Links version which is older than the newest one in order of sequence numbers.
+         * Without snapshots only the newest version is read, so the older one is dropped.
+         */
+        private void insertOlder(Entry<MemorySegment> entry, long sequence, long oldestSnapshot,
+                                 AtomicLong olderVersionsSize) {
+            if (oldestSnapshot == NO_SNAPSHOTS) {
+                return;
+            }
+            Version newer = newest;
+            while (newer.older != null && newer.older.sequence > sequence) {
+                newer = newer.older;
+            }
+            newer.older = new Version(entry, sequence, newer.older);
+            olderVersionsSize.addAndGet(valueSize(entry));
+        }
     }
 }
@@ -0,0 +1,16 @@
+package org.lsm.db.table;
+
+/**
+ * Implementation of memtables of dao.
+ */
+public enum MemTableType {
+    /**
+     * {@link MemTable}: concurrent skip list map of heap entries.
+     */
+    SKIP_LIST,
+
+    /**
+     * {@link ArenaMemTable}: skip list of off-heap nodes, which doesn't create garbage per upsert.
+     */
+    ARENA
+}
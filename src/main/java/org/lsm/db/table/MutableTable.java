@@ -0,0 +1,158 @@
+package org.lsm.db.table;
+
+import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
+import org.lsm.db.iterator.Cursor;
+import org.lsm.db.iterator.TableCursor;
+import org.lsm.db.iterator.TableIterator;
+
+import java.lang.foreign.MemorySegment;
+import java.util.List;
+
+/**
+ * In-memory table accepting upserts before it is flushed to SSTable.
+ * Every upsert is a version of key with sequence number, reads see the newest version
+ * with sequence not greater than snapshot.
+ * Range tombstone deletes versions of keys from its range which are older than the tombstone.
+ */
+public interface MutableTable extends Table<MemorySegment> {
+    /**
+     * Snapshot which sees all versions.
+     */
+    long LATEST = Long.MAX_VALUE;
+
+    /**
+     * The oldest snapshot when there are no live snapshots, so only the newest versions are kept.
+     */
+    long NO_SNAPSHOTS = Long.MAX_VALUE;
+
+    /**
+     * Inserts entry as the newest version of its key, entry with null value is a tombstone.
+     * Sequence must be greater than sequences of live snapshots, versions needed only by snapshots
+     * older than oldestSnapshot may be dropped.
+     */
+    void upsert(Entry<MemorySegment> entry, long sequence, long oldestSnapshot);
+
+    /**
+     * Inserts entry without snapshots.
+     */
+    default void upsert(Entry<MemorySegment> entry) {
+        upsert(entry, 0, NO_SNAPSHOTS);
+    }
+
+    /**
+     * Upserts entries in order with the same sequence, the later entry with the same key wins.
+     */
+    default void upsertAll(List<Entry<MemorySegment>> entries, long sequence, long oldestSnapshot) {
+        for (Entry<MemorySegment> entry : entries) {
+            upsert(entry, sequence, oldestSnapshot);
+        }
+    }
+
+    default void upsertAll(List<Entry<MemorySegment>> entries) {
+        upsertAll(entries, 0, NO_SNAPSHOTS);
+    }
+
+    /**
+     * Deletes keys from [from;to) which versions have sequence less than the given one.
+     */
+    void deleteRange(MemorySegment from, MemorySegment to, long sequence);
+
+    /**
+     * Returns disjoint ranges deleted by range tombstones visible to snapshot in ascending order.
+     */
+    List<RangeTombstone<MemorySegment>> rangeTombstones(long snapshot);
+
+    /**
+     * Checks if table has neither entries nor range tombstones, so there is nothing to flush.
+     */
+    default boolean isEmpty() {
+        return rows() == 0 && rangeTombstones(LATEST).isEmpty();
+    }
+
+    /**
+     * Returns the newest version of key visible to snapshot, tombstone has null value.
+     * Key deleted by range tombstone is returned as tombstone.
+     */
+    Entry<MemorySegment> get(MemorySegment key, long snapshot);
+
+    @Override
+    default Entry<MemorySegment> get(MemorySegment key) {
+        return get(key, LATEST);
+    }
+
+    /**
+     * Iterates the newest versions visible to snapshot, keys inserted after snapshot are skipped.
+     * Keys deleted by visible range tombstones are skipped too, iterator returns these tombstones
+     * to delete keys of older tables.
+     */
+    TableIterator<MemorySegment> tableIterator(MemorySegment from, boolean fromInclusive,
+                                               MemorySegment to, boolean toInclusive, long snapshot);
+
+    @Override
+    default TableIterator<MemorySegment> tableIterator(MemorySegment from, boolean fromInclusive,
+                                                       MemorySegment to, boolean toInclusive) {
+        return tableIterator(from, fromInclusive, to, toInclusive, LATEST);
+    }
+
+    /**
+     * Iterates the same entries as {@link #tableIterator(MemorySegment, boolean, MemorySegment, boolean, long)}
+     * in descending order of keys.
+     */
+    TableIterator<MemorySegment> descendingIterator(MemorySegment from, boolean fromInclusive,
+                                                    MemorySegment to, boolean toInclusive, long snapshot);
+
+    @Override
+    default TableIterator<MemorySegment> descendingIterator(MemorySegment from, boolean fromInclusive,
+                                                            MemorySegment to, boolean toInclusive) {
+        return descendingIterator(from, fromInclusive, to, toInclusive, LATEST);
+    }
+
+    /**
+     * Returns cursor over the newest versions visible to snapshot, keys deleted by range tombstones are skipped.
+     */
+    Cursor<MemorySegment> cursor(long snapshot);
+
+    @Override
+    default Cursor<MemorySegment> cursor() {
+        return cursor(LATEST);
+    }
+
+    /**
+     * Returns cursor over the same entries and range tombstones as iterators of snapshot in order of scan.
+     */
+    TableCursor<MemorySegment> rangeCursor(MemorySegment from, boolean fromInclusive, MemorySegment to,
+                                           boolean toInclusive, long snapshot, boolean descending);
+
+    @Override
+    default TableCursor<MemorySegment> rangeCursor(MemorySegment from, boolean fromInclusive, MemorySegment to,
+                                                   boolean toInclusive, boolean descending) {
+        return rangeCursor(from, fromInclusive, to, toInclusive, LATEST, descending);
+    }
+
+    /**
+     * Adds reference of reader unless the table is already released by its owner and all readers.
+     * Returns false if memory of table may be freed. Tables on heap are freed by garbage collector,
+     * so they are always retained.
+     */
+    default boolean tryRetain() {
+        return true;
+    }
+
+    /**
+     * Removes reference, the owner holds the first one and releases it when table is flushed.
+     */
+    default void release() {
+        // Do nothing
+    }
+
+    /**
+     * Number of SSTable this table is flushed to.
+     */
+    int tableNumber();
+
+    /**
+     * Memory taken by table, it decides when table is flushed.
+     */
+    long memoryUsage();
+}
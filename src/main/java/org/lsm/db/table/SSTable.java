@@ -1,8 +1,15 @@
 package org.lsm.db.table;
 
+import org.lsm.db.cache.BlockCache;
 import org.lsm.db.entry.BaseEntry;
 import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
 import org.lsm.db.exception.FileChannelException;
+import org.lsm.db.filter.BloomFilter;
+import org.lsm.db.iterator.Cursor;
+import org.lsm.db.iterator.RangeCursor;
+import org.lsm.db.iterator.RangeTombstoneIndex;
+import org.lsm.db.iterator.TableCursor;
 import org.lsm.db.iterator.TableIterator;
 
 import java.io.IOException;
@@ -13,42 +20,141 @@ import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Objects;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SSTable of {@link Footer#BLOCK_VERSION} format written by {@link ChannelTableWriter}.
+ * Index contains one entry per data block with the first key of block,
+ * so binary search touches only index and then one data block.
+ * Index entries of {@link Footer#PREFIX_VERSION} also contain {@link KeyComparator#prefix(MemorySegment)}
+ * of the first key, so most probes compare two longs in index entries without reading keys.
+ * Point lookups are skipped without touching index if {@link BloomFilter} of table rejects the key.
+ * Point lookups read blocks through {@link BlockCache}, scans use only blocks which are already cached.
+ * Blocks of compressed tables are decoded when lookup or scan touches them, cache keeps decoded blocks.
+ * Values of entries returned by lookups and scans are slices of mapped or decoded blocks, they are valid while
+ * table is retained. Lookups through {@link BlockCache} copy values, cached block may be evicted under them.
+ * Range tombstones of {@link Footer#RANGE_TOMBSTONE_VERSION} are read to heap when table is opened,
+ * lookup of absent key returns tombstone if they delete the key.
+ */
+public class SSTable implements DiskTable<MemorySegment> {
+    /**
+     * Amount of blocks prefetched at once by scans.
+     */
+    private static final int READAHEAD_BLOCKS = 64;
 
-public class SSTable implements Table<MemorySegment> {
     /**
      * Constable size of SSTable.
      */
-    private final int rows; // todo: replace with long?
+    private final int rows;
 
     /**
      * Unique number of this SST.
      */
-    private final int sstNumber; // System.currentTimeMillis() timestamp in metaHandleBLock
+    private final int sstNumber;
+    private final int blocks;
+    private final long indexEntrySize;
+    private final boolean prefixed;
+    private final int level;
+    private final MemorySegment minKey;
+    private final MemorySegment maxKey;
     private final Arena arena;
     private final Path path;
     private final MemorySegment index;
     private final MemorySegment data;
+    private final BloomFilter filter;
     private final long byteSize;
+    private final long fileSize;
     private final Comparator<MemorySegment> comparator;
+    private final AtomicInteger references = new AtomicInteger();
+    private final BlockCache cache;
+    private final Compression compression;
+    private final long cacheId;
+    private final List<RangeTombstone<MemorySegment>> rangeTombstones;
+    private final RangeTombstoneIndex rangeTombstoneIndex;
+
+    public SSTable(Path path, Arena arena, FileChannel sstChannel, Footer footer,
+                   Comparator<MemorySegment> comparator, int sstNumber, BlockCache cache) throws IOException {
+        FileChannel.MapMode mode = FileChannel.MapMode.READ_ONLY;
+        Handle indexHandle = footer.getIndexHandle();
+        this.arena = arena;
+        this.index = sstChannel.map(mode, indexHandle.offset(), indexHandle.size(), arena);
+        this.data = sstChannel.map(mode, 0L, indexHandle.offset(), arena);
+        AccessHint.RANDOM.advise(data);
+        AccessHint.WILL_NEED.advise(index);
+        this.prefixed = footer.getVersion() >= Footer.PREFIX_VERSION;
+        this.indexEntrySize = (prefixed ? 3L : 2L) * Long.BYTES;
+        this.blocks = Math.toIntExact(getKeyOffset(0) / indexEntrySize - 1);
+        Handle filterHandle = footer.getFilterHandle();
+        this.filter = filterHandle.size() == 0
+                ? null
+                : BloomFilter.read(sstChannel.map(mode, filterHandle.offset(), filterHandle.size(), arena));
+        this.byteSize = footer.getByteSize();
+        this.fileSize = sstChannel.size();
+        this.rows = Math.toIntExact(footer.getRows());
+        this.level = footer.getLevel();
+        this.compression = footer.getCompression();
+        this.sstNumber = sstNumber;
+        this.comparator = comparator;
+        this.path = path;
+        this.cache = cache == null || cache.capacity() == 0 ? null : cache;
+        this.cacheId = this.cache == null ? 0 : this.cache.newTableId();
+        this.rangeTombstones = readRangeTombstones(sstChannel, footer.getRangeTombstonesHandle(), arena);
+        this.rangeTombstoneIndex = RangeTombstoneIndex.of(rangeTombstones, comparator);
+        MemorySegment firstKey = blocks == 0 ? null : getFirstKey(0);
+        MemorySegment lastKey = blocks == 0 ? null : lastKey();
+        if (rangeTombstones.isEmpty()) {
+            this.minKey = firstKey;
+            this.maxKey = lastKey;
+        } else {
+            MemorySegment from = rangeTombstones.getFirst().from();
+            MemorySegment to = rangeTombstones.getLast().to();
+            this.minKey = firstKey == null || comparator.compare(from, firstKey) < 0 ? from : firstKey;
+            this.maxKey = lastKey == null || comparator.compare(to, lastKey) > 0 ? to : lastKey;
+        }
+    }
+
+    /**
+     * Copies range tombstones to heap, so compaction may keep them after table is closed.
+     */
+    private static List<RangeTombstone<MemorySegment>> readRangeTombstones(FileChannel channel, Handle handle,
+                                                                         Arena arena) throws IOException {
+        if (handle.size() == 0) {
+            return List.of();
+        }
+        MemorySegment block = channel.map(FileChannel.MapMode.READ_ONLY, handle.offset(), handle.size(), arena);
+        int count = Math.toIntExact(block.get(ValueLayout.JAVA_LONG_UNALIGNED, 0L));
+        List<RangeTombstone<MemorySegment>> tombstones = new ArrayList<>(count);
+        long offset = Long.BYTES;
+        for (int i = 0; i < count; i++) {
+            long fromSize = block.get(ValueLayout.JAVA_LONG_UNALIGNED, offset);
+            long toSize = block.get(ValueLayout.JAVA_LONG_UNALIGNED, offset + Long.BYTES);
+            offset += 2L * Long.BYTES;
+            MemorySegment from = detach(block.asSlice(offset, fromSize));
+            MemorySegment to = detach(block.asSlice(offset + fromSize, toSize));
+            offset += fromSize + toSize;
+            tombstones.add(new RangeTombstone<>(from, to));
+        }
+        return List.copyOf(tombstones);
+    }
 
-    public SSTable(Path path, Comparator<MemorySegment> comparator, int sstNumber) {
-        this.arena = Arena.ofShared();
+    /**
+     * Opens table of any supported format, cache may be null.
+     */
+    public static DiskTable<MemorySegment> open(Path path, Comparator<MemorySegment> comparator, int sstNumber,
+                                                BlockCache cache) {
+        Arena arena = Arena.ofShared();
         try (FileChannel sstChannel = FileChannel.open(path, StandardOpenOption.READ)) {
-            FileChannel.MapMode mode = FileChannel.MapMode.READ_ONLY;
-            long footerOffset = sstChannel.size() - Footer.FOOTER_SIZE;
-            MemorySegment footerSegment = sstChannel.map(mode, footerOffset, Footer.FOOTER_SIZE, arena);
-            Footer footer = Footer.createFooter(footerSegment);
-            Handle indexHandle = footer.getIndexHandle();
-            this.index = sstChannel.map(mode, indexHandle.offset(), indexHandle.size(), arena);
-            this.data = sstChannel.map(mode, 0L, indexHandle.offset(), arena);
-            this.byteSize = indexHandle.offset();
-            this.rows = Math.toIntExact(indexHandle.size() / (2L * Long.BYTES) - 1); //todo: fix to long or rem
-            this.sstNumber = sstNumber;
-            this.comparator = comparator;
-            this.path = path;
+            Footer footer = Footer.read(sstChannel, arena);
+            if (footer.getVersion() == Footer.LEGACY_VERSION) {
+                return new LegacySSTable(path, arena, sstChannel, footer, comparator, sstNumber);
+            }
+            return new SSTable(path, arena, sstChannel, footer, comparator, sstNumber, cache);
         } catch (IOException ex) {
+            arena.close();
             throw new FileChannelException("Couldn't create FileChannel by path" + path, ex);
         }
     }
@@ -60,6 +166,18 @@ public class SSTable implements Table<MemorySegment> {
         }
     }
 
+    @Override
+    public void retain() {
+        references.incrementAndGet();
+    }
+
+    @Override
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            close();
+        }
+    }
+
     @Override
     public int rows() {
         return rows;
@@ -68,31 +186,211 @@ public class SSTable implements Table<MemorySegment> {
     @Override
     public TableIterator<MemorySegment> tableIterator(MemorySegment from, boolean fromInclusive,
                                                       MemorySegment to, boolean toInclusive) {
+        boolean pointLookup = from != null && to != null && fromInclusive && toInclusive
+                && comparator.compare(from, to) == 0;
+        BlockCursor cursor = new BlockCursor();
+        if (from == null) {
+            cursor.seekToFirst();
+        } else if (!pointLookup || mayContain(from)) {
+            cursor.seek(from);
+            if (!fromInclusive && cursor.isValid() && comparator.compare(cursor.key(), from) == 0) {
+                cursor.next();
+            }
+        }
         return new TableIterator<>() {
-            int start = (from == null ? 0 : binarySearch(from)) + Boolean.compare(!fromInclusive, false);
-            final int end = (to == null ? rows : binarySearch(to)) + Boolean.compare(toInclusive, true);
-
             @Override
             public int getTableNumber() {
                 return sstNumber;
             }
 
+            @Override
+            public List<RangeTombstone<MemorySegment>> rangeTombstones() {
+                return rangeTombstones;
+            }
+
             @Override
             public boolean hasNext() {
-                return start < rows && start <= end;
+                if (!cursor.isValid()) {
+                    return false;
+                }
+                if (to == null) {
+                    return true;
+                }
+                int compare = comparator.compare(cursor.key(), to);
+                return compare < 0 || (toInclusive && compare == 0);
             }
 
             @Override
             public Entry<MemorySegment> next() {
-                return new BaseEntry<>(getKeyByIndex(start), getValueByIndex(start++));
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Entry<MemorySegment> entry = new BaseEntry<>(cursor.copyKey(), cursor.value());
+                cursor.next();
+                return entry;
             }
         };
     }
 
+    /**
+     * Keys of block are prefix-compressed and can be decoded only forward,
+     * so every block is decoded once into lists of copied keys and value slices which are walked backward.
+     */
+    @Override
+    public TableIterator<MemorySegment> descendingIterator(MemorySegment from, boolean fromInclusive,
+                                                           MemorySegment to, boolean toInclusive) {
+        return new DescendingIterator(from, fromInclusive, to, toInclusive);
+    }
+
+    /**
+     * Returns cursor which key is a view of decoded key buffer and value is a slice of mapped or cached block.
+     * Cursor allocates only when it enters the next block.
+     */
+    @Override
+    public Cursor<MemorySegment> cursor() {
+        return new BlockCursor();
+    }
+
+    /**
+     * Ascending cursor walks blocks as {@link #cursor()} does. Blocks are decoded backward by
+     * {@link #descendingIterator}, so descending cursor adapts it.
+     */
+    @Override
+    public TableCursor<MemorySegment> rangeCursor(MemorySegment from, boolean fromInclusive, MemorySegment to,
+                                                  boolean toInclusive, boolean descending) {
+        return descending
+                ? TableCursor.of(descendingIterator(from, fromInclusive, to, toInclusive))
+                : new RangeCursor(new BlockCursor(), from, fromInclusive, to, toInclusive, comparator,
+                        rangeTombstones);
+    }
+
+    /**
+     * Looks up one key: bloom filter, index search and seek inside one block.
+     * Returns entry with the given key instance and value slice of block,
+     * value is copied to heap only if block is read from cache.
+     * Absent key deleted by range tombstone of table is returned as tombstone.
+     */
+    @Override
+    public Entry<MemorySegment> get(MemorySegment key) {
+        if (blocks == 0 || !mayContain(key)) {
+            return deleted(key);
+        }
+        int blockIndex = findBlock(key);
+        Entry<MemorySegment> entry = cache == null
+                ? find(block(blockIndex), key, false)
+                : cache.read(cacheId, getBlockOffset(blockIndex), () -> block(blockIndex), b -> find(b, key, true));
+        return entry == null ? deleted(key) : entry;
+    }
+
+    /**
+     * Looks up sorted keys in one pass over index: block search starts from block of the previous key,
+     * and all keys of one block are found in one decoded or cached copy of it.
+     */
+    @Override
+    public int getAll(List<MemorySegment> keys, List<Entry<MemorySegment>> entries, int from, int to) {
+        int found = 0;
+        int blockIndex = 0;
+        int i = from;
+        while (i < to) {
+            MemorySegment key = keys.get(i);
+            if (entries.get(i) != null) {
+                i++;
+                continue;
+            }
+            if (blocks == 0 || !mayContain(key)) {
+                found += resolve(entries, i, deleted(key));
+                i++;
+                continue;
+            }
+            blockIndex = findBlock(key, blockIndex);
+            int end = i + 1;
+            while (end < to && (blockIndex + 1 == blocks
+                    || comparator.compare(keys.get(end), getFirstKey(blockIndex + 1)) < 0)) {
+                end++;
+            }
+            int start = i;
+            int groupEnd = end;
+            int group = blockIndex;
+            found += cache == null
+                    ? findAll(block(group), keys, entries, start, groupEnd, false)
+                    : cache.read(cacheId, getBlockOffset(group), () -> block(group),
+                            b -> findAll(b, keys, entries, start, groupEnd, true));
+            i = end;
+        }
+        return found;
+    }
+
+    /**
+     * Finds unresolved keys of [from;to) which all belong to one block, the first key already passed bloom filter.
+     * Values are copied if block is not owned by table.
+     */
+    private int findAll(MemorySegment blockSegment, List<MemorySegment> keys, List<Entry<MemorySegment>> entries,
+                        int from, int to, boolean copy) {
+        BlockIterator block = new BlockIterator(blockSegment, comparator);
+        int found = 0;
+        for (int i = from; i < to; i++) {
+            if (entries.get(i) != null) {
+                continue;
+            }
+            MemorySegment key = keys.get(i);
+            Entry<MemorySegment> entry = null;
+            if (i == from || mayContain(key)) {
+                block.seek(key);
+                if (block.isValid() && comparator.compare(block.key(), key) == 0) {
+                    entry = new BaseEntry<>(key, copy ? detach(block.value()) : block.value());
+                }
+            }
+            found += resolve(entries, i, entry == null ? deleted(key) : entry);
+        }
+        return found;
+    }
+
+    private static int resolve(List<Entry<MemorySegment>> entries, int i, Entry<MemorySegment> entry) {
+        if (entry == null) {
+            return 0;
+        }
+        entries.set(i, entry);
+        return 1;
+    }
+
+    private Entry<MemorySegment> deleted(MemorySegment key) {
+        if (rangeTombstoneIndex.isEmpty() || rangeTombstoneIndex.minTag(key) == Long.MAX_VALUE) {
+            return null;
+        }
+        return new BaseEntry<>(key, null);
+    }
+
+    private Entry<MemorySegment> find(MemorySegment blockSegment, MemorySegment key, boolean copy) {
+        BlockIterator block = new BlockIterator(blockSegment, comparator);
+        block.seek(key);
+        if (!block.isValid() || comparator.compare(block.key(), key) != 0) {
+            return null;
+        }
+        return new BaseEntry<>(key, copy ? detach(block.value()) : block.value());
+    }
+
+    /**
+     * Copies value from off-heap memory of mapped file or cache to heap, heap values are returned as is.
+     */
+    static MemorySegment detach(MemorySegment value) {
+        if (value == null || !value.isNative()) {
+            return value;
+        }
+        return MemorySegment.ofArray(value.toArray(ValueLayout.JAVA_BYTE));
+    }
+
+    /**
+     * Applies hint to data blocks, index is always read at random and stays as it is.
+     */
+    @Override
+    public void advise(AccessHint hint) {
+        hint.advise(data);
+    }
+
     @Override
     public void clear() {
         try {
-            Files.deleteIfExists(path); //todo: clear makes table invalid, but still opened.
+            Files.deleteIfExists(path);
         } catch (IOException e) {
             throw new FileChannelException("Couldn't remove file channel by path " + path, e);
         }
@@ -103,45 +401,298 @@ public class SSTable implements Table<MemorySegment> {
         return byteSize;
     }
 
-    private MemorySegment getKeyByIndex(int index) {
-        Objects.checkIndex(index, rows);
-        long keyOffset = getKeyOffset(index);
-        long valueOffset = Math.abs(getValueOffset(index));
-        return data.asSlice(keyOffset, valueOffset - keyOffset);
+    @Override
+    public long fileSize() {
+        return fileSize;
     }
 
-    private MemorySegment getValueByIndex(int index) {
-        Objects.checkIndex(index, rows);
-        long valueOffset = getValueOffset(index);
-        if (valueOffset < 0) {
-            return null;
+    @Override
+    public int tableNumber() {
+        return sstNumber;
+    }
+
+    @Override
+    public int level() {
+        return level;
+    }
+
+    @Override
+    public MemorySegment minKey() {
+        return minKey;
+    }
+
+    @Override
+    public MemorySegment maxKey() {
+        return maxKey;
+    }
+
+    /**
+     * Returns first keys of data blocks, they are slices of mapped index.
+     */
+    @Override
+    public List<MemorySegment> splitKeys() {
+        List<MemorySegment> keys = new ArrayList<>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            keys.add(getFirstKey(i));
+        }
+        return keys;
+    }
+
+    @Override
+    public List<RangeTombstone<MemorySegment>> rangeTombstones() {
+        return rangeTombstones;
+    }
+
+    /**
+     * Cursor over data blocks, blocks are read as by scans and never loaded into cache.
+     */
+    private final class BlockCursor implements Cursor<MemorySegment> {
+        private int blockIndex;
+        private BlockIterator block;
+        /**
+         * Blocks before this one are already advised to be read ahead.
+         */
+        private int readaheadEnd;
+
+        @Override
+        public void seekToFirst() {
+            blockIndex = -1;
+            readaheadEnd = 0;
+            nextBlock();
+        }
+
+        @Override
+        public void seek(MemorySegment target) {
+            if (blocks == 0) {
+                block = null;
+                return;
+            }
+            blockIndex = findBlock(target);
+            readaheadEnd = blockIndex;
+            readahead();
+            block = scanIterator(blockIndex);
+            block.seek(target);
+            if (!block.isValid()) {
+                nextBlock();
+            }
+        }
+
+        @Override
+        public boolean isValid() {
+            return block != null;
+        }
+
+        @Override
+        public void next() {
+            block.next();
+            if (!block.isValid()) {
+                nextBlock();
+            }
+        }
+
+        @Override
+        public MemorySegment key() {
+            return block.key();
+        }
+
+        @Override
+        public MemorySegment value() {
+            return block.value();
+        }
+
+        MemorySegment copyKey() {
+            return block.copyKey();
+        }
+
+        private void nextBlock() {
+            if (++blockIndex >= blocks) {
+                block = null;
+                return;
+            }
+            readahead();
+            block = scanIterator(blockIndex);
+            block.seekToFirst();
+        }
+
+        /**
+         * Asks kernel to prefetch next window of blocks when cursor reaches its start,
+         * the rest of table keeps random access hint for point lookups.
+         */
+        private void readahead() {
+            if (blockIndex < readaheadEnd) {
+                return;
+            }
+            readaheadEnd = Math.min(blockIndex + READAHEAD_BLOCKS, blocks);
+            long offset = getBlockOffset(blockIndex);
+            AccessHint.WILL_NEED.advise(data.asSlice(offset, getBlockOffset(readaheadEnd) - offset));
+        }
+    }
+
+    private final class DescendingIterator implements TableIterator<MemorySegment> {
+        private final MemorySegment from;
+        private final boolean fromInclusive;
+        private final MemorySegment to;
+        private final boolean toInclusive;
+        private final List<MemorySegment> keys = new ArrayList<>();
+        private final List<MemorySegment> values = new ArrayList<>();
+        private int blockIndex;
+        private int position;
+
+        DescendingIterator(MemorySegment from, boolean fromInclusive, MemorySegment to, boolean toInclusive) {
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.blockIndex = blocks == 0 ? -1 : (to == null ? blocks - 1 : findBlock(to));
+            this.position = -1;
+            load();
+        }
+
+        @Override
+        public int getTableNumber() {
+            return sstNumber;
+        }
+
+        @Override
+        public List<RangeTombstone<MemorySegment>> rangeTombstones() {
+            return rangeTombstones;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < 0) {
+                return false;
+            }
+            if (from == null) {
+                return true;
+            }
+            int compare = comparator.compare(keys.get(position), from);
+            return compare > 0 || (fromInclusive && compare == 0);
+        }
+
+        @Override
+        public Entry<MemorySegment> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<MemorySegment> entry = new BaseEntry<>(keys.get(position), values.get(position));
+            if (--position < 0) {
+                load();
+            }
+            return entry;
+        }
+
+        /**
+         * Decodes blocks backward until one of them has keys not greater than upper bound.
+         */
+        private void load() {
+            while (position < 0 && blockIndex >= 0) {
+                keys.clear();
+                values.clear();
+                BlockIterator block = scanIterator(blockIndex--);
+                for (block.seekToFirst(); block.isValid(); block.next()) {
+                    if (to != null) {
+                        int compare = comparator.compare(block.key(), to);
+                        if (compare > 0 || (!toInclusive && compare == 0)) {
+                            break;
+                        }
+                    }
+                    keys.add(block.copyKey());
+                    values.add(block.value());
+                }
+                position = keys.size() - 1;
+            }
         }
-        long nextKeyOffset = getKeyOffset(index + 1);
-        return data.asSlice(valueOffset, nextKeyOffset - valueOffset);
+    }
+
+    /**
+     * Returns false if table definitely doesn't contain key.
+     */
+    public boolean mayContain(MemorySegment key) {
+        return filter == null || filter.mayContain(key);
+    }
+
+    private MemorySegment lastKey() {
+        BlockIterator block = blockIterator(blocks - 1);
+        MemorySegment key = null;
+        for (block.seekToFirst(); block.isValid(); block.next()) {
+            key = block.copyKey();
+        }
+        return key;
+    }
+
+    private BlockIterator blockIterator(int blockIndex) {
+        return new BlockIterator(block(blockIndex), comparator);
+    }
+
+    /**
+     * Returns iterator over heap copy of cached block or over mapped block, scan doesn't load blocks into cache.
+     */
+    private BlockIterator scanIterator(int blockIndex) {
+        MemorySegment cached = cache == null ? null : cache.copyIfPresent(cacheId, getBlockOffset(blockIndex));
+        return cached == null ? blockIterator(blockIndex) : new BlockIterator(cached, comparator);
+    }
+
+    /**
+     * Returns decoded block, it is a slice of mapped data for uncompressed tables.
+     */
+    private MemorySegment block(int blockIndex) {
+        long offset = getBlockOffset(blockIndex);
+        return compression.decode(data.asSlice(offset, getBlockOffset(blockIndex + 1) - offset));
+    }
+
+    private long getBlockOffset(int i) {
+        return index.get(ValueLayout.JAVA_LONG_UNALIGNED, i * indexEntrySize);
     }
 
     private long getKeyOffset(int i) {
-        long rawOffset = 2L * i * Long.BYTES;
-        return index.get(ValueLayout.JAVA_LONG_UNALIGNED, rawOffset);
+        return index.get(ValueLayout.JAVA_LONG_UNALIGNED, i * indexEntrySize + Long.BYTES);
     }
 
-    private long getValueOffset(int i) {
-        long rawOffset = (2L * i + 1) * (long) Long.BYTES;
-        return index.get(ValueLayout.JAVA_LONG_UNALIGNED, rawOffset);
+    private long getKeyPrefix(int i) {
+        return index.get(ValueLayout.JAVA_LONG_UNALIGNED, i * indexEntrySize + 2L * Long.BYTES);
     }
 
-    private int binarySearch(MemorySegment key) {
-        int l = 0;
-        int r = rows - 1;
-        while (l <= r) {
-            int mid = l + (r - l) / 2;
-            MemorySegment middle = getKeyByIndex(mid);
-            if (comparator.compare(key, middle) <= 0) {
-                r = mid - 1;
+    private MemorySegment getFirstKey(int i) {
+        long keyOffset = getKeyOffset(i);
+        return index.asSlice(keyOffset, getKeyOffset(i + 1) - keyOffset);
+    }
+
+    /**
+     * Returns the last block which first key is less or equal to key, or the first block.
+     */
+    private int findBlock(MemorySegment key) {
+        return findBlock(key, 0);
+    }
+
+    /**
+     * Searches blocks starting from low, which must not be after the block of key.
+     */
+    private int findBlock(MemorySegment key, int low) {
+        long keyPrefix = prefixed ? KeyComparator.prefix(key) : 0;
+        int l = low;
+        int r = blocks - 1;
+        while (l < r) {
+            int mid = l + (r - l + 1) / 2;
+            if (compareFirstKey(mid, key, keyPrefix) <= 0) {
+                l = mid;
             } else {
-                l = mid + 1;
+                r = mid - 1;
             }
         }
         return l;
     }
+
+    /**
+     * Compares the first key of block with key, keys are read only if prefixes are equal.
+     */
+    private int compareFirstKey(int i, MemorySegment key, long keyPrefix) {
+        if (prefixed) {
+            int compare = Long.compareUnsigned(getKeyPrefix(i), keyPrefix);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return comparator.compare(getFirstKey(i), key);
+    }
 }
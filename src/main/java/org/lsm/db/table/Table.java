@@ -1,6 +1,8 @@
 package org.lsm.db.table;
 
 import org.lsm.db.entry.Entry;
+import org.lsm.db.iterator.Cursor;
+import org.lsm.db.iterator.TableCursor;
 import org.lsm.db.iterator.TableIterator;
 
 import java.io.Closeable;
@@ -9,11 +11,33 @@ public interface Table<K> extends Iterable<Entry<K>>, Closeable {
 
     TableIterator<K> tableIterator(K from, boolean fromInclusive, K to, boolean toInclusive);
 
+    /**
+     * Iterates entries of the same range as {@link #tableIterator} from the greatest key to the least one.
+     */
+    TableIterator<K> descendingIterator(K from, boolean fromInclusive, K to, boolean toInclusive);
+
     @Override
     default TableIterator<K> iterator() {
         return tableIterator(null, true, null, true);
     }
 
+    /**
+     * Returns cursor over rows of table including tombstones, it allocates nothing per row.
+     */
+    Cursor<K> cursor();
+
+    /**
+     * Returns cursor over entries of the same range as {@link #tableIterator} with the same range tombstones,
+     * entries go from the greatest key to the least one if descending is set.
+     */
+    TableCursor<K> rangeCursor(K from, boolean fromInclusive, K to, boolean toInclusive, boolean descending);
+
+    /**
+     * Returns entry by key or null if table doesn't contain key.
+     * Tombstone is returned as entry with null value.
+     */
+    Entry<K> get(K key);
+
     int rows();
 
     long byteSize();
@@ -0,0 +1,31 @@
+package org.lsm.db.table;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Metadata of SSTable kept in manifest, it is enough to place table in levels and pick compactions
+ * without opening its file.
+ * @param number unique number of table
+ * @param level level of table in LSM tree
+ * @param rows amount of entries
+ * @param byteSize size of keys and values
+ * @param fileSize size of table file in bytes
+ * @param minKey the least key or null if table is empty
+ * @param maxKey the greatest key or null if table is empty
+ */
+public record TableMeta(int number, int level, int rows, long byteSize, long fileSize,
+                        MemorySegment minKey, MemorySegment maxKey) {
+
+    /**
+     * Copies metadata of open table, keys are copied to heap.
+     */
+    public static TableMeta of(DiskTable<MemorySegment> table) {
+        return new TableMeta(table.tableNumber(), table.level(), table.rows(), table.byteSize(), table.fileSize(),
+                copy(table.minKey()), copy(table.maxKey()));
+    }
+
+    private static MemorySegment copy(MemorySegment key) {
+        return key == null ? null : MemorySegment.ofArray(key.toArray(ValueLayout.JAVA_BYTE));
+    }
+}
@@ -1,14 +1,35 @@
 package org.lsm.db.table;
 
 import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
 
 import java.io.Closeable;
 import java.lang.foreign.MemorySegment;
+import java.util.List;
 
 public interface TableWriter extends Closeable {
-    void writeEntry(Entry<MemorySegment> entry);
+    int BLOCK_SIZE = 4096;
 
-    void writeIndexHandle(Entry<MemorySegment> entry);
+    /**
+     * Appends entry to table. Entries must be written in ascending order of keys.
+     */
+    default void writeEntry(Entry<MemorySegment> entry) {
+        writeEntry(entry.key(), entry.value());
+    }
 
-    void writeFooter(Footer footer);
+    /**
+     * Appends key with value or with tombstone if value is null, both are copied before return,
+     * so they may be views of cursor.
+     */
+    void writeEntry(MemorySegment key, MemorySegment value);
+
+    /**
+     * Sets range tombstones of table, they must be disjoint and sorted. Entries of table are never covered by them.
+     */
+    void writeRangeTombstones(List<RangeTombstone<MemorySegment>> tombstones);
+
+    /**
+     * Writes the rest of data, index and footer.
+     */
+    void finish();
 }
@@ -5,13 +5,22 @@ import org.lsm.db.entry.Entry;
 
 import java.io.IOException;
 import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 public final class Utils {
 
     public static final Entry<MemorySegment> EMPTY = new BaseEntry<>(MemorySegment.NULL, MemorySegment.NULL);
+    private static final Pattern SST_NAME = Pattern.compile("data-(\\d+)\\.txt");
+    private static final Pattern WAL_NAME = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern TEMP_NAME = Pattern.compile("data-(\\d+)\\.tmp");
 
     /**
      * No instances.
@@ -20,31 +29,94 @@ public final class Utils {
     }
 
     /**
-     * Executes amount of files by path.
-     * Stream does not create an explicit list of files
-     * but simply counts the number of files in the directory.
+     * Returns sorted numbers of SSTables by path.
+     * Files which names don't match {@link #sstTablePath(Path, long)} are ignored.
      */
-    public static int filesCount(Path path) {
+    public static List<Integer> sstTableNumbers(Path path) {
+        return fileNumbers(path, SST_NAME);
+    }
+
+    /**
+     * Returns sorted numbers of write-ahead logs by path, see {@link #walPath(Path, long)}.
+     */
+    public static List<Integer> walNumbers(Path path) {
+        return fileNumbers(path, WAL_NAME);
+    }
+
+    /**
+     * Returns sorted numbers of tables which writing was interrupted, see {@link #tempTablePath(Path, long)}.
+     */
+    public static List<Integer> tempTableNumbers(Path path) {
+        return fileNumbers(path, TEMP_NAME);
+    }
+
+    private static List<Integer> fileNumbers(Path path, Pattern pattern) {
         try (Stream<Path> files = Files.list(path)) {
-            return Math.toIntExact(files.count());
+            return files
+                    .map(file -> pattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Integer.parseInt(matcher.group(1)))
+                    .sorted()
+                    .toList();
         } catch (IOException ex) {
-            return 0;
+            return List.of();
         }
     }
 
     /**
-     * Return index length of SSTable file.
-     * Metadata contains amount of entries in sst, offsets and size of keys.
-     * It has the following format: <var>keyOff1:valOff1 keyOff2:valOff2 ...
-     * keyOff_n:valOff_n keyOff_n+1:valOff_n+1</var>
-     * without any : and spaces.
+     * Returns entry which off-heap key and value are copied to heap,
+     * so it stays valid after tables it was read from are released.
      */
-    public static long indexByteSize(long size) {
-        return 2L * (size + 1) * Long.BYTES;
+    public static Entry<MemorySegment> detach(Entry<MemorySegment> entry) {
+        MemorySegment key = entry.key();
+        MemorySegment value = entry.value();
+        if (!key.isNative() && (value == null || !value.isNative())) {
+            return entry;
+        }
+        return new BaseEntry<>(copy(key), copy(value));
+    }
+
+    private static MemorySegment copy(MemorySegment segment) {
+        if (segment == null || !segment.isNative()) {
+            return segment;
+        }
+        return MemorySegment.ofArray(segment.toArray(ValueLayout.JAVA_BYTE));
     }
 
     public static Path sstTablePath(Path path, long suffix) {
         String fileName = String.format("data-%s.txt", suffix);
         return path.resolve(Path.of(fileName));
     }
+
+    /**
+     * Path of SSTable while it is written, table is renamed to {@link #sstTablePath(Path, long)} when completed.
+     */
+    public static Path tempTablePath(Path path, long suffix) {
+        String fileName = String.format("data-%s.tmp", suffix);
+        return path.resolve(Path.of(fileName));
+    }
+
+    /**
+     * Path of manifest of live SSTables, see {@link org.lsm.db.manifest.Manifest}.
+     */
+    public static Path manifestPath(Path path) {
+        return path.resolve(Path.of("MANIFEST"));
+    }
+
+    /**
+     * Path of write-ahead log of memtable which will be flushed to SSTable with the same suffix.
+     */
+    public static Path walPath(Path path, long suffix) {
+        String fileName = String.format("wal-%s.log", suffix);
+        return path.resolve(Path.of(fileName));
+    }
+
+    /**
+     * Forces directory entries to disk, so a file created or renamed in the directory survives crash.
+     */
+    public static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
 }
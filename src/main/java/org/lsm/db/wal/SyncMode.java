@@ -0,0 +1,21 @@
+package org.lsm.db.wal;
+
+/**
+ * When records of write-ahead log are forced to disk.
+ */
+public enum SyncMode {
+    /**
+     * Upsert returns after its record is forced, concurrent upserts share one fsync.
+     */
+    PER_WRITE,
+
+    /**
+     * Log is forced by background thread every {@link org.lsm.db.Config#syncIntervalMillis()}.
+     */
+    INTERVAL,
+
+    /**
+     * Log is forced only when it is closed, records survive process crash but not OS crash.
+     */
+    NONE
+}
@@ -0,0 +1,297 @@
+package org.lsm.db.wal;
+
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
+import org.lsm.db.exception.FileChannelException;
+import org.lsm.db.exception.WriteFailureException;
+import org.lsm.db.utils.Utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of upserts of one memtable. Log is deleted when its memtable is flushed.
+ * Log has the following format: <var>record1 record2 ... record_n</var>,
+ * where every record is <var>payloadSize crc payload</var> and payload is either entry
+ * <var>type keySize valueSize key value sequence</var> or batch
+ * <var>type count entry_1 ... entry_count sequence</var>,
+ * where every entry of batch is <var>keySize valueSize key value</var>, valueSize is -1 for tombstone.
+ * Range deletion is stored as entry with its bounds as key and value and its own type.
+ * Checksum covers the whole batch, so replay applies entries of batch all or none.
+ * Sequence number of record is taken under the append lock, so sequences grow in order of records
+ * and replay restores the order in which concurrent writes were logged.
+ * Records are appended under one lock, but forced outside of it: one fsync covers
+ * all records written before it started, so concurrent writers are committed in group.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int SIZES_SIZE = 2 * Long.BYTES;
+    private static final int BATCH_HEADER_SIZE = Byte.BYTES + Integer.BYTES;
+    private static final byte ENTRY_TYPE = 1;
+    private static final byte BATCH_TYPE = 2;
+    private static final byte RANGE_DELETE_TYPE = 3;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final SyncMode syncMode;
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private volatile long written;
+    private long synced;
+    private boolean closed;
+
+    public WriteAheadLog(Path path, SyncMode syncMode) {
+        this.path = path;
+        this.syncMode = syncMode;
+        try {
+            this.channel = FileChannel.open(
+                    path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE
+            );
+        } catch (IOException ex) {
+            throw new FileChannelException("Couldn't create write-ahead log " + path, ex);
+        }
+        try {
+            Utils.syncDirectory(path.toAbsolutePath().getParent());
+        } catch (IOException ex) {
+            try {
+                channel.close();
+            } catch (IOException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
+            throw new FileChannelException("Couldn't sync directory of write-ahead log " + path, ex);
+        }
+    }
+
+    /**
+     * Appends entry to log and returns sequence number of its record, it is taken from sequences
+     * under the append lock. In {@link SyncMode#PER_WRITE} mode returns after entry is forced to disk.
+     */
+    public long append(Entry<MemorySegment> entry, LongSupplier sequences) {
+        return append(encode(ENTRY_TYPE, entry), sequences);
+    }
+
+    /**
+     * Appends deletion of keys from [from;to) and returns its sequence number, see {@link #append}.
+     * In {@link SyncMode#PER_WRITE} mode returns after it is forced to disk.
+     */
+    public long appendRangeDelete(MemorySegment from, MemorySegment to, LongSupplier sequences) {
+        return append(encode(RANGE_DELETE_TYPE, new BaseEntry<>(from, to)), sequences);
+    }
+
+    /**
+     * Appends entries as one record, so they are replayed all or none, and returns sequence number
+     * of the record, see {@link #append}. In {@link SyncMode#PER_WRITE} mode returns after record is forced to disk.
+     */
+    public long appendBatch(List<Entry<MemorySegment>> entries, LongSupplier sequences) {
+        return append(encodeBatch(entries), sequences);
+    }
+
+    /**
+     * Writes sequence number into the end of record and completes its checksum,
+     * which already covers the rest of payload, under the append lock.
+     */
+    private long append(byte[] record, LongSupplier sequences) {
+        CRC32C crc = checksum(record);
+        MemorySegment segment = MemorySegment.ofArray(record);
+        long sequence;
+        long end;
+        synchronized (appendLock) {
+            sequence = sequences.getAsLong();
+            segment.set(ValueLayout.JAVA_LONG_UNALIGNED, record.length - Long.BYTES, sequence);
+            crc.update(record, record.length - Long.BYTES, Long.BYTES);
+            segment.set(ValueLayout.JAVA_INT_UNALIGNED, Integer.BYTES, (int) crc.getValue());
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException ex) {
+                throw new WriteFailureException("Couldn't append record to write-ahead log " + path, ex);
+            }
+            end = written + record.length;
+            written = end;
+        }
+        if (syncMode == SyncMode.PER_WRITE) {
+            sync(end);
+        }
+        return sequence;
+    }
+
+    /**
+     * Forces all appended records to disk.
+     */
+    public void sync() {
+        sync(written);
+    }
+
+    private void sync(long upTo) {
+        synchronized (syncLock) {
+            if (closed || synced >= upTo) {
+                return;
+            }
+            long target = written;
+            try {
+                channel.force(false);
+            } catch (IOException ex) {
+                throw new WriteFailureException("Couldn't force write-ahead log " + path, ex);
+            }
+            synced = target;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            if (closed) {
+                return;
+            }
+            channel.force(false);
+            closed = true;
+            channel.close();
+        }
+    }
+
+    /**
+     * Closes and removes log, its records must be persisted elsewhere.
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Passes entries and range deletions of log with sequence numbers of their records to consumers
+     * in order of appending, entries of batch share its sequence number.
+     * Replay stops at the first incomplete or corrupted record, which is a tail of interrupted append.
+     */
+    public static void replay(Path path, ObjLongConsumer<Entry<MemorySegment>> consumer,
+                              ObjLongConsumer<RangeTombstone<MemorySegment>> rangeDeletes) throws IOException {
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment log = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size(), arena);
+            CRC32C crc = new CRC32C();
+            long offset = 0;
+            while (offset + HEADER_SIZE <= log.byteSize()) {
+                int payloadSize = log.get(ValueLayout.JAVA_INT_UNALIGNED, offset);
+                int checksum = log.get(ValueLayout.JAVA_INT_UNALIGNED, offset + Integer.BYTES);
+                long payloadOffset = offset + HEADER_SIZE;
+                if (payloadSize < Byte.BYTES + Long.BYTES || payloadOffset + payloadSize > log.byteSize()) {
+                    return;
+                }
+                MemorySegment payload = log.asSlice(payloadOffset, payloadSize);
+                crc.reset();
+                crc.update(payload.asByteBuffer());
+                if ((int) crc.getValue() != checksum) {
+                    return;
+                }
+                byte type = payload.get(ValueLayout.JAVA_BYTE, 0);
+                long sequence = payload.get(ValueLayout.JAVA_LONG_UNALIGNED, payloadSize - Long.BYTES);
+                if (type == ENTRY_TYPE) {
+                    consumer.accept(decode(payload, Byte.BYTES), sequence);
+                } else if (type == BATCH_TYPE) {
+                    int count = payload.get(ValueLayout.JAVA_INT_UNALIGNED, Byte.BYTES);
+                    long entryOffset = BATCH_HEADER_SIZE;
+                    for (int i = 0; i < count; i++) {
+                        Entry<MemorySegment> entry = decode(payload, entryOffset);
+                        entryOffset += encodedSize(entry);
+                        consumer.accept(entry, sequence);
+                    }
+                } else if (type == RANGE_DELETE_TYPE) {
+                    Entry<MemorySegment> range = decode(payload, Byte.BYTES);
+                    rangeDeletes.accept(new RangeTombstone<>(range.key(), range.value()), sequence);
+                } else {
+                    return;
+                }
+                offset = payloadOffset + payloadSize;
+            }
+        }
+    }
+
+    /**
+     * Returns record without sequence number and checksum, they are written by {@link #append(byte[], LongSupplier)}.
+     */
+    private static byte[] encode(byte type, Entry<MemorySegment> entry) {
+        int payloadSize = Math.toIntExact(Byte.BYTES + encodedSize(entry) + Long.BYTES);
+        byte[] record = new byte[HEADER_SIZE + payloadSize];
+        MemorySegment segment = MemorySegment.ofArray(record);
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, 0, payloadSize);
+        segment.set(ValueLayout.JAVA_BYTE, HEADER_SIZE, type);
+        writeEntry(segment, HEADER_SIZE + Byte.BYTES, entry);
+        return record;
+    }
+
+    private static byte[] encodeBatch(List<Entry<MemorySegment>> entries) {
+        long size = BATCH_HEADER_SIZE + Long.BYTES;
+        for (Entry<MemorySegment> entry : entries) {
+            size += encodedSize(entry);
+        }
+        int payloadSize = Math.toIntExact(size);
+        byte[] record = new byte[HEADER_SIZE + payloadSize];
+        MemorySegment segment = MemorySegment.ofArray(record);
+        segment.set(ValueLayout.JAVA_BYTE, HEADER_SIZE, BATCH_TYPE);
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, HEADER_SIZE + Byte.BYTES, entries.size());
+        long offset = HEADER_SIZE + BATCH_HEADER_SIZE;
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, 0, payloadSize);
+        for (Entry<MemorySegment> entry : entries) {
+            offset = writeEntry(segment, offset, entry);
+        }
+        return record;
+    }
+
+    /**
+     * Writes <var>keySize valueSize key value</var> and returns offset after it.
+     */
+    private static long writeEntry(MemorySegment segment, long offset, Entry<MemorySegment> entry) {
+        long keySize = entry.key().byteSize();
+        long valueSize = entry.value() == null ? -1 : entry.value().byteSize();
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, offset, keySize);
+        segment.set(ValueLayout.JAVA_LONG_UNALIGNED, offset + Long.BYTES, valueSize);
+        MemorySegment.copy(entry.key(), 0, segment, offset + SIZES_SIZE, keySize);
+        if (valueSize >= 0) {
+            MemorySegment.copy(entry.value(), 0, segment, offset + SIZES_SIZE + keySize, valueSize);
+        }
+        return offset + SIZES_SIZE + keySize + Math.max(valueSize, 0);
+    }
+
+    private static long encodedSize(Entry<MemorySegment> entry) {
+        return SIZES_SIZE + entry.key().byteSize() + (entry.value() == null ? 0 : entry.value().byteSize());
+    }
+
+    /**
+     * Returns checksum of payload without its sequence number, which is not known yet.
+     */
+    private static CRC32C checksum(byte[] record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record, HEADER_SIZE, record.length - HEADER_SIZE - Long.BYTES);
+        return crc;
+    }
+
+    private static Entry<MemorySegment> decode(MemorySegment payload, long offset) {
+        long keySize = payload.get(ValueLayout.JAVA_LONG_UNALIGNED, offset);
+        long valueSize = payload.get(ValueLayout.JAVA_LONG_UNALIGNED, offset + Long.BYTES);
+        long keyOffset = offset + SIZES_SIZE;
+        MemorySegment key = copy(payload.asSlice(keyOffset, keySize));
+        MemorySegment value = valueSize < 0 ? null : copy(payload.asSlice(keyOffset + keySize, valueSize));
+        return new BaseEntry<>(key, value);
+    }
+
+    private static MemorySegment copy(MemorySegment segment) {
+        return MemorySegment.ofArray(segment.toArray(ValueLayout.JAVA_BYTE));
+    }
+}
@@ -0,0 +1,50 @@
+package org.lsm.bench;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsm.db.dao.PersistentDao;
+import org.lsm.db.table.KeyComparator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.lsm.db.TestUtils.string;
+
+class BenchmarkDataTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void keysHaveFixedSizeAndOrderOfIndexes() {
+        KeyComparator comparator = new KeyComparator();
+        assertEquals("0000000042", string(BenchmarkData.key(42, 10)));
+        for (long index = 0; index < 1000; index++) {
+            assertEquals(16, BenchmarkData.key(index, 16).byteSize());
+            assertTrue(comparator.compare(BenchmarkData.key(index, 16), BenchmarkData.key(index + 1, 16)) < 0);
+        }
+    }
+
+    /**
+     * Benchmarks of reads rely on this layout: every table is one table of level 0 and odd indexes are absent.
+     */
+    @Test
+    void filledTablesInterleaveEvenIndexes() throws IOException {
+        int tables = 3;
+        int rows = 50;
+        BenchmarkData.fill(dir, tables, rows, 16, 10);
+        try (PersistentDao dao = new PersistentDao(BenchmarkData.config(dir).build())) {
+            assertEquals(tables, dao.metrics().ssTableCount());
+            for (long index = 0; index < 2L * tables * rows; index++) {
+                if (index % 2 == 0) {
+                    assertNotNull(dao.get(BenchmarkData.key(index, 16)), "index " + index);
+                } else {
+                    assertNull(dao.get(BenchmarkData.key(index, 16)), "index " + index);
+                }
+            }
+        }
+    }
+}
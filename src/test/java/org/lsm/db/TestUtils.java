@@ -0,0 +1,35 @@
+package org.lsm.db;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Conversions between test data and segments, every char is one byte, so random values round trip exactly.
+ */
+public final class TestUtils {
+
+    /**
+     * No instances.
+     */
+    private TestUtils() {
+    }
+
+    /**
+     * Key of the given number, keys are ordered as their numbers up to 99999.
+     */
+    public static String key(int key) {
+        return "k%05d".formatted(key);
+    }
+
+    public static MemorySegment segment(String data) {
+        return MemorySegment.ofArray(data.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Decodes segment, missing value of tombstone is decoded as "null".
+     */
+    public static String string(MemorySegment data) {
+        return data == null ? "null" : new String(data.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.ISO_8859_1);
+    }
+}
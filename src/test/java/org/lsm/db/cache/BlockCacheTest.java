@@ -0,0 +1,97 @@
+package org.lsm.db.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class BlockCacheTest {
+    private static final int SLOT_SIZE = 64;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void loadedBlockIsReadFromCache() {
+        try (BlockCache cache = new BlockCache(16 * SLOT_SIZE, SLOT_SIZE)) {
+            long table = cache.newTableId();
+            assertEquals("block1", read(cache, table, 1, "block1"));
+            assertEquals("block1", read(cache, table, 1, "other"));
+            assertEquals(1, loads.get());
+            assertEquals(1, cache.hits());
+            assertEquals(1, cache.misses());
+            assertEquals("block1", string(cache.copyIfPresent(table, 1)));
+            assertNull(cache.copyIfPresent(cache.newTableId(), 1), "blocks of other table are apart");
+        }
+    }
+
+    /**
+     * Cache of one slot keeps only the last loaded block.
+     */
+    @Test
+    void blockIsEvictedByNewerBlock() {
+        try (BlockCache cache = new BlockCache(SLOT_SIZE, SLOT_SIZE)) {
+            long table = cache.newTableId();
+            read(cache, table, 1, "block1");
+            read(cache, table, 2, "block2");
+            assertNull(cache.copyIfPresent(table, 1));
+            assertEquals("block2", string(cache.copyIfPresent(table, 2)));
+            assertEquals("block1", read(cache, table, 1, "block1"));
+            assertEquals(3, loads.get());
+        }
+    }
+
+    /**
+     * Block read while the only slot is pinned by another reader is passed to reader without caching.
+     */
+    @Test
+    void pinnedBlockIsNotEvicted() {
+        try (BlockCache cache = new BlockCache(SLOT_SIZE, SLOT_SIZE)) {
+            long table = cache.newTableId();
+            String nested = cache.read(table, 1, loader("block1"), block -> read(cache, table, 2, "block2"));
+            assertEquals("block2", nested);
+            assertNull(cache.copyIfPresent(table, 2));
+            assertEquals("block1", read(cache, table, 1, "other"));
+            assertEquals(2, loads.get());
+        }
+    }
+
+    @Test
+    void blockLargerThanSlotIsNotCached() {
+        try (BlockCache cache = new BlockCache(16 * SLOT_SIZE, SLOT_SIZE)) {
+            long table = cache.newTableId();
+            String large = "x".repeat(SLOT_SIZE + 1);
+            assertEquals(large, read(cache, table, 1, large));
+            assertEquals(large, read(cache, table, 1, large));
+            assertEquals(2, loads.get());
+        }
+    }
+
+    @Test
+    void zeroCapacityDisablesCaching() {
+        try (BlockCache cache = new BlockCache(0, SLOT_SIZE)) {
+            long table = cache.newTableId();
+            read(cache, table, 1, "block1");
+            read(cache, table, 1, "block1");
+            assertEquals(2, loads.get());
+            assertEquals(0, cache.capacity());
+            assertNull(cache.copyIfPresent(table, 1));
+        }
+    }
+
+    private String read(BlockCache cache, long table, long offset, String data) {
+        return cache.read(table, offset, loader(data), block -> string(block));
+    }
+
+    private Supplier<MemorySegment> loader(String data) {
+        return () -> {
+            loads.incrementAndGet();
+            return segment(data);
+        };
+    }
+}
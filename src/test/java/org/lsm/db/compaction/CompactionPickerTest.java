@@ -0,0 +1,127 @@
+package org.lsm.db.compaction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsm.db.Config;
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.table.ChannelTableWriter;
+import org.lsm.db.table.Compression;
+import org.lsm.db.table.DiskTable;
+import org.lsm.db.table.KeyComparator;
+import org.lsm.db.table.SSTable;
+import org.lsm.db.table.TableWriter;
+import org.lsm.db.utils.Utils;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.lsm.db.TestUtils.key;
+import static org.lsm.db.TestUtils.segment;
+
+class CompactionPickerTest {
+    private final KeyComparator comparator = new KeyComparator();
+    private final List<Levels> opened = new ArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void release() {
+        opened.forEach(Levels::release);
+    }
+
+    /**
+     * Level 0 is merged from the newest table with tables of level 1 which overlap it, other tables stay.
+     */
+    @Test
+    void level0IsMergedWithOverlappingTablesOfLevel1() throws IOException {
+        Config config = Config.builder(dir).level0CompactionTrigger(2).build();
+        Levels levels = levels(List.of(table(1, 1, 0, 10), table(2, 1, 20, 30), table(3, 0, 5, 8), table(4, 0, 6, 12)));
+        CompactionPicker picker = new LeveledCompactionPicker(config, comparator);
+
+        assertTrue(picker.needsCompaction(levels));
+        Compaction compaction = picker.pick(levels);
+        assertEquals(List.of(4, 3, 1), numbers(compaction));
+        assertEquals(1, compaction.outputLevel());
+        assertTrue(compaction.bottommost());
+    }
+
+    /**
+     * Tables of oversized level are compacted in turn by keys with overlapping tables of the next level.
+     */
+    @Test
+    void oversizedLevelIsCompactedRoundRobin() throws IOException {
+        Config config = Config.builder(dir).levelBaseBytes(1).levelSizeMultiplier(1 << 20).build();
+        Levels levels = levels(List.of(table(1, 1, 0, 10), table(2, 1, 20, 30), table(3, 2, 25, 40)));
+        CompactionPicker picker = new LeveledCompactionPicker(config, comparator);
+
+        Compaction first = picker.pick(levels);
+        assertEquals(List.of(1), numbers(first));
+        assertEquals(2, first.outputLevel());
+        assertTrue(first.bottommost());
+        assertEquals(List.of(2, 3), numbers(picker.pick(levels)));
+        assertEquals(List.of(1), numbers(picker.pick(levels)));
+    }
+
+    @Test
+    void levelsInShapeAreNotCompacted() throws IOException {
+        Config config = Config.builder(dir).level0CompactionTrigger(4).build();
+        Levels levels = levels(List.of(table(1, 1, 0, 10), table(2, 0, 5, 8)));
+        CompactionPicker picker = new LeveledCompactionPicker(config, comparator);
+
+        assertFalse(picker.needsCompaction(levels));
+        assertNull(picker.pick(levels));
+    }
+
+    /**
+     * The newest runs of similar size are merged, the oldest run is much larger, so tombstones are kept.
+     */
+    @Test
+    void tieredMergesNewestRunsOfSimilarSize() throws IOException {
+        Config config = Config.builder(dir).level0CompactionTrigger(3).build();
+        Levels levels = levels(List.of(table(1, 0, 0, 500), table(2, 0, 0, 20), table(3, 0, 10, 30),
+                table(4, 0, 20, 40)));
+        CompactionPicker picker = new TieredCompactionPicker(config);
+
+        Compaction compaction = picker.pick(levels);
+        assertEquals(List.of(4, 3, 2), numbers(compaction));
+        assertEquals(0, compaction.outputLevel());
+        assertFalse(compaction.bottommost());
+    }
+
+    private Levels levels(List<DiskTable<MemorySegment>> tables) {
+        Levels levels = Levels.of(tables, comparator);
+        opened.add(levels);
+        return levels;
+    }
+
+    /**
+     * Table of the given level with keys from first to last inclusive.
+     */
+    private DiskTable<MemorySegment> table(int number, int level, int first, int last) throws IOException {
+        Path tablePath = Utils.sstTablePath(dir, number);
+        try (TableWriter writer = new ChannelTableWriter(tablePath, level, Compression.NONE, last - first + 1)) {
+            for (int i = first; i <= last; i++) {
+                writer.writeEntry(new BaseEntry<>(segment(key(i)), segment("v" + i)));
+            }
+            writer.finish();
+        }
+        return SSTable.open(tablePath, comparator, number, null);
+    }
+
+    private static List<Integer> numbers(Compaction compaction) {
+        List<Integer> numbers = new ArrayList<>();
+        for (DiskTable<MemorySegment> table : compaction.inputs()) {
+            numbers.add(table.tableNumber());
+        }
+        return numbers;
+    }
+}
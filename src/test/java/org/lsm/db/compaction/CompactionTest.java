@@ -0,0 +1,80 @@
+package org.lsm.db.compaction;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.table.ChannelTableWriter;
+import org.lsm.db.table.Compression;
+import org.lsm.db.table.DiskTable;
+import org.lsm.db.table.KeyComparator;
+import org.lsm.db.table.SSTable;
+import org.lsm.db.table.TableWriter;
+import org.lsm.db.utils.Utils;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.lsm.db.TestUtils.key;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class CompactionTest {
+    private final KeyComparator comparator = new KeyComparator();
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Split points divide keys of inputs into ranges of about the same amount of blocks.
+     */
+    @Test
+    void splitPointsDivideInputsEvenly() throws IOException {
+        try (DiskTable<MemorySegment> newer = table(1, 0, 4000, 2);
+             DiskTable<MemorySegment> older = table(2, 1, 4000, 2)) {
+            Compaction compaction = new Compaction(List.of(newer, older), 1, true);
+            List<MemorySegment> points = compaction.splitPoints(4, comparator);
+
+            assertEquals(3, points.size());
+            List<Integer> indexes = new ArrayList<>();
+            for (MemorySegment point : points) {
+                indexes.add(Integer.parseInt(string(point).substring(1)));
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                int expected = (i + 1) * 8000 / 4;
+                assertTrue(Math.abs(indexes.get(i) - expected) < 200, "split point " + indexes);
+            }
+        }
+    }
+
+    /**
+     * Inputs of one block each have no keys to split by except the least one, which can't start a range.
+     */
+    @Test
+    void smallInputsAreNotSplit() throws IOException {
+        try (DiskTable<MemorySegment> table = table(1, 0, 10, 1)) {
+            Compaction compaction = new Compaction(List.of(table), 1, true);
+            assertEquals(List.of(), compaction.splitPoints(4, comparator));
+            assertEquals(List.of(), compaction.splitPoints(1, comparator));
+        }
+    }
+
+    /**
+     * Table with rows keys from first with the given step.
+     */
+    private DiskTable<MemorySegment> table(int number, int first, int rows, int step) throws IOException {
+        Path tablePath = Utils.sstTablePath(dir, number);
+        try (TableWriter writer = new ChannelTableWriter(tablePath, 1, Compression.NONE, rows)) {
+            for (int i = 0; i < rows; i++) {
+                int index = first + i * step;
+                writer.writeEntry(new BaseEntry<>(segment(key(index)), segment("value" + index)));
+            }
+            writer.finish();
+        }
+        return SSTable.open(tablePath, comparator, number, null);
+    }
+}
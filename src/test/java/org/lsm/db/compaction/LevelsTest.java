@@ -0,0 +1,82 @@
+package org.lsm.db.compaction;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
+import org.lsm.db.table.ChannelTableWriter;
+import org.lsm.db.table.Compression;
+import org.lsm.db.table.DiskTable;
+import org.lsm.db.table.KeyComparator;
+import org.lsm.db.table.SSTable;
+import org.lsm.db.table.TableWriter;
+import org.lsm.db.utils.Utils;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class LevelsTest {
+    private final KeyComparator comparator = new KeyComparator();
+
+    @TempDir
+    Path dir;
+
+    /**
+     * The first table ends with exclusive end of range tombstone which is the least key of the second table,
+     * so the boundary key belongs to the second table.
+     */
+    @Test
+    void getAllMatchesGetOnRangeTombstoneBoundary() throws IOException {
+        DiskTable<MemorySegment> first = table(1, List.of("k1", "k2"), List.of(new RangeTombstone<>(
+                segment("k3"), segment("k5"))));
+        DiskTable<MemorySegment> second = table(2, List.of("k5", "k6"), List.of());
+        assertEquals("k5", string(first.maxKey()));
+        Levels levels = Levels.of(List.of(first, second), comparator);
+        try {
+            List<MemorySegment> keys = new ArrayList<>();
+            for (String key : List.of("k0", "k1", "k2", "k3", "k4", "k5", "k6", "k7")) {
+                keys.add(segment(key));
+            }
+            List<Entry<MemorySegment>> entries = new ArrayList<>(Collections.nCopies(keys.size(), null));
+            levels.getAll(keys, entries, keys.size(), null);
+            for (int i = 0; i < keys.size(); i++) {
+                Entry<MemorySegment> expected = levels.get(keys.get(i), searched -> { });
+                assertEquals(describe(expected), describe(entries.get(i)), string(keys.get(i)));
+            }
+            assertNotNull(entries.get(5), "boundary key");
+            assertEquals("v-k5", string(entries.get(5).value()));
+        } finally {
+            levels.release();
+        }
+    }
+
+    private DiskTable<MemorySegment> table(int number, List<String> keys,
+                                           List<RangeTombstone<MemorySegment>> tombstones) throws IOException {
+        Path tablePath = Utils.sstTablePath(dir, number);
+        try (TableWriter writer = new ChannelTableWriter(tablePath, 1, Compression.NONE, keys.size())) {
+            for (String key : keys) {
+                writer.writeEntry(new BaseEntry<>(segment(key), segment("v-" + key)));
+            }
+            writer.writeRangeTombstones(tombstones);
+            writer.finish();
+        }
+        return SSTable.open(tablePath, comparator, number, null);
+    }
+
+    private static String describe(Entry<MemorySegment> entry) {
+        if (entry == null) {
+            return "absent";
+        }
+        return entry.value() == null ? "deleted" : string(entry.value());
+    }
+}
@@ -0,0 +1,54 @@
+package org.lsm.db.dao;
+
+import org.junit.jupiter.api.Test;
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.lsm.db.TestUtils.key;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class AsyncDaoTest {
+
+    @Test
+    void scanReadsRangeByPages() {
+        AsyncDao dao = new AsyncDao(new InMemoryDao(), 4);
+        for (int i = 0; i < 250; i++) {
+            dao.upsert(new BaseEntry<>(segment(key(i)), segment("v" + i))).join();
+        }
+
+        assertEquals(List.of(100, 100, 40, 0), pageSizes(dao.get(segment(key(5)), segment(key(245)), 100)));
+        assertEquals(List.of(50, 50, 0), pageSizes(dao.get(null, segment(key(100)), 50)));
+
+        AsyncDao.Scan descending = dao.descending(segment(key(10)), null, 3);
+        assertEquals(List.of(key(249), key(248), key(247)), keys(descending.nextPage().join()));
+        assertEquals(List.of(key(246), key(245), key(244)), keys(descending.nextPage().join()));
+
+        assertThrows(IllegalArgumentException.class, () -> dao.get(null, null, 0));
+        dao.close().join();
+    }
+
+    private static List<Integer> pageSizes(AsyncDao.Scan scan) {
+        List<Integer> sizes = new ArrayList<>();
+        List<Entry<MemorySegment>> page;
+        do {
+            page = scan.nextPage().join();
+            sizes.add(page.size());
+        } while (!page.isEmpty());
+        return sizes;
+    }
+
+    private static List<String> keys(List<Entry<MemorySegment>> page) {
+        List<String> keys = new ArrayList<>();
+        for (Entry<MemorySegment> entry : page) {
+            keys.add(string(entry.key()));
+        }
+        return keys;
+    }
+}
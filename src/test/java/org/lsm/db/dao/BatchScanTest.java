@@ -0,0 +1,85 @@
+package org.lsm.db.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsm.db.Config;
+import org.lsm.db.entry.Entry;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.lsm.db.TestUtils.key;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class BatchScanTest {
+    private static final int KEYS = 50;
+    private static final int BATCHES = 2000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void persistentDaoScanSeesBatchAllOrNone() throws Exception {
+        Config config = Config.builder(dir).flushThresholdBytes(64 << 10).build();
+        try (PersistentDao dao = new PersistentDao(config)) {
+            scanWhileWriting(dao);
+        }
+    }
+
+    @Test
+    void inMemoryDaoScanSeesBatchAllOrNone() throws Exception {
+        try (InMemoryDao dao = new InMemoryDao()) {
+            scanWhileWriting(dao);
+        }
+    }
+
+    /**
+     * Every batch rewrites all keys with one value and deletes the key of the previous batch,
+     * so a scan which sees part of a batch finds two values or a wrong amount of keys.
+     */
+    private static void scanWhileWriting(Dao<MemorySegment, Entry<MemorySegment>> dao) throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= BATCHES; i++) {
+                WriteBatch<MemorySegment> batch = new WriteBatch<>();
+                for (int key = 0; key < KEYS; key++) {
+                    batch.put(segment(key(key)), segment("v" + i));
+                }
+                batch.put(segment("z" + i), segment("v" + i));
+                batch.delete(segment("z" + (i - 1)));
+                dao.write(batch);
+            }
+            done.set(true);
+        });
+        writer.start();
+        int scans = 0;
+        while (!done.get()) {
+            check(scans % 2 == 0 ? dao.all() : dao.descending(null, null));
+            scans++;
+        }
+        writer.join();
+        check(dao.all());
+        assertTrue(scans > 0);
+    }
+
+    private static void check(Iterator<Entry<MemorySegment>> iterator) {
+        Set<String> values = new HashSet<>();
+        int rows = 0;
+        while (iterator.hasNext()) {
+            values.add(string(iterator.next().value()));
+            rows++;
+        }
+        if (rows == 0) {
+            return;
+        }
+        assertEquals(KEYS + 1, rows, "rows of scan");
+        assertEquals(1, values.size(), "values of scan " + values);
+    }
+}
@@ -0,0 +1,64 @@
+package org.lsm.db.dao;
+
+import org.junit.jupiter.api.Test;
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class InMemoryDaoTest {
+
+    @Test
+    void deleteRangeHidesOnlyEarlierUpserts() throws IOException {
+        try (InMemoryDao dao = new InMemoryDao()) {
+            for (String key : List.of("a", "b", "c", "d")) {
+                dao.upsert(new BaseEntry<>(segment(key), segment(key + "1")));
+            }
+            dao.deleteRange(segment("b"), segment("d"));
+            dao.deleteRange(segment("d"), segment("a"));
+            dao.upsert(new BaseEntry<>(segment("c"), segment("c2")));
+
+            assertNull(dao.get(segment("b")));
+            assertEquals("c2", string(dao.get(segment("c")).value()));
+            assertEquals(List.of("a=a1", "c=c2", "d=d1"), rows(dao.all()));
+        }
+    }
+
+    @Test
+    void snapshotDoesNotSeeLaterWrites() throws IOException {
+        try (InMemoryDao dao = new InMemoryDao()) {
+            dao.upsert(new BaseEntry<>(segment("a"), segment("a1")));
+            dao.upsert(new BaseEntry<>(segment("b"), segment("b1")));
+            try (Snapshot<MemorySegment, Entry<MemorySegment>> snapshot = dao.snapshot()) {
+                dao.upsert(new BaseEntry<>(segment("a"), segment("a2")));
+                dao.write(new WriteBatch<MemorySegment>().delete(segment("b")).put(segment("c"), segment("c2")));
+
+                assertEquals("a1", string(snapshot.get(segment("a")).value()));
+                assertEquals("b1", string(snapshot.get(segment("b")).value()));
+                assertNull(snapshot.get(segment("c")));
+                assertEquals(List.of("a=a1", "b=b1"), rows(snapshot.all()));
+                assertEquals(List.of("b=b1", "a=a1"), rows(snapshot.descending(null, null)));
+            }
+            assertNull(dao.get(segment("b")));
+            assertEquals(List.of("a=a2", "c=c2"), rows(dao.all()));
+        }
+    }
+
+    private static List<String> rows(Iterator<Entry<MemorySegment>> iterator) {
+        List<String> rows = new ArrayList<>();
+        while (iterator.hasNext()) {
+            Entry<MemorySegment> entry = iterator.next();
+            rows.add(string(entry.key()) + "=" + string(entry.value()));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,311 @@
+package org.lsm.db.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsm.db.Config;
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+import org.lsm.db.table.MemTableType;
+import org.lsm.db.utils.Utils;
+import org.lsm.db.wal.SyncMode;
+import org.lsm.db.wal.WriteAheadLog;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.lsm.db.TestUtils.key;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class PersistentDaoTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void scanLatencyIsRecordedWhenIteratorIsExhausted() throws IOException {
+        try (PersistentDao dao = new PersistentDao(dir)) {
+            dao.upsert(new BaseEntry<>(segment("a"), segment("1")));
+            dao.upsert(new BaseEntry<>(segment("b"), segment("2")));
+
+            Iterator<Entry<MemorySegment>> iterator = dao.all();
+            iterator.next();
+            assertEquals(0, dao.metrics().scanLatency().count());
+            iterator.next();
+            iterator.hasNext();
+            iterator.hasNext();
+            assertEquals(1, dao.metrics().scanLatency().count());
+        }
+    }
+
+    /**
+     * Get returns the newest version: it stops at memtable or at the newest table of level 0 containing key,
+     * and searches all tables only for absent key.
+     */
+    @Test
+    void getStopsAtNewestVersionOfKey() throws IOException {
+        Config config = Config.builder(dir).level0CompactionTrigger(100).build();
+        List<List<String>> tables = List.of(List.of("a", "1", "b", "1"), List.of("a", "2"), List.of("c", "1"));
+        for (List<String> table : tables) {
+            try (PersistentDao dao = new PersistentDao(config)) {
+                for (int i = 0; i < table.size(); i += 2) {
+                    dao.upsert(new BaseEntry<>(segment(table.get(i)), segment(table.get(i + 1))));
+                }
+            }
+        }
+        try (PersistentDao dao = new PersistentDao(config)) {
+            assertEquals(3, dao.metrics().ssTableCount());
+            dao.upsert(new BaseEntry<>(segment("b"), null));
+
+            assertEquals("1", string(dao.get(segment("c")).value()));
+            assertEquals(1, dao.metrics().tablesPerGet().max());
+            assertEquals("2", string(dao.get(segment("a")).value()));
+            assertEquals(2, dao.metrics().tablesPerGet().max());
+            assertNull(dao.get(segment("b")));
+            assertNull(dao.get(segment("z")));
+            assertEquals(3, dao.metrics().tablesPerGet().max());
+            assertEquals((1 + 2 + 0 + 3) / 4.0, dao.metrics().tablesPerGet().mean());
+        }
+    }
+
+    /**
+     * Get which is repeated under lock because a batch was applied meanwhile is still one sample of tables per get.
+     */
+    @Test
+    void tablesPerGetAreRecordedOncePerGet() throws Exception {
+        try (PersistentDao dao = new PersistentDao(dir)) {
+            AtomicBoolean done = new AtomicBoolean();
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    dao.write(new WriteBatch<MemorySegment>().put(segment("a"), segment("v" + i)));
+                }
+                done.set(true);
+            });
+            writer.start();
+            int gets = 0;
+            while (!done.get()) {
+                dao.get(segment("a"));
+                gets++;
+            }
+            writer.join();
+            assertEquals(gets, dao.metrics().tablesPerGet().count());
+        }
+    }
+
+    /**
+     * Scanned entries of arena memtable and mapped tables are read after dao, and so its tables, is closed.
+     */
+    @Test
+    void scannedEntriesOutliveTablesTheyWereReadFrom() throws IOException {
+        Config config = Config.builder(dir).memTableType(MemTableType.ARENA).build();
+        List<Entry<MemorySegment>> entries = new ArrayList<>();
+        try (PersistentDao dao = new PersistentDao(config)) {
+            dao.upsert(new BaseEntry<>(segment("a"), segment("1")));
+            dao.flush();
+            dao.upsert(new BaseEntry<>(segment("b"), segment("2")));
+            dao.all().forEachRemaining(entries::add);
+        }
+        assertEquals("a=1", string(entries.get(0).key()) + "=" + string(entries.get(0).value()));
+        assertEquals("b=2", string(entries.get(1).key()) + "=" + string(entries.get(1).value()));
+    }
+
+    /**
+     * Small threshold rotates memtable many times, so entries are spread between flushed tables,
+     * memtables waiting for flush and the current memtable, and are read back after reopen.
+     */
+    @Test
+    void rotatedMemTablesAreFlushedAndReadAfterReopen() throws IOException {
+        Config config = Config.builder(dir).flushThresholdBytes(16 << 10).build();
+        int count = 3000;
+        try (PersistentDao dao = new PersistentDao(config)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(new BaseEntry<>(segment(key(i)), segment("value" + i)));
+            }
+            for (int i = 0; i < count; i += 3) {
+                dao.upsert(new BaseEntry<>(segment(key(i)), segment("updated" + i)));
+            }
+            for (int i = 0; i < count; i += 5) {
+                dao.upsert(new BaseEntry<>(segment(key(i)), null));
+            }
+            assertTrue(dao.metrics().flushes() > 0);
+            assertValues(dao, count);
+        }
+        try (PersistentDao dao = new PersistentDao(config)) {
+            assertValues(dao, count);
+            assertEquals(1, Utils.walNumbers(dir).size());
+        }
+    }
+
+    /**
+     * Log left by a process which didn't flush its memtable is replayed into a table on open and removed,
+     * its torn tail is dropped.
+     */
+    @Test
+    void logOfUnflushedMemTableIsRecoveredOnOpen() throws IOException {
+        Path walPath = Utils.walPath(dir, 1);
+        AtomicLong sequence = new AtomicLong();
+        try (WriteAheadLog log = new WriteAheadLog(walPath, SyncMode.PER_WRITE)) {
+            log.append(new BaseEntry<>(segment("a"), segment("1")), sequence::incrementAndGet);
+            log.appendBatch(List.of(new BaseEntry<>(segment("b"), segment("2")),
+                    new BaseEntry<>(segment("c"), segment("3"))), sequence::incrementAndGet);
+            log.appendRangeDelete(segment("c"), segment("d"), sequence::incrementAndGet);
+        }
+        try (FileChannel channel = FileChannel.open(walPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {42, 0, 0, 0, 1, 2}));
+        }
+        try (PersistentDao dao = new PersistentDao(dir)) {
+            assertFalse(Files.exists(walPath));
+            assertEquals(1, dao.metrics().ssTableCount());
+            assertEquals("1", string(dao.get(segment("a")).value()));
+            assertEquals("2", string(dao.get(segment("b")).value()));
+            assertNull(dao.get(segment("c")));
+            dao.upsert(new BaseEntry<>(segment("d"), segment("4")));
+        }
+        try (PersistentDao dao = new PersistentDao(dir)) {
+            assertEquals("4", string(dao.get(segment("d")).value()));
+            assertEquals("2", string(dao.get(segment("b")).value()));
+        }
+    }
+
+    /**
+     * Concurrent writes of the same key and range deletions over it are replayed from log copied before close
+     * as readers saw them.
+     */
+    @Test
+    void recoveredLogKeepsOrderOfConcurrentWrites() throws Exception {
+        Path copy = Files.createDirectory(dir.resolve("copy"));
+        Config config = Config.builder(dir.resolve("dao")).memTableType(MemTableType.ARENA).build();
+        try (PersistentDao dao = new PersistentDao(config)) {
+            List<Thread> writers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                int writer = i;
+                writers.add(Thread.ofPlatform().start(() -> {
+                    for (int j = 0; j < 2000; j++) {
+                        if (writer == 0 && j % 10 == 0) {
+                            dao.deleteRange(segment("k"), segment("l"));
+                        } else {
+                            dao.upsert(new BaseEntry<>(segment("k"), segment(writer + "-" + j)));
+                        }
+                    }
+                }));
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            Entry<MemorySegment> seen = dao.get(segment("k"));
+            for (int number : Utils.walNumbers(config.basePath())) {
+                Files.copy(Utils.walPath(config.basePath(), number), Utils.walPath(copy, number));
+            }
+            try (PersistentDao recovered = new PersistentDao(copy)) {
+                Entry<MemorySegment> replayed = recovered.get(segment("k"));
+                assertEquals(seen == null ? null : string(seen.value()),
+                        replayed == null ? null : string(replayed.value()));
+            }
+        }
+    }
+
+    /**
+     * Descending scan of any range returns entries of ascending scan of the same range in reverse order:
+     * keys from the inclusive lower bound to the exclusive upper bound, merged from memtable and tables.
+     */
+    @Test
+    void descendingScanReversesAscendingScan() throws IOException {
+        Config config = Config.builder(dir).flushThresholdBytes(16 << 10).build();
+        try (PersistentDao dao = new PersistentDao(config)) {
+            for (int i = 0; i < 3000; i++) {
+                dao.upsert(new BaseEntry<>(segment(key(i)), segment("value" + i)));
+            }
+            dao.flush();
+            for (int i = 0; i < 3000; i += 7) {
+                dao.upsert(new BaseEntry<>(segment(key(i)), i % 2 == 0 ? null : segment("updated" + i)));
+            }
+            dao.deleteRange(segment(key(1000)), segment(key(1200)));
+            int[][] ranges = {{-1, -1}, {0, 3000}, {10, 11}, {995, 1205}, {2990, -1}, {-1, 17}, {500, 500}};
+            for (int[] range : ranges) {
+                MemorySegment from = range[0] < 0 ? null : segment(key(range[0]));
+                MemorySegment to = range[1] < 0 ? null : segment(key(range[1]));
+                List<String> ascending = rows(dao.get(from, to));
+                List<String> descending = rows(dao.descending(from, to));
+                assertEquals(ascending.reversed(), descending, Arrays.toString(range));
+            }
+            assertEquals(List.of(key(1201) + "=value1201", key(1200) + "=value1200", key(999) + "=value999"),
+                    rows(dao.descending(segment(key(995)), segment(key(1202)))).subList(0, 3));
+            assertEquals(List.of(), rows(dao.descending(segment(key(500)), segment(key(500)))));
+        }
+    }
+
+    /**
+     * Full compaction divided into parallel key ranges keeps the same entries as one merge,
+     * including overwrites and range deletions which cross split points.
+     */
+    @Test
+    void subCompactionsMergeAsOneCompaction() throws IOException {
+        List<String> expected = null;
+        for (int subCompactions : new int[] {1, 4}) {
+            Config config = Config.builder(dir.resolve("sub" + subCompactions)).maxSubCompactions(subCompactions)
+                    .targetFileBytes(8 << 10).level0CompactionTrigger(100).build();
+            try (PersistentDao dao = new PersistentDao(config)) {
+                for (int round = 0; round < 4; round++) {
+                    for (int i = round; i < 4000; i += 2) {
+                        dao.upsert(new BaseEntry<>(segment(key(i)), segment("value" + round + "-" + i)));
+                    }
+                    dao.deleteRange(segment(key(round * 1000 + 400)), segment(key(round * 1000 + 700)));
+                    dao.flush();
+                }
+            }
+            List<String> rows = new ArrayList<>();
+            try (PersistentDao dao = new PersistentDao(config)) {
+                dao.compact();
+            }
+            try (PersistentDao dao = new PersistentDao(config)) {
+                assertTrue(dao.metrics().ssTableCount() > 1);
+                dao.all().forEachRemaining(entry -> rows.add(string(entry.key()) + "=" + string(entry.value())));
+            }
+            if (expected == null) {
+                expected = rows;
+            } else {
+                assertEquals(expected, rows);
+            }
+        }
+        // Later rounds rewrite deleted keys of their parity: the last range stays deleted, a half of the previous one.
+        assertEquals(4000 - 300 - 150, expected.size());
+    }
+
+    private static List<String> rows(Iterator<Entry<MemorySegment>> iterator) {
+        List<String> rows = new ArrayList<>();
+        iterator.forEachRemaining(entry -> rows.add(string(entry.key()) + "=" + string(entry.value())));
+        return rows;
+    }
+
+    private static void assertValues(PersistentDao dao, int count) {
+        for (int i = 0; i < count; i++) {
+            Entry<MemorySegment> entry = dao.get(segment(key(i)));
+            if (i % 5 == 0) {
+                assertNull(entry, key(i));
+            } else {
+                assertEquals((i % 3 == 0 ? "updated" : "value") + i, string(entry.value()), key(i));
+            }
+        }
+        Iterator<Entry<MemorySegment>> iterator = dao.all();
+        int rows = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            rows++;
+        }
+        assertEquals(count - count / 5, rows);
+    }
+}
@@ -0,0 +1,66 @@
+package org.lsm.db.filter;
+
+import org.junit.jupiter.api.Test;
+import org.lsm.db.exception.InvalidBlockException;
+
+import java.lang.foreign.MemorySegment;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.lsm.db.TestUtils.key;
+import static org.lsm.db.TestUtils.segment;
+
+class BloomFilterTest {
+    private static final int KEYS = 10_000;
+
+    @Test
+    void addedKeysAreAlwaysFound() {
+        BloomFilter filter = filter(KEYS, KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(filter.mayContain(segment(key(i))), key(i));
+        }
+    }
+
+    /**
+     * With {@link BloomFilter#BITS_PER_KEY} bits per key about 1% of absent keys pass the filter.
+     */
+    @Test
+    void fewAbsentKeysPassFilter() {
+        BloomFilter filter = filter(KEYS, KEYS);
+        int passed = 0;
+        for (int i = KEYS; i < 2 * KEYS; i++) {
+            if (filter.mayContain(segment(key(i)))) {
+                passed++;
+            }
+        }
+        assertTrue(passed < KEYS / 50, passed + " false positives");
+    }
+
+    /**
+     * Filter sized for fewer keys than written only loses precision.
+     */
+    @Test
+    void underestimatedFilterFindsAllKeys() {
+        BloomFilter filter = filter(KEYS / 10, KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(filter.mayContain(segment(key(i))), key(i));
+        }
+    }
+
+    @Test
+    void malformedBlockIsRejected() {
+        assertThrows(InvalidBlockException.class, () -> BloomFilter.read(MemorySegment.ofArray(new byte[10])));
+        MemorySegment noHashes = MemorySegment.ofArray(new byte[Long.BYTES + Integer.BYTES]);
+        assertThrows(InvalidBlockException.class, () -> BloomFilter.read(noHashes));
+    }
+
+    private static BloomFilter filter(long expectedKeys, int keys) {
+        BloomFilter.Builder builder = new BloomFilter.Builder(expectedKeys);
+        for (int i = 0; i < keys; i++) {
+            builder.add(segment(key(i)));
+        }
+        MemorySegment block = MemorySegment.ofArray(new byte[(int) builder.byteSize()]);
+        builder.write(block, 0L);
+        return BloomFilter.read(block);
+    }
+}
@@ -0,0 +1,88 @@
+package org.lsm.db.iterator;
+
+import org.junit.jupiter.api.Test;
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.table.KeyComparator;
+import org.lsm.db.table.MemTable;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.lsm.db.TestUtils.key;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class MergeCursorTest {
+    private final KeyComparator comparator = new KeyComparator();
+
+    @Test
+    void newestVersionWinsAndDeletedKeysAreSkipped() {
+        MemTable newest = table("k2", "new2", "k3", null);
+        MemTable middle = table("k1", "mid1", "k3", "mid3", "k4", "mid4");
+        middle.deleteRange(segment("k4"), segment("k6"), Long.MAX_VALUE);
+        MemTable oldest = table("k1", "old1", "k2", "old2", "k5", "old5", "k6", "old6");
+
+        assertEquals(List.of("k1=mid1", "k2=new2", "k6=old6"), scan(List.of(newest, middle, oldest), false, false));
+        assertEquals(List.of("k6=old6", "k2=new2", "k1=mid1"), scan(List.of(newest, middle, oldest), false, true));
+        assertEquals(List.of("k1=mid1", "k2=new2", "k3=null", "k6=old6"),
+                scan(List.of(newest, middle, oldest), true, false));
+    }
+
+    /**
+     * Loser tree of any amount of sources, some of them empty, merges as map where newer sources override older.
+     */
+    @Test
+    void mergeMatchesNewestWinsModel() {
+        Random random = new Random(7);
+        for (int sources = 0; sources <= 9; sources++) {
+            List<MemTable> tables = new ArrayList<>();
+            TreeMap<String, String> model = new TreeMap<>();
+            for (int source = 0; source < sources; source++) {
+                tables.add(new MemTable(comparator));
+            }
+            for (int source = sources - 1; source >= 0; source--) {
+                int rows = source % 4 == 3 ? 0 : random.nextInt(50);
+                for (int i = 0; i < rows; i++) {
+                    String key = key(random.nextInt(100));
+                    String value = random.nextInt(5) == 0 ? null : source + "-" + i;
+                    tables.get(source).upsert(new BaseEntry<>(segment(key), value == null ? null : segment(value)));
+                    model.put(key, value);
+                }
+            }
+            List<String> expected = new ArrayList<>();
+            model.forEach((key, value) -> {
+                if (value != null) {
+                    expected.add(key + "=" + value);
+                }
+            });
+            assertEquals(expected, scan(tables, false, false), sources + " sources");
+            assertEquals(expected.reversed(), scan(tables, false, true), sources + " sources descending");
+        }
+    }
+
+    private List<String> scan(List<MemTable> tables, boolean keepTombstones, boolean descending) {
+        List<TableCursor<MemorySegment>> cursors = new ArrayList<>();
+        for (MemTable table : tables) {
+            cursors.add(table.rangeCursor(null, true, null, true, descending));
+        }
+        List<String> rows = new ArrayList<>();
+        for (MergeCursor cursor = new MergeCursor(cursors, comparator, keepTombstones, descending);
+             cursor.isValid(); cursor.next()) {
+            rows.add(string(cursor.key()) + "=" + (cursor.value() == null ? null : string(cursor.value())));
+        }
+        return rows;
+    }
+
+    private MemTable table(String... keyValues) {
+        MemTable table = new MemTable(comparator);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            String value = keyValues[i + 1];
+            table.upsert(new BaseEntry<>(segment(keyValues[i]), value == null ? null : segment(value)));
+        }
+        return table;
+    }
+}
@@ -0,0 +1,114 @@
+package org.lsm.db.manifest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsm.db.dao.PersistentDao;
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.table.TableMeta;
+import org.lsm.db.utils.Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class ManifestTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * Compaction output of level 0 takes place of the newest removed table, tables of other levels are kept by number.
+     */
+    @Test
+    void replayAppliesEditsInOrder() throws IOException {
+        Path path = Utils.manifestPath(dir);
+        try (Manifest manifest = Manifest.create(path, List.of(table(1, 0), table(2, 0)), 3)) {
+            manifest.append(List.of(), List.of(table(3, 0)), 4);
+            manifest.append(List.of(1, 2), List.of(table(4, 0)), 5);
+            manifest.append(List.of(), List.of(table(5, 1), table(6, 1)), 7);
+            manifest.append(List.of(5), List.of(table(7, 1)), 8);
+        }
+        Manifest.Replay replay = Manifest.replay(path);
+        assertEquals(List.of("4@0", "3@0", "6@1", "7@1"), tables(replay));
+        assertEquals(8, replay.nextTableNumber());
+        assertEquals("k1", string(replay.tables().getFirst().minKey()));
+        assertEquals("k9", string(replay.tables().getFirst().maxKey()));
+    }
+
+    /**
+     * Rewrite leaves one edit of live tables and drops the tail of interrupted append.
+     */
+    @Test
+    void rewriteKeepsLiveTablesAndDropsTornTail() throws IOException {
+        Path path = Utils.manifestPath(dir);
+        try (Manifest manifest = Manifest.create(path, List.of(table(1, 0)), 2)) {
+            for (int i = 2; i < 50; i++) {
+                manifest.append(List.of(i - 1), List.of(table(i, 0)), i + 1);
+            }
+            manifest.append(List.of(), List.of(emptyTable(50)), 51);
+        }
+        long size = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {100, 0, 0, 0, 7}));
+        }
+        Manifest.Replay replay = Manifest.replay(path);
+        assertEquals(List.of("49@0", "50@0"), tables(replay));
+        assertNull(replay.tables().getLast().minKey());
+
+        Manifest.create(path, replay.tables(), replay.nextTableNumber()).close();
+        assertTrue(Files.size(path) < size);
+        Manifest.Replay rewritten = Manifest.replay(path);
+        assertEquals(tables(replay), tables(rewritten));
+        assertEquals(51, rewritten.nextTableNumber());
+    }
+
+    /**
+     * Manifest of reopened dao lists exactly the tables in directory, so files are found without listing it.
+     */
+    @Test
+    void reopenedDaoReadsTablesOfManifest() throws IOException {
+        for (int round = 0; round < 3; round++) {
+            try (PersistentDao dao = new PersistentDao(dir)) {
+                dao.upsert(new BaseEntry<>(segment("k" + round), segment("v" + round)));
+            }
+        }
+        Manifest.Replay replay = Manifest.replay(Utils.manifestPath(dir));
+        List<Integer> numbers = new ArrayList<>();
+        for (TableMeta table : replay.tables()) {
+            numbers.add(table.number());
+        }
+        assertEquals(Utils.sstTableNumbers(dir), numbers.stream().sorted().toList());
+        assertEquals(3, numbers.size());
+        try (PersistentDao dao = new PersistentDao(dir)) {
+            for (int round = 0; round < 3; round++) {
+                assertEquals("v" + round, string(dao.get(segment("k" + round)).value()));
+            }
+        }
+    }
+
+    private static TableMeta table(int number, int level) {
+        return new TableMeta(number, level, 10, 100, 200, segment("k1"), segment("k9"));
+    }
+
+    private static TableMeta emptyTable(int number) {
+        return new TableMeta(number, 0, 0, 0, 64, null, null);
+    }
+
+    private static List<String> tables(Manifest.Replay replay) {
+        List<String> tables = new ArrayList<>();
+        for (TableMeta table : replay.tables()) {
+            tables.add(table.number() + "@" + table.level());
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,78 @@
+package org.lsm.db.table;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.utils.Utils;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.lsm.db.TestUtils.key;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class AccessHintTest {
+    private static final boolean LINUX = System.getProperty("os.name", "").startsWith("Linux");
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Hints are applied to mapped files on Linux only, slices not aligned to page are advised from page start.
+     * Pages dropped by {@link AccessHint#DONT_NEED} are read from file again.
+     */
+    @Test
+    void mappedFileIsAdvisedOnLinux() throws IOException {
+        Path path = Files.write(dir.resolve("data"), "0123456789".repeat(1000).getBytes(StandardCharsets.US_ASCII));
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            for (AccessHint hint : AccessHint.values()) {
+                assertEquals(LINUX, hint.advise(mapped), hint.name());
+                assertEquals(LINUX, hint.advise(mapped.asSlice(4097, 100)), hint.name() + " of slice");
+            }
+            assertEquals('7', (char) mapped.get(ValueLayout.JAVA_BYTE, 5007));
+        }
+    }
+
+    /**
+     * Heap and empty segments are never advised, the caller reads them as before.
+     */
+    @Test
+    void heapAndEmptySegmentsAreNotAdvised() {
+        for (AccessHint hint : AccessHint.values()) {
+            assertFalse(hint.advise(segment("heap")));
+            assertFalse(hint.advise(MemorySegment.NULL));
+        }
+    }
+
+    /**
+     * Table is read as before after every hint, including dropped pages.
+     */
+    @Test
+    void tableIsReadAfterHints() throws IOException {
+        Path path = Utils.sstTablePath(dir, 1);
+        try (TableWriter writer = new ChannelTableWriter(path, 1, Compression.NONE, 1000)) {
+            for (int i = 0; i < 1000; i++) {
+                writer.writeEntry(new BaseEntry<>(segment(key(i)), segment("value" + i)));
+            }
+            writer.finish();
+        }
+        try (DiskTable<MemorySegment> table = SSTable.open(path, new KeyComparator(), 1, null)) {
+            for (AccessHint hint : AccessHint.values()) {
+                table.advise(hint);
+                assertEquals("value500", string(table.get(segment(key(500))).value()), hint.name());
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.lsm.db.table;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.lsm.db.TestUtils.key;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class BlockTest {
+    private static final int ROWS = 5 * BlockBuilder.RESTART_INTERVAL + 3;
+
+    private final KeyComparator comparator = new KeyComparator();
+
+    /**
+     * Keys share prefixes between restart points, every 5th record is tombstone.
+     */
+    @Test
+    void recordsAreReadAsWritten() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            expected.add(key(i) + "=" + (i % 5 == 4 ? "null" : "v" + i));
+        }
+        BlockIterator iterator = new BlockIterator(block(ROWS), comparator);
+        List<String> rows = new ArrayList<>();
+        for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+            rows.add(string(iterator.key()) + "=" + string(iterator.value()));
+        }
+        assertEquals(expected, rows);
+    }
+
+    /**
+     * Seek binary searches restart points, then scans records of one interval.
+     */
+    @Test
+    void seekFindsFirstKeyNotLessThanTarget() {
+        BlockIterator iterator = new BlockIterator(block(ROWS), comparator);
+        for (int i = 0; i < ROWS; i++) {
+            iterator.seek(segment(key(i)));
+            assertTrue(iterator.isValid());
+            assertEquals(key(i), string(iterator.key()));
+        }
+        iterator.seek(segment(key(BlockBuilder.RESTART_INTERVAL) + "0"));
+        assertEquals(key(BlockBuilder.RESTART_INTERVAL + 1), string(iterator.key()));
+        iterator.seek(segment("a"));
+        assertEquals(key(0), string(iterator.key()));
+        iterator.seek(segment(key(ROWS)));
+        assertFalse(iterator.isValid());
+    }
+
+    /**
+     * Only restart points store whole keys, other records store suffixes after the previous key.
+     */
+    @Test
+    void sharedPrefixesAreNotStored() {
+        String prefix = "x".repeat(100);
+        BlockBuilder builder = new BlockBuilder(64);
+        for (int i = 0; i < ROWS; i++) {
+            builder.add(segment(prefix + key(i)), null);
+        }
+        long restartKeys = (ROWS / BlockBuilder.RESTART_INTERVAL + 1) * (prefix.length() + key(0).length());
+        long block = builder.finish().byteSize();
+        assertTrue(block < restartKeys + (long) ROWS * key(0).length(), "block of " + block + " bytes");
+    }
+
+    private static MemorySegment block(int rows) {
+        BlockBuilder builder = new BlockBuilder(64);
+        for (int i = 0; i < rows; i++) {
+            builder.add(segment(key(i)), i % 5 == 4 ? null : segment("v" + i));
+        }
+        return builder.finish();
+    }
+}
@@ -0,0 +1,72 @@
+package org.lsm.db.table;
+
+import org.junit.jupiter.api.Test;
+import org.lsm.db.exception.InvalidBlockException;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class CompressionTest {
+
+    /**
+     * Blocks of different sizes are decoded one after another, so reused inflater and input buffer are reset.
+     */
+    @Test
+    void deflatedBlocksAreInflated() {
+        for (String raw : new String[] {"a".repeat(5000), "short", "value ".repeat(300), "b"}) {
+            assertEquals(raw, string(Compression.DEFLATE.decode(stored(Compression.DEFLATE.id(), raw, deflate(raw)))));
+        }
+    }
+
+    @Test
+    void rawBlockOfDeflateTableIsReturnedAsIs() {
+        MemorySegment stored = stored(Compression.NONE.id(), "raw", segment("raw").toArray(ValueLayout.JAVA_BYTE));
+        assertEquals("raw", string(Compression.DEFLATE.decode(stored)));
+    }
+
+    @Test
+    void blockOfUncompressedTableHasNoHeader() {
+        MemorySegment block = segment("block");
+        assertSame(block, Compression.NONE.decode(block));
+    }
+
+    @Test
+    void malformedBlocksAreRejected() {
+        byte[] payload = deflate("value ".repeat(100));
+        MemorySegment truncated = stored(Compression.DEFLATE.id(), "value ".repeat(100),
+                Arrays.copyOf(payload, payload.length / 2));
+        assertThrows(InvalidBlockException.class, () -> Compression.DEFLATE.decode(truncated));
+        MemorySegment unknown = stored(7, "raw", new byte[3]);
+        assertThrows(InvalidBlockException.class, () -> Compression.DEFLATE.decode(unknown));
+        assertThrows(InvalidBlockException.class, () -> Compression.of(7));
+    }
+
+    private static MemorySegment stored(int type, String raw, byte[] payload) {
+        MemorySegment stored = MemorySegment.ofArray(new byte[(int) Compression.HEADER_SIZE + payload.length]);
+        stored.set(ValueLayout.JAVA_BYTE, 0, (byte) type);
+        stored.set(ValueLayout.JAVA_INT_UNALIGNED, Byte.BYTES, raw.length());
+        MemorySegment.copy(payload, 0, stored, ValueLayout.JAVA_BYTE, Compression.HEADER_SIZE, payload.length);
+        return stored;
+    }
+
+    private static byte[] deflate(String raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(segment(raw).toArray(ValueLayout.JAVA_BYTE));
+            deflater.finish();
+            byte[] buffer = new byte[raw.length() + 64];
+            int size = deflater.deflate(buffer);
+            return Arrays.copyOf(buffer, size);
+        } finally {
+            deflater.end();
+        }
+    }
+}
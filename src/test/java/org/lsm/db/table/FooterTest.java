@@ -0,0 +1,108 @@
+package org.lsm.db.table;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsm.db.exception.InvalidBlockException;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FooterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void currentFooterIsReadAsWritten() throws IOException {
+        Footer footer = new Footer(Footer.CURRENT_VERSION, new Handle(100, 20), new Handle(120, 30), 7, 90, 3,
+                Compression.DEFLATE, new Handle(150, 40));
+        MemorySegment segment = MemorySegment.ofArray(new byte[(int) footer.footerSize()]);
+        assertEquals(footer.footerSize(), footer.write(segment, 0L));
+
+        Footer read = read(segment.asByteBuffer());
+        assertEquals(Footer.CURRENT_VERSION, read.getVersion());
+        assertEquals(new Handle(100, 20), read.getIndexHandle());
+        assertEquals(new Handle(120, 30), read.getFilterHandle());
+        assertEquals(7, read.getRows());
+        assertEquals(90, read.getByteSize());
+        assertEquals(3, read.getLevel());
+        assertEquals(Compression.DEFLATE, read.getCompression());
+        assertEquals(new Handle(150, 40), read.getRangeTombstonesHandle());
+    }
+
+    /**
+     * Fields added by later versions get defaults: level 0, no compression and no range tombstones.
+     */
+    @Test
+    void olderVersionIsReadWithDefaults() throws IOException {
+        ByteBuffer buffer = buffer(6 * Long.BYTES + Footer.TRAILER_SIZE)
+                .putLong(100).putLong(20).putLong(120).putLong(30).putLong(7).putLong(90);
+        trailer(buffer, Footer.FILTER_VERSION);
+
+        Footer read = read(buffer.flip());
+        assertEquals(Footer.FILTER_VERSION, read.getVersion());
+        assertEquals(new Handle(100, 20), read.getIndexHandle());
+        assertEquals(new Handle(120, 30), read.getFilterHandle());
+        assertEquals(7, read.getRows());
+        assertEquals(0, read.getLevel());
+        assertEquals(Compression.NONE, read.getCompression());
+        assertEquals(0, read.getRangeTombstonesHandle().size());
+    }
+
+    /**
+     * Legacy tables have no trailer, their footer holds only the index handle.
+     */
+    @Test
+    void footerWithoutMagicIsLegacy() throws IOException {
+        ByteBuffer buffer = buffer(Footer.FOOTER_SIZE).putLong(64).putLong(4 * Long.BYTES);
+
+        Footer read = read(buffer.flip());
+        assertEquals(Footer.LEGACY_VERSION, read.getVersion());
+        assertEquals(new Handle(64, 4 * Long.BYTES), read.getIndexHandle());
+        assertEquals(1, read.getRows());
+    }
+
+    @Test
+    void unknownVersionIsRejected() {
+        ByteBuffer buffer = buffer(Footer.TRAILER_SIZE);
+        trailer(buffer, Footer.CURRENT_VERSION + 1);
+
+        assertThrows(InvalidBlockException.class, () -> read(buffer.flip()));
+    }
+
+    private Footer read(ByteBuffer footer) throws IOException {
+        Path path = dir.resolve("footer");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(64));
+            while (footer.hasRemaining()) {
+                channel.write(footer);
+            }
+        }
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return Footer.read(channel, arena);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static ByteBuffer buffer(long size) {
+        return ByteBuffer.allocate(Math.toIntExact(size)).order(ByteOrder.nativeOrder());
+    }
+
+    private static void trailer(ByteBuffer buffer, int version) {
+        int size = buffer.capacity();
+        buffer.putInt(version).putInt(size).putLong(Footer.MAGIC);
+    }
+}
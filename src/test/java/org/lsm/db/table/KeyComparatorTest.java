@@ -0,0 +1,56 @@
+package org.lsm.db.table;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyComparatorTest {
+    private final KeyComparator comparator = new KeyComparator();
+
+    /**
+     * Keys are random bytes of up to 12 bytes from a small alphabet with negative bytes and zeros,
+     * so many pairs share prefixes or are padded.
+     */
+    @Test
+    void prefixOrderDoesNotContradictKeyOrder() {
+        Random random = new Random(11);
+        byte[] alphabet = {Byte.MIN_VALUE, -1, 0, 1, 'a', Byte.MAX_VALUE};
+        int decided = 0;
+        for (int i = 0; i < 100_000; i++) {
+            MemorySegment first = key(random, alphabet);
+            MemorySegment second = key(random, alphabet);
+            int byPrefix = Long.compareUnsigned(KeyComparator.prefix(first), KeyComparator.prefix(second));
+            if (byPrefix != 0) {
+                decided++;
+                assertEquals(Integer.signum(byPrefix), Integer.signum(comparator.compare(first, second)));
+            }
+        }
+        assertTrue(decided > 50_000, decided + " pairs ordered by prefixes");
+    }
+
+    @Test
+    void slicesAreComparedAsKeys() {
+        Random random = new Random(13);
+        byte[] alphabet = {Byte.MIN_VALUE, 0, 'a', 'b'};
+        for (int i = 0; i < 10_000; i++) {
+            MemorySegment first = key(random, alphabet);
+            MemorySegment second = key(random, alphabet);
+            MemorySegment padded = MemorySegment.ofArray(new byte[(int) first.byteSize() + 4]);
+            padded.asSlice(2, first.byteSize()).copyFrom(first);
+            assertEquals(Integer.signum(comparator.compare(first, second)), Integer.signum(KeyComparator.compare(
+                    padded, 2, 2 + first.byteSize(), second, 0, second.byteSize())));
+        }
+    }
+
+    private static MemorySegment key(Random random, byte[] alphabet) {
+        byte[] key = new byte[random.nextInt(13)];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+        return MemorySegment.ofArray(key);
+    }
+}
@@ -0,0 +1,64 @@
+package org.lsm.db.table;
+
+import org.junit.jupiter.api.Test;
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.lsm.db.TestUtils.segment;
+
+class MemTableTest {
+
+    /**
+     * Write which is inserted after a newer write of the same key doesn't replace it.
+     */
+    @Test
+    void versionsAreOrderedBySequence() {
+        for (MutableTable table : List.of(new MemTable(new KeyComparator(), 1), new ArenaMemTable(1))) {
+            table.upsert(entry("k", "v2"), 2, MutableTable.NO_SNAPSHOTS);
+            table.upsert(entry("k", "v1"), 1, MutableTable.NO_SNAPSHOTS);
+            assertEquals("v2", value(table, 2));
+            assertNull(table.get(segment("k"), 1));
+
+            table.upsert(entry("k", "v5"), 5, 2);
+            table.upsert(entry("k", "v3"), 3, 2);
+            table.upsert(entry("k", "v4"), 4, 2);
+            assertEquals("v5", value(table, MutableTable.LATEST));
+            assertEquals("v4", value(table, 4));
+            assertEquals("v3", value(table, 3));
+            assertEquals("v2", value(table, 2));
+            assertEquals(1, table.rows());
+            table.release();
+        }
+    }
+
+    /**
+     * Point lookup of arena memtable returns value on heap, so it is read after arena is freed.
+     */
+    @Test
+    void arenaLookupOutlivesTable() {
+        ArenaMemTable table = new ArenaMemTable(1);
+        for (int i = 0; i < 1000; i++) {
+            table.upsert(entry("k" + i, "v" + i), i + 1, MutableTable.NO_SNAPSHOTS);
+        }
+        table.upsert(entry("k", "value"), 1001, MutableTable.NO_SNAPSHOTS);
+        Entry<MemorySegment> entry = table.get(segment("k"), MutableTable.LATEST);
+        table.release();
+        assertEquals("value", new String(entry.value().toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8));
+    }
+
+    private static String value(MutableTable table, long snapshot) {
+        MemorySegment value = table.get(segment("k"), snapshot).value();
+        return new String(value.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+    }
+
+    private static Entry<MemorySegment> entry(String key, String value) {
+        return new BaseEntry<>(segment(key), segment(value));
+    }
+}
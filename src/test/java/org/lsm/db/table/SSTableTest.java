@@ -0,0 +1,226 @@
+package org.lsm.db.table;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsm.db.entry.BaseEntry;
+import org.lsm.db.entry.Entry;
+import org.lsm.db.entry.RangeTombstone;
+import org.lsm.db.iterator.Cursor;
+import org.lsm.db.iterator.TableCursor;
+import org.lsm.db.utils.Utils;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.lsm.db.TestUtils.key;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class SSTableTest {
+    private static final int ROWS = 3000;
+
+    private final KeyComparator comparator = new KeyComparator();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void deflateTableIsReadAsWritten() throws IOException {
+        List<Entry<MemorySegment>> entries = entries(false);
+        Path deflated = write(1, entries, Compression.DEFLATE);
+        Path raw = write(2, entries, Compression.NONE);
+        assertTrue(Files.size(deflated) < Files.size(raw) / 2, "compressible blocks are deflated");
+        assertReadsAsWritten(deflated, 1, entries);
+        assertReadsAsWritten(raw, 2, entries);
+    }
+
+    /**
+     * Blocks which don't shrink are stored raw inside table of DEFLATE format, they only get block headers.
+     */
+    @Test
+    void incompressibleBlocksAreStoredRaw() throws IOException {
+        List<Entry<MemorySegment>> entries = entries(true);
+        Path deflated = write(1, entries, Compression.DEFLATE);
+        Path raw = write(2, entries, Compression.NONE);
+        long blocks = Files.size(raw) / TableWriter.BLOCK_SIZE + 1;
+        assertTrue(Files.size(deflated) <= Files.size(raw) + blocks * Compression.HEADER_SIZE,
+                "raw blocks of DEFLATE table");
+        assertReadsAsWritten(deflated, 1, entries);
+    }
+
+    /**
+     * First keys of all blocks share 8 bytes, so index search compares their prefixes as equal and reads keys.
+     */
+    @Test
+    void keysSharingIndexPrefixesAreFound() throws IOException {
+        String prefix = "prefix:shared:";
+        List<Entry<MemorySegment>> entries = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            entries.add(new BaseEntry<>(segment(prefix + key(i)), segment("value" + i)));
+        }
+        Path path = write(1, entries, Compression.NONE);
+        try (DiskTable<MemorySegment> table = SSTable.open(path, comparator, 1, null)) {
+            for (int i = 0; i < ROWS; i++) {
+                assertEquals("value" + i, string(table.get(segment(prefix + key(i))).value()));
+                assertNull(table.get(segment(prefix + key(i) + "0")));
+            }
+            assertNull(table.get(segment(prefix)));
+            assertNull(table.get(segment("prefix:shared;")));
+            assertEquals(rows(entries.subList(1500, ROWS)), rows(table.rangeCursor(segment(prefix + key(1499) + "0"),
+                    true, null, false, false)));
+        }
+    }
+
+    /**
+     * Table of the first format is <var>key value ...</var> followed by pairs of key and value offsets,
+     * negative value offset marks tombstone, and by <var>indexOffset indexSize</var>.
+     */
+    @Test
+    void legacyTableIsRead() throws IOException {
+        List<Entry<MemorySegment>> entries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            entries.add(new BaseEntry<>(segment(key(i)), i % 7 == 3 ? null : segment("value" + i)));
+        }
+        Path path = Utils.sstTablePath(dir, 1);
+        writeLegacy(path, entries);
+        try (DiskTable<MemorySegment> table = SSTable.open(path, comparator, 1, null)) {
+            assertTrue(table instanceof LegacySSTable);
+            assertEquals(entries.size(), table.rows());
+            assertEquals(key(0), string(table.minKey()));
+            assertEquals(key(499), string(table.maxKey()));
+            assertEquals(rows(entries), rows(table.iterator()));
+            assertEquals(rows(entries.reversed()), rows(table.descendingIterator(null, true, null, true)));
+            assertEquals("value11", string(table.get(segment(key(11))).value()));
+            assertNull(table.get(segment(key(3))).value());
+            assertNull(table.get(segment("k")));
+            assertEquals(rows(entries.subList(10, 20)), rows(table.tableIterator(segment(key(10)), true,
+                    segment(key(20)), false)));
+        }
+    }
+
+    private void assertReadsAsWritten(Path path, int number, List<Entry<MemorySegment>> entries) throws IOException {
+        try (DiskTable<MemorySegment> table = SSTable.open(path, comparator, number, null)) {
+            assertEquals(entries.size(), table.rows());
+            assertEquals(rows(entries), rows(table.iterator()));
+            assertEquals(rows(entries.reversed()), rows(table.descendingIterator(null, true, null, true)));
+            assertEquals(rows(entries), rows(table.cursor()));
+            assertEquals(rows(entries.subList(100, 2000)), rows(table.rangeCursor(segment(key(100)), true,
+                    segment(key(2000)), false, false)));
+            for (int i = 0; i < ROWS; i += 7) {
+                Entry<MemorySegment> entry = table.get(segment(key(i)));
+                assertEquals(row(entries.get(i)), row(entry));
+            }
+            assertNull(table.get(segment(key(ROWS + 20))));
+            assertEquals(List.of(key(ROWS) + "=" + key(ROWS + 10)), tombstones(table.rangeTombstones()));
+        }
+    }
+
+    /**
+     * Every 10th entry is tombstone, values are random bytes if incompressible is set, otherwise repeated text.
+     */
+    private static List<Entry<MemorySegment>> entries(boolean incompressible) {
+        Random random = new Random(42);
+        List<Entry<MemorySegment>> entries = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            MemorySegment value;
+            if (i % 10 == 9) {
+                value = null;
+            } else if (incompressible) {
+                byte[] bytes = new byte[100];
+                random.nextBytes(bytes);
+                value = MemorySegment.ofArray(bytes);
+            } else {
+                value = segment(("value" + i + " ").repeat(10));
+            }
+            entries.add(new BaseEntry<>(segment(key(i)), value));
+        }
+        return entries;
+    }
+
+    private Path write(int number, List<Entry<MemorySegment>> entries, Compression compression) throws IOException {
+        Path path = Utils.sstTablePath(dir, number);
+        try (TableWriter writer = new ChannelTableWriter(path, 1, compression, entries.size())) {
+            for (Entry<MemorySegment> entry : entries) {
+                writer.writeEntry(entry);
+            }
+            writer.writeRangeTombstones(List.of(new RangeTombstone<>(segment(key(ROWS)), segment(key(ROWS + 10)))));
+            writer.finish();
+        }
+        return path;
+    }
+
+    private static void writeLegacy(Path path, List<Entry<MemorySegment>> entries) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(1 << 16).order(ByteOrder.nativeOrder());
+        ByteBuffer index = ByteBuffer.allocate(2 * Long.BYTES * (entries.size() + 1)).order(ByteOrder.nativeOrder());
+        for (Entry<MemorySegment> entry : entries) {
+            index.putLong(data.position());
+            data.put(entry.key().toArray(ValueLayout.JAVA_BYTE));
+            index.putLong(entry.value() == null ? -data.position() : data.position());
+            if (entry.value() != null) {
+                data.put(entry.value().toArray(ValueLayout.JAVA_BYTE));
+            }
+        }
+        index.putLong(data.position()).putLong(data.position());
+        ByteBuffer footer = ByteBuffer.allocate(2 * Long.BYTES).order(ByteOrder.nativeOrder());
+        footer.putLong(data.position()).putLong(index.capacity());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (ByteBuffer buffer : List.of(data.flip(), index.flip(), footer.flip())) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    private static List<String> rows(Iterator<Entry<MemorySegment>> iterator) {
+        List<String> rows = new ArrayList<>();
+        iterator.forEachRemaining(entry -> rows.add(row(entry)));
+        return rows;
+    }
+
+    private static List<String> rows(List<Entry<MemorySegment>> entries) {
+        return rows(entries.iterator());
+    }
+
+    private static List<String> rows(Cursor<MemorySegment> cursor) {
+        List<String> rows = new ArrayList<>();
+        for (cursor.seekToFirst(); cursor.isValid(); cursor.next()) {
+            rows.add(string(cursor.key()) + "=" + string(cursor.value()));
+        }
+        return rows;
+    }
+
+    private static List<String> rows(TableCursor<MemorySegment> cursor) {
+        List<String> rows = new ArrayList<>();
+        for (; cursor.isValid(); cursor.next()) {
+            rows.add(string(cursor.key()) + "=" + string(cursor.value()));
+        }
+        return rows;
+    }
+
+    private static List<String> tombstones(List<RangeTombstone<MemorySegment>> tombstones) {
+        List<String> ranges = new ArrayList<>();
+        for (RangeTombstone<MemorySegment> tombstone : tombstones) {
+            ranges.add(string(tombstone.from()) + "=" + string(tombstone.to()));
+        }
+        return ranges;
+    }
+
+    private static String row(Entry<MemorySegment> entry) {
+        return string(entry.key()) + "=" + string(entry.value());
+    }
+}
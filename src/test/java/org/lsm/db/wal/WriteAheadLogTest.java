@@ -0,0 +1,127 @@
+package org.lsm.db.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsm.db.entry.BaseEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.lsm.db.TestUtils.segment;
+import static org.lsm.db.TestUtils.string;
+
+class WriteAheadLogTest {
+    private static final List<String> ALL = List.of("a=1@1", "b=2@2", "c=null@2", "[d;f)@3", "g=3@4");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayReturnsRecordsInOrderOfAppending() throws IOException {
+        Path log = dir.resolve("wal-1.log");
+        write(log);
+        assertEquals(ALL, replay(log));
+    }
+
+    /**
+     * Append interrupted inside a record leaves its prefix, replay stops before it.
+     */
+    @Test
+    void tornTailIsDropped() throws IOException {
+        Path log = dir.resolve("wal-1.log");
+        List<Long> ends = write(log);
+        truncate(log, ends.get(3) - 1);
+        assertEquals(ALL.subList(0, 4), replay(log));
+
+        truncate(log, ends.get(1) + 3);
+        assertEquals(ALL.subList(0, 3), replay(log));
+
+        truncate(log, ends.get(0) + 5);
+        assertEquals(ALL.subList(0, 1), replay(log));
+    }
+
+    /**
+     * Batch with a damaged byte is dropped as a whole, and so are the records after it.
+     */
+    @Test
+    void recordWithWrongChecksumEndsReplay() throws IOException {
+        Path log = dir.resolve("wal-1.log");
+        List<Long> ends = write(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), ends.get(1) - 1);
+        }
+        assertEquals(ALL.subList(0, 1), replay(log));
+    }
+
+    /**
+     * Concurrent writers take sequence numbers in order of their records, whatever order they return in.
+     */
+    @Test
+    void sequencesFollowOrderOfRecords() throws Exception {
+        Path path = dir.resolve("wal-1.log");
+        AtomicLong sequence = new AtomicLong();
+        try (WriteAheadLog log = new WriteAheadLog(path, SyncMode.NONE)) {
+            List<Thread> writers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                String key = "k" + i;
+                writers.add(Thread.ofPlatform().start(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        log.append(new BaseEntry<>(segment(key), segment("v" + j)), sequence::incrementAndGet);
+                    }
+                }));
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+        List<Long> sequences = new ArrayList<>();
+        WriteAheadLog.replay(path, (entry, logged) -> sequences.add(logged), (range, logged) -> sequences.add(logged));
+        assertEquals(2000, sequences.size());
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals(i + 1L, (long) sequences.get(i));
+        }
+    }
+
+    /**
+     * Writes entry, batch of two entries, range deletion and entry, returns sizes of log after every record.
+     */
+    private static List<Long> write(Path path) throws IOException {
+        List<Long> ends = new ArrayList<>();
+        AtomicLong sequence = new AtomicLong();
+        try (WriteAheadLog log = new WriteAheadLog(path, SyncMode.PER_WRITE)) {
+            log.append(new BaseEntry<>(segment("a"), segment("1")), sequence::incrementAndGet);
+            ends.add(Files.size(path));
+            log.appendBatch(List.of(new BaseEntry<>(segment("b"), segment("2")), new BaseEntry<>(segment("c"), null)),
+                    sequence::incrementAndGet);
+            ends.add(Files.size(path));
+            log.appendRangeDelete(segment("d"), segment("f"), sequence::incrementAndGet);
+            ends.add(Files.size(path));
+            log.append(new BaseEntry<>(segment("g"), segment("3")), sequence::incrementAndGet);
+            ends.add(Files.size(path));
+        }
+        return ends;
+    }
+
+    private static void truncate(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static List<String> replay(Path path) throws IOException {
+        List<String> records = new ArrayList<>();
+        WriteAheadLog.replay(path,
+                (entry, sequence) -> records.add(string(entry.key()) + "=" + string(entry.value()) + "@" + sequence),
+                (range, sequence) -> records.add(
+                        "[" + string(range.from()) + ";" + string(range.to()) + ")@" + sequence));
+        return records;
+    }
+}